@@ -0,0 +1,38 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+/**
+ * Receives the outcome of a fan-out apply, one call per target in the order the targets were given in.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface ApplyCallback
+{
+
+    /**
+     * @param target - the target the delta was applied to
+     * @param result - the merged object
+     */
+    void applied( Object target, Object result );
+
+    /**
+     * @param target - the target the delta failed to apply to
+     * @param e      - the failure, the other targets are not affected by it
+     */
+    void failed( Object target, RuntimeException e );
+
+}
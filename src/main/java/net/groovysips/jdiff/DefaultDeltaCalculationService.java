@@ -17,7 +17,20 @@ package net.groovysips.jdiff;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import static net.groovysips.jdiff.StringUtils.buildLogableString;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
 import net.groovysips.jdiff.delta.DeltaPrinter;
+import net.groovysips.jdiff.delta.DeltaProgram;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
 
 /**
  * @author Alex Shneyderman
@@ -52,6 +65,55 @@ public class DefaultDeltaCalculationService implements DeltaCalculationService
         this.merger = merger;
     }
 
+    private ExecutorService executor;
+
+    /**
+     * @return executor the pairs of the batch diffs are diffed on, null (the default) keeps everything on the calling
+     *         thread. Should not be the executor of the builder, the builder blocks on its own tasks. The batch
+     *         diffs only use it with a {@link DefaultDeltaBuilder} and the batch applies only with a
+     *         {@link VisitingDeltaMerger}, other builders and mergers are not known to be thread safe.
+     */
+    public ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
+    public void setExecutor( ExecutorService executor )
+    {
+        this.executor = executor;
+    }
+
+    private int batchChunkSize = 64;
+
+    /**
+     * @return number of pairs diffed by a single executor task.
+     */
+    public int getBatchChunkSize()
+    {
+        return batchChunkSize;
+    }
+
+    public void setBatchChunkSize( int batchChunkSize )
+    {
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    private int batchWindow = 16;
+
+    /**
+     * @return number of executor tasks that may be in flight at any time, this is what bounds the memory a batch diff
+     *         takes.
+     */
+    public int getBatchWindow()
+    {
+        return batchWindow;
+    }
+
+    public void setBatchWindow( int batchWindow )
+    {
+        this.batchWindow = batchWindow;
+    }
+
     public DefaultDeltaCalculationService()
     {
     }
@@ -86,4 +148,368 @@ public class DefaultDeltaCalculationService implements DeltaCalculationService
         return merger.merge( object, delta );
     }
 
+    public List<Delta> diffAll( List<DiffPair> pairs )
+    {
+        final List<Delta> result = new ArrayList<Delta>( pairs.size() );
+
+        diffAll( pairs.iterator(), new DiffCallback()
+        {
+            public void delta( DiffPair pair, Delta delta )
+            {
+                result.add( delta );
+            }
+        } );
+
+        return result;
+    }
+
+    public void diffAll( Iterator<DiffPair> pairs, DiffCallback callback )
+    {
+        // only the default builder is known to be thread safe, any other one diffs the pairs one after the other.
+        ExecutorService exec = deltaBuilder instanceof DefaultDeltaBuilder ? executor : null;
+
+        if( exec == null )
+        {
+            int count = 0;
+
+            while( pairs.hasNext() )
+            {
+                DiffPair pair = pairs.next();
+
+                callback.delta( pair, deltaBuilder.build( pair.getOriginal(), pair.getModified() ) );
+
+                count++;
+            }
+
+            logBatch( "diffAll", count );
+            return;
+        }
+
+        // chunks in flight, oldest first.
+        LinkedList<List<DiffPair>> chunks = new LinkedList<List<DiffPair>>();
+        LinkedList<Future<List<Delta>>> window = new LinkedList<Future<List<Delta>>>();
+
+        int count = 0;
+
+        try
+        {
+            while( pairs.hasNext() || !window.isEmpty() )
+            {
+                while( window.size() < batchWindow && pairs.hasNext() )
+                {
+                    final List<DiffPair> chunk = new ArrayList<DiffPair>( batchChunkSize );
+
+                    while( chunk.size() < batchChunkSize && pairs.hasNext() )
+                    {
+                        chunk.add( pairs.next() );
+                    }
+
+                    chunks.add( chunk );
+                    window.add( exec.submit( new Callable<List<Delta>>()
+                    {
+                        public List<Delta> call()
+                        {
+                            return diffChunk( chunk );
+                        }
+                    } ) );
+                }
+
+                List<DiffPair> chunk = chunks.removeFirst();
+                List<Delta> deltas = window.removeFirst().get();
+
+                for( int i = 0; i < chunk.size(); i++ )
+                {
+                    callback.delta( chunk.get( i ), deltas.get( i ) );
+                }
+
+                count += chunk.size();
+            }
+        }
+        catch( InterruptedException e )
+        {
+            cancel( window );
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while waiting for the pairs to be diffed.", e );
+        }
+        catch( ExecutionException e )
+        {
+            cancel( window );
+            throw rethrow( e, "Unable to diff the pairs." );
+        }
+        catch( RuntimeException e )
+        {
+            // the callback or the executor gave up.
+            cancel( window );
+            throw e;
+        }
+
+        logBatch( "diffAll", count );
+    }
+
+    public List<Object> applyAll( List<?> objects, List<Delta> deltas )
+    {
+        if( objects.size() != deltas.size() )
+        {
+            String msg = buildLogableString( "There has to be a delta for every object.",
+                                             new Object[][]{
+                                                 { "objects.size", objects.size() },
+                                                 { "deltas.size", deltas.size() }
+                                             } );
+            throw new RuntimeException( msg );
+        }
+
+        // only the visiting merger is known to be thread safe, any other one gets the deltas one after the other.
+        ExecutorService exec = merger instanceof VisitingDeltaMerger ? executor : null;
+
+        if( exec == null )
+        {
+            List<Object> result = applyChunk( objects, deltas );
+
+            logBatch( "applyAll", result.size() );
+
+            return result;
+        }
+
+        List<Object> result = new ArrayList<Object>( objects.size() );
+        LinkedList<Future<List<Object>>> window = new LinkedList<Future<List<Object>>>();
+
+        int next = 0;
+
+        try
+        {
+            while( next < objects.size() || !window.isEmpty() )
+            {
+                while( window.size() < batchWindow && next < objects.size() )
+                {
+                    final List<?> objectsChunk = objects.subList( next, Math.min( next + batchChunkSize, objects.size() ) );
+                    final List<Delta> deltasChunk = deltas.subList( next, next + objectsChunk.size() );
+
+                    window.add( exec.submit( new Callable<List<Object>>()
+                    {
+                        public List<Object> call()
+                        {
+                            return applyChunk( objectsChunk, deltasChunk );
+                        }
+                    } ) );
+
+                    next += objectsChunk.size();
+                }
+
+                result.addAll( window.removeFirst().get() );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            cancel( window );
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while waiting for the deltas to be applied.", e );
+        }
+        catch( ExecutionException e )
+        {
+            cancel( window );
+            throw rethrow( e, "Unable to apply the deltas." );
+        }
+        catch( RuntimeException e )
+        {
+            // the executor gave up.
+            cancel( window );
+            throw e;
+        }
+
+        logBatch( "applyAll", result.size() );
+
+        return result;
+    }
+
+    public List<RuntimeException> applyToAll( Collection<?> targets, Delta delta )
+    {
+        final List<RuntimeException> result = new ArrayList<RuntimeException>( targets.size() );
+
+        applyToAll( targets, delta, new ApplyCallback()
+        {
+            public void applied( Object target, Object merged )
+            {
+                result.add( null );
+            }
+
+            public void failed( Object target, RuntimeException e )
+            {
+                result.add( e );
+            }
+        } );
+
+        return result;
+    }
+
+    public void applyToAll( Collection<?> targets, final Delta delta, ApplyCallback callback )
+    {
+        // the accessors are resolved once for all the targets, the program is shared by the threads.
+        final DeltaProgram program = merger instanceof VisitingDeltaMerger ? ( (VisitingDeltaMerger) merger ).compile( delta ) : null;
+
+        // any other merger is not known to be thread safe, so it is kept on the calling thread.
+        ExecutorService exec = program != null ? executor : null;
+
+        Iterator<?> iterator = targets.iterator();
+
+        // chunks in flight, oldest first.
+        LinkedList<List<Object>> chunks = new LinkedList<List<Object>>();
+        LinkedList<Future<Object[]>> window = new LinkedList<Future<Object[]>>();
+
+        try
+        {
+            while( iterator.hasNext() || !window.isEmpty() )
+            {
+                while( window.size() < batchWindow && iterator.hasNext() )
+                {
+                    final List<Object> chunk = new ArrayList<Object>( batchChunkSize );
+
+                    while( chunk.size() < batchChunkSize && iterator.hasNext() )
+                    {
+                        chunk.add( iterator.next() );
+                    }
+
+                    if( exec == null )
+                    {
+                        report( chunk, applyChunk( chunk, delta, program ), callback );
+                        continue;
+                    }
+
+                    chunks.add( chunk );
+                    window.add( exec.submit( new Callable<Object[]>()
+                    {
+                        public Object[] call()
+                        {
+                            return applyChunk( chunk, delta, program );
+                        }
+                    } ) );
+                }
+
+                if( !window.isEmpty() )
+                {
+                    report( chunks.removeFirst(), window.removeFirst().get(), callback );
+                }
+            }
+        }
+        catch( InterruptedException e )
+        {
+            cancel( window );
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while waiting for the delta to be applied.", e );
+        }
+        catch( ExecutionException e )
+        {
+            cancel( window );
+            throw rethrow( e, "Unable to apply the delta." );
+        }
+        catch( RuntimeException e )
+        {
+            // the callback or the executor gave up.
+            cancel( window );
+            throw e;
+        }
+
+        logBatch( "applyToAll", targets.size() );
+    }
+
+    // HELPERS
+    private List<Delta> diffChunk( List<DiffPair> chunk )
+    {
+        List<Delta> result = new ArrayList<Delta>( chunk.size() );
+
+        for( DiffPair pair : chunk )
+        {
+            result.add( deltaBuilder.build( pair.getOriginal(), pair.getModified() ) );
+        }
+
+        return result;
+    }
+
+    private List<Object> applyChunk( List<?> objects, List<Delta> deltas )
+    {
+        List<Object> result = new ArrayList<Object>( objects.size() );
+
+        for( int i = 0; i < objects.size(); i++ )
+        {
+            result.add( merger.merge( objects.get( i ), deltas.get( i ) ) );
+        }
+
+        return result;
+    }
+
+    private Object[] applyChunk( List<?> chunk, Delta delta, DeltaProgram program )
+    {
+        Object[] result = new Object[chunk.size()];
+
+        for( int i = 0; i < result.length; i++ )
+        {
+            try
+            {
+                result[ i ] = program != null ? program.apply( chunk.get( i ) ) : merger.merge( chunk.get( i ), delta );
+            }
+            catch( RuntimeException e )
+            {
+                result[ i ] = new Failure( e );
+            }
+        }
+
+        return result;
+    }
+
+    private static void report( List<?> chunk, Object[] outcomes, ApplyCallback callback )
+    {
+        for( int i = 0; i < outcomes.length; i++ )
+        {
+            if( outcomes[ i ] instanceof Failure )
+            {
+                callback.failed( chunk.get( i ), ( (Failure) outcomes[ i ] ).exception );
+            }
+            else
+            {
+                callback.applied( chunk.get( i ), outcomes[ i ] );
+            }
+        }
+    }
+
+    private static RuntimeException rethrow( ExecutionException e, String message )
+    {
+        if( e.getCause() instanceof RuntimeException )
+        {
+            return (RuntimeException) e.getCause();
+        }
+
+        if( e.getCause() instanceof Error )
+        {
+            throw (Error) e.getCause();
+        }
+
+        return new RuntimeException( message, e.getCause() );
+    }
+
+    private static void cancel( List<? extends Future<?>> window )
+    {
+        for( Future<?> f : window )
+        {
+            f.cancel( true );
+        }
+    }
+
+    private static void logBatch( String operation, int count )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( operation, new Object[][] { { "count", count } } ) );
+        }
+    }
+
+    // a target the delta failed to apply to.
+    private static final class Failure
+    {
+        private final RuntimeException exception;
+
+        private Failure( RuntimeException exception )
+        {
+            this.exception = exception;
+        }
+    }
+
 }
@@ -28,7 +28,10 @@ public interface DeltaBuilder
     public static final PropertyDescriptor[] EMPTY_PROPERTY_DESCRIPTORS_ARRAY = new PropertyDescriptor[0];
 
     /**
-     * Calculates delta between two java beans.
+     * Calculates delta between two java beans. The nested beans are diffed property by property, their own equals is
+     * not what decides whether they changed: the default equals of a bean may go around a back pointer of the graph
+     * forever. A bean whose equals deliberately ignores some properties gets that equals back once a comparator, such
+     * as {@link net.groovysips.jdiff.delta.ValueComparators#EQUALS}, is configured for its type or property.
      *
      * @param original java bean
      * @param modified java bean
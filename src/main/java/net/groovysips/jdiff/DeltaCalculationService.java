@@ -14,6 +14,10 @@
 */
 package net.groovysips.jdiff;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * @author Alex Shneyderman
  * @since 0.3
@@ -41,4 +45,50 @@ public interface DeltaCalculationService
      */
     Object apply( Object object, Delta delta );
 
+    /**
+     * Calculates the diffs of many independent pairs.
+     *
+     * @param pairs - pairs to diff
+     * @return deltas in the order of the pairs
+     */
+    List<Delta> diffAll( List<DiffPair> pairs );
+
+    /**
+     * Calculates the diffs of many independent pairs, handing each delta to the callback as soon as it and the deltas
+     * of all the pairs before it are ready. Only a bounded number of pairs is taken from the iterator ahead of the
+     * callback, so the pairs may come from a source that does not fit in memory.
+     *
+     * @param pairs    - pairs to diff
+     * @param callback - receiver of the deltas, called on the calling thread in the order of the pairs
+     */
+    void diffAll( Iterator<DiffPair> pairs, DiffCallback callback );
+
+    /**
+     * Applies deltas to the objects, the delta at an index to the object at the same index.
+     *
+     * @param objects - objects to apply the deltas to
+     * @param deltas  - deltas to apply
+     * @return results in the order of the objects
+     */
+    List<Object> applyAll( List<?> objects, List<Delta> deltas );
+
+    /**
+     * Applies one delta to many targets, i.e. replicas of the same object. The delta is prepared once for all of them.
+     *
+     * @param targets - objects to apply the delta to
+     * @param delta   - delta to apply
+     * @return failures in the order of the targets, null for each target the delta was applied to
+     */
+    List<RuntimeException> applyToAll( Collection<?> targets, Delta delta );
+
+    /**
+     * Applies one delta to many targets, the outcome of each target is handed to the callback. A target the delta
+     * fails to apply to does not stop the others.
+     *
+     * @param targets  - objects to apply the delta to
+     * @param delta    - delta to apply
+     * @param callback - receiver of the outcomes, called on the calling thread in the order of the targets
+     */
+    void applyToAll( Collection<?> targets, Delta delta, ApplyCallback callback );
+
 }
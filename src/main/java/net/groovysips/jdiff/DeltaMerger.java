@@ -16,6 +16,10 @@ package net.groovysips.jdiff;
 
 
 /**
+ * Applies deltas to objects. Implementations do not have to be thread safe, the batch applies of
+ * {@link DefaultDeltaCalculationService} run on several threads only with a
+ * {@link net.groovysips.jdiff.delta.VisitingDeltaMerger}.
+ *
  * @author Alex Shneyderman
  * @since 0.3
  */
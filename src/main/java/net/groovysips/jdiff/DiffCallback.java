@@ -0,0 +1,32 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+/**
+ * Receives the deltas of a batch diff, one call per pair in the order the pairs were given in.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface DiffCallback
+{
+
+    /**
+     * @param pair  - the pair diffed
+     * @param delta - delta of the pair
+     */
+    void delta( DiffPair pair, Delta delta );
+
+}
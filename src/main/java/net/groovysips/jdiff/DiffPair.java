@@ -0,0 +1,52 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+/**
+ * Original and modified instance to be diffed by {@link DeltaCalculationService#diffAll}.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class DiffPair
+{
+
+    private final Object original;
+    private final Object modified;
+
+    public DiffPair( Object original, Object modified )
+    {
+        this.original = original;
+        this.modified = modified;
+    }
+
+    public Object getOriginal()
+    {
+        return original;
+    }
+
+    public Object getModified()
+    {
+        return modified;
+    }
+
+    @Override public String toString()
+    {
+        return "DiffPair{" +
+               "original=" + original +
+               ", modified=" + modified +
+               '}';
+    }
+}
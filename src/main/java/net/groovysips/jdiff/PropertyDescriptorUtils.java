@@ -17,12 +17,15 @@ package net.groovysips.jdiff;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
 import static net.groovysips.jdiff.StringUtils.buildLogableString;
+import net.groovysips.jdiff.access.Accessors;
+import net.groovysips.jdiff.access.PropertyAccessor;
 import org.springframework.beans.BeanUtils;
 import org.springframework.util.StringUtils;
 import org.apache.commons.logging.Log;
@@ -56,25 +59,7 @@ public abstract class PropertyDescriptorUtils
             return null;
         }
 
-        Method readMethod = propDesc.getReadMethod();
-        if( readMethod == null )
-        {
-            readMethod = seeIfWeNeedToSetCustomBooleanGetter( source.getClass(), propDesc );
-        }
-
-        if( readMethod == null )
-        {
-            throw new RuntimeException( "Unable to find read method on the source object." + propDesc.getName() );
-        }
-
-        try
-        {
-            return readMethod.invoke( source );
-        }
-        catch( Exception e )
-        {
-            throw new RuntimeException( "Unable to read property value.", e );
-        }
+        return read( source, accessorFor( source, propDesc ) );
     }
 
     /**
@@ -92,27 +77,72 @@ public abstract class PropertyDescriptorUtils
             return null;
         }
 
-        PropertyDescriptor propDesc = fetchDescriptor( source, propertyName );
+        PropertyAccessor accessor = StringUtils.hasText( propertyName ) ?
+                                    Accessors.forProperty( source.getClass(), propertyName ) :
+                                    null;
 
-        if(propDesc == null)
+        if( accessor == null )
         {
             LOG.error( buildLogableString( "property descriptor is null.",
                                            new Object[][] {
                                                {"source",source},
                                                {"propertyName",propertyName}
                                            } ) );
+
+            throw new RuntimeException( "Unable to find read method on the source object." );
         }
 
-        Method readMethod = propDesc.getReadMethod();
+        return read( source, accessor );
+    }
 
-        if( readMethod == null )
+    /**
+     * Reads a field value of the source instance with the accessor of that field.
+     *
+     * @param source   - object to read the field value from
+     * @param accessor - accessor of the field
+     * @return value of the field
+     * @throws RuntimeException - if can not read or read method does not exist.
+     */
+    public static final Object read( Object source, PropertyAccessor accessor )
+    {
+        if( source == null )
         {
-            throw new RuntimeException( "Unable to find read method on the source object." );
+            return null;
+        }
+
+        if( !accessor.isReadable() )
+        {
+            throw new RuntimeException( "Unable to find read method on the source object." + accessor.getPropertyName() );
         }
 
         try
         {
-            return readMethod.invoke( source );
+            return accessor.read( source );
+        }
+        catch( Exception e )
+        {
+            throw new RuntimeException( "Unable to read property value.", e );
+        }
+    }
+
+    /**
+     * Reads a primitive field value of the source instance with the accessor of that field, without boxing it.
+     *
+     * @param source   - object to read the field value from
+     * @param accessor - accessor of the field
+     * @return {@link net.groovysips.jdiff.access.PrimitiveBits} of the value
+     * @throws RuntimeException - if can not read or read method does not exist.
+     */
+    public static final long readBits( Object source, PropertyAccessor accessor )
+    {
+        if( !accessor.isReadable() )
+        {
+            throw new RuntimeException( "Unable to find read method on the source object." + accessor.getPropertyName() );
+        }
+
+        try
+        {
+            return accessor.readBits( source );
         }
         catch( Exception e )
         {
@@ -135,13 +165,52 @@ public abstract class PropertyDescriptorUtils
             return;
         }
 
-        Method writeMethod = propDesc.getWriteMethod();
+        write( target, value, accessorFor( target, propDesc ) );
+    }
 
-        if( writeMethod == null )
+    /**
+     * Writes value into the field of the target instance given property name.
+     *
+     * @param target   - target object
+     * @param value    - value for the field
+     * @param propName - name of the field
+     * @throws RuntimeException - if can not write or write method does not exist.
+     */
+    public static final void write( Object target, Object value, String propName )
+    {
+        if( target == null || !StringUtils.hasText( propName ) )
+        {
+            return;
+        }
+
+        PropertyAccessor accessor = Accessors.forProperty( target.getClass(), propName );
+
+        if( accessor != null )
+        {
+            write( target, value, accessor );
+        }
+    }
+
+    /**
+     * Writes value into the field of the target instance with the accessor of that field.
+     *
+     * @param target   - target object
+     * @param value    - value for the field
+     * @param accessor - accessor of the field
+     * @throws RuntimeException - if can not write or write method does not exist.
+     */
+    public static final void write( Object target, Object value, PropertyAccessor accessor )
+    {
+        if( target == null )
+        {
+            return;
+        }
+
+        if( !accessor.isWritable() )
         {
             String msg = buildLogableString( "Unable to find a write method for property.",
                                              new Object[][] {
-                                                 {"propDesc.name",propDesc.getName()},
+                                                 {"propDesc.name",accessor.getPropertyName()},
                                                  {"target.class", target.getClass()},
                                                  {"value",value}
                                              } );
@@ -150,7 +219,7 @@ public abstract class PropertyDescriptorUtils
 
         try
         {
-            writeMethod.invoke( target, value );
+            accessor.write( target, value );
         }
         catch( Exception e )
         {
@@ -159,20 +228,38 @@ public abstract class PropertyDescriptorUtils
     }
 
     /**
-     * Writes value into the field of the target instance given property name.
+     * Writes primitive value into the field of the target instance with the accessor of that field, without boxing it.
      *
      * @param target   - target object
-     * @param value    - value for the field
-     * @param propName - name of the field
+     * @param bits     - {@link net.groovysips.jdiff.access.PrimitiveBits} of the value for the field
+     * @param accessor - accessor of the field
      * @throws RuntimeException - if can not write or write method does not exist.
      */
-    public static final void write( Object target, Object value, String propName )
+    public static final void writeBits( Object target, long bits, PropertyAccessor accessor )
     {
-        PropertyDescriptor pd = fetchDescriptor( target, propName );
+        if( target == null )
+        {
+            return;
+        }
+
+        if( !accessor.isWritable() )
+        {
+            String msg = buildLogableString( "Unable to find a write method for property.",
+                                             new Object[][] {
+                                                 {"propDesc.name",accessor.getPropertyName()},
+                                                 {"target.class", target.getClass()},
+                                                 {"bits",bits}
+                                             } );
+            throw new RuntimeException( msg );
+        }
 
-        if( pd != null )
+        try
+        {
+            accessor.writeBits( target, bits );
+        }
+        catch( Exception e )
         {
-            write( target, value, pd );
+            throw new RuntimeException( "Unable to write value to the target object.", e );
         }
     }
 
@@ -180,17 +267,15 @@ public abstract class PropertyDescriptorUtils
      * Writes value into the field of the target instance given the name of the write method.
      *
      * @param target     - target object
-     * @param value      - value for the field
+     * @param value      - value for the field, may be null
      * @param methodName - name of the method to use
      * @throws RuntimeException - if can not write or write method does not exist.
      */
     public static final void writeWith( Object target, Object value, String methodName )
     {
-        Method writeMethod = null;
         try
         {
-            writeMethod = target.getClass().getMethod( methodName, value.getClass() );
-            writeMethod.invoke( target, value );
+            Accessors.forWriteMethod( target.getClass(), methodName, value == null ? null : value.getClass() ).write( target, value );
         }
         catch( Exception e )
         {
@@ -254,13 +339,24 @@ public abstract class PropertyDescriptorUtils
      * @return array of prop descriptors
      */
     public static final PropertyDescriptor[] getPropertyDescriptors( Object target, List<String> excludes)
+    {
+        return getClassPropertyDescriptors( target.getClass(), excludes );
+    }
+
+    /**
+     *
+     * @param clazz
+     * @param excludes - names of the properties to leave out, may be null
+     * @return array of prop descriptors, system properties first, the rest ordered by name
+     */
+    public static final PropertyDescriptor[] getClassPropertyDescriptors( Class clazz, Collection<String> excludes )
     {
         if (excludes == null || excludes.isEmpty())
         {
-            return placeSystemPropertiesOnTop( BeanUtils.getPropertyDescriptors( target.getClass() ) );
+            return placeSystemPropertiesOnTop( BeanUtils.getPropertyDescriptors( clazz ) );
         }
 
-        PropertyDescriptor[] descriptors = BeanUtils.getPropertyDescriptors( target.getClass() );
+        PropertyDescriptor[] descriptors = BeanUtils.getPropertyDescriptors( clazz );
         List<PropertyDescriptor> lDescriptors = Arrays.asList( descriptors );
         List<PropertyDescriptor> result = new ArrayList<PropertyDescriptor>();
         for( PropertyDescriptor d : lDescriptors )
@@ -306,7 +402,30 @@ public abstract class PropertyDescriptorUtils
         return BeanUtils.getPropertyDescriptor( obj.getClass(), propertyName );
     }
 
+    /**
+     * Resolves the method used to read the property, falling back to an "is" getter for the Boolean typed properties.
+     *
+     * @param hostClass - class that declares the property
+     * @param propDesc  - descriptor of the property
+     * @return read method or null if the property can not be read.
+     */
+    public static final Method findReadMethod( Class hostClass, PropertyDescriptor propDesc )
+    {
+        Method readMethod = propDesc.getReadMethod();
+        if( readMethod == null )
+        {
+            readMethod = seeIfWeNeedToSetCustomBooleanGetter( hostClass, propDesc );
+        }
+
+        return readMethod;
+    }
+
     // HELPERS
+    private static PropertyAccessor accessorFor( Object bean, PropertyDescriptor propDesc )
+    {
+        return Accessors.forDescriptor( bean.getClass(), propDesc );
+    }
+
     private static Method seeIfWeNeedToSetCustomBooleanGetter( Class hostObjectClass, PropertyDescriptor sourceFieldDesc )
     {
         if( sourceFieldDesc.getPropertyType() != Boolean.class )
@@ -0,0 +1,90 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.access;
+
+import static net.groovysips.jdiff.StringUtils.buildLogableString;
+
+/**
+ * Base class of all the accessors. Generated accessors extend it as well, overriding only the operations the
+ * property supports.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public abstract class AbstractPropertyAccessor implements PropertyAccessor
+{
+
+    private final String propertyName;
+
+    protected AbstractPropertyAccessor( String propertyName )
+    {
+        this.propertyName = propertyName;
+    }
+
+    public String getPropertyName()
+    {
+        return propertyName;
+    }
+
+    public Object read( Object target )
+    {
+        throw new RuntimeException( "Unable to find read method on the source object." + propertyName );
+    }
+
+    public void write( Object target, Object value )
+    {
+        String msg = buildLogableString( "Unable to find a write method for property.",
+                                         new Object[][] {
+                                             {"propDesc.name", propertyName},
+                                             {"target.class", target == null ? null : target.getClass()},
+                                             {"value", value}
+                                         } );
+        throw new RuntimeException( msg );
+    }
+
+    public long readBits( Object target )
+    {
+        throw new RuntimeException( "Unable to find primitive read method on the source object." + propertyName );
+    }
+
+    public void writeBits( Object target, long bits )
+    {
+        String msg = buildLogableString( "Unable to find a primitive write method for property.",
+                                         new Object[][] {
+                                             {"propDesc.name", propertyName},
+                                             {"target.class", target == null ? null : target.getClass()},
+                                             {"bits", bits}
+                                         } );
+        throw new RuntimeException( msg );
+    }
+
+    public boolean isReadable()
+    {
+        return false;
+    }
+
+    public boolean isWritable()
+    {
+        return false;
+    }
+
+    @Override public String toString()
+    {
+        return this.getClass().getSimpleName() + "{" +
+               "propertyName='" + propertyName + '\'' +
+               '}';
+    }
+
+}
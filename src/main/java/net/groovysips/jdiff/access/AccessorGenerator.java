@@ -0,0 +1,422 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.access;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import static net.groovysips.jdiff.StringUtils.buildLogableString;
+
+/**
+ * Generates {@link AbstractPropertyAccessor} subclasses that call the read and write methods of a property directly,
+ * without going through reflection. Only the public methods of the public classes can be called this way, for
+ * everything else the generator returns null and the caller falls back to {@link ReflectivePropertyAccessor}.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+final class AccessorGenerator implements Opcodes
+{
+
+    private static final Log LOG = LogFactory.getLog( AccessorGenerator.class );
+
+    private static final String BASE_NAME = Type.getInternalName( AbstractPropertyAccessor.class );
+
+    private static final String OBJECT_NAME = Type.getInternalName( Object.class );
+
+    private static final String GENERATED_PREFIX = "net/groovysips/jdiff/access/generated/Accessor";
+
+    private static final Map<ClassLoader, WeakReference<AccessorClassLoader>> loaders =
+        new WeakHashMap<ClassLoader, WeakReference<AccessorClassLoader>>();
+
+    private static int counter = 0;
+
+    private AccessorGenerator()
+    {
+    }
+
+    /**
+     * @param propertyName
+     * @param readMethod   - may be null
+     * @param writeMethod  - may be null
+     * @return generated accessor or null if the methods can not be called from generated code.
+     */
+    static PropertyAccessor generate( String propertyName, Method readMethod, Method writeMethod )
+    {
+        if( !isCallable( readMethod ) || !isCallable( writeMethod ) )
+        {
+            return null;
+        }
+
+        Class hostClass = readMethod != null ? readMethod.getDeclaringClass() : writeMethod.getDeclaringClass();
+
+        try
+        {
+            String className = nextClassName();
+
+            byte[] bytes = generateBytes( className, readMethod, writeMethod );
+
+            Class accessorClass = loaderFor( hostClass ).define( className.replace( '/', '.' ), bytes );
+
+            return (PropertyAccessor) accessorClass.getConstructor( String.class ).newInstance( propertyName );
+        }
+        catch( Throwable t )
+        {
+            if( LOG.isDebugEnabled() )
+            {
+                LOG.debug( buildLogableString( "Unable to generate accessor, falling back to reflection.",
+                                               new Object[][] {
+                                                   {"propertyName", propertyName},
+                                                   {"hostClass", hostClass},
+                                                   {"cause", t}
+                                               } ) );
+            }
+
+            return null;
+        }
+    }
+
+    // HELPERS
+    private static boolean isCallable( Method method )
+    {
+        if( method == null )
+        {
+            return true;
+        }
+
+        return Modifier.isPublic( method.getModifiers() ) &&
+               Modifier.isPublic( method.getDeclaringClass().getModifiers() ) &&
+               !Modifier.isStatic( method.getModifiers() );
+    }
+
+    private static synchronized String nextClassName()
+    {
+        return GENERATED_PREFIX + ( counter++ );
+    }
+
+    private static AccessorClassLoader loaderFor( Class hostClass )
+    {
+        ClassLoader parent = hostClass.getClassLoader();
+
+        if( parent == null )
+        {
+            parent = AccessorGenerator.class.getClassLoader();
+        }
+
+        synchronized( loaders )
+        {
+            WeakReference<AccessorClassLoader> ref = loaders.get( parent );
+
+            AccessorClassLoader result = ref == null ? null : ref.get();
+
+            if( result == null )
+            {
+                result = new AccessorClassLoader( parent );
+                loaders.put( parent, new WeakReference<AccessorClassLoader>( result ) );
+            }
+
+            return result;
+        }
+    }
+
+    private static byte[] generateBytes( String className, Method readMethod, Method writeMethod )
+    {
+        ClassWriter cw = new ClassWriter( true );
+
+        cw.visit( V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null, BASE_NAME, null );
+
+        MethodVisitor mv = cw.visitMethod( ACC_PUBLIC, "<init>", "(Ljava/lang/String;)V", null, null );
+        mv.visitCode();
+        mv.visitVarInsn( ALOAD, 0 );
+        mv.visitVarInsn( ALOAD, 1 );
+        mv.visitMethodInsn( INVOKESPECIAL, BASE_NAME, "<init>", "(Ljava/lang/String;)V" );
+        mv.visitInsn( RETURN );
+        mv.visitMaxs( 0, 0 );
+        mv.visitEnd();
+
+        if( readMethod != null )
+        {
+            generateRead( cw, readMethod );
+            generateFlag( cw, "isReadable" );
+
+            if( readMethod.getReturnType().isPrimitive() )
+            {
+                generateReadBits( cw, readMethod );
+            }
+        }
+
+        if( writeMethod != null )
+        {
+            generateWrite( cw, writeMethod );
+            generateFlag( cw, "isWritable" );
+
+            if( writeMethod.getParameterTypes()[ 0 ].isPrimitive() )
+            {
+                generateWriteBits( cw, writeMethod );
+            }
+        }
+
+        cw.visitEnd();
+
+        return cw.toByteArray();
+    }
+
+    private static void generateRead( ClassWriter cw, Method readMethod )
+    {
+        MethodVisitor mv = cw.visitMethod( ACC_PUBLIC, "read", "(Ljava/lang/Object;)Ljava/lang/Object;", null, null );
+        mv.visitCode();
+        mv.visitVarInsn( ALOAD, 1 );
+        invoke( mv, readMethod );
+        box( mv, readMethod.getReturnType() );
+        mv.visitInsn( ARETURN );
+        mv.visitMaxs( 0, 0 );
+        mv.visitEnd();
+    }
+
+    private static void generateWrite( ClassWriter cw, Method writeMethod )
+    {
+        MethodVisitor mv = cw.visitMethod( ACC_PUBLIC, "write", "(Ljava/lang/Object;Ljava/lang/Object;)V", null, null );
+        mv.visitCode();
+        mv.visitVarInsn( ALOAD, 1 );
+        mv.visitTypeInsn( CHECKCAST, Type.getInternalName( writeMethod.getDeclaringClass() ) );
+        mv.visitVarInsn( ALOAD, 2 );
+        unbox( mv, writeMethod.getParameterTypes()[ 0 ] );
+        invokeOnCastTarget( mv, writeMethod );
+        discard( mv, writeMethod.getReturnType() );
+        mv.visitInsn( RETURN );
+        mv.visitMaxs( 0, 0 );
+        mv.visitEnd();
+    }
+
+    private static void generateReadBits( ClassWriter cw, Method readMethod )
+    {
+        MethodVisitor mv = cw.visitMethod( ACC_PUBLIC, "readBits", "(Ljava/lang/Object;)J", null, null );
+        mv.visitCode();
+        mv.visitVarInsn( ALOAD, 1 );
+        invoke( mv, readMethod );
+        toBits( mv, readMethod.getReturnType() );
+        mv.visitInsn( LRETURN );
+        mv.visitMaxs( 0, 0 );
+        mv.visitEnd();
+    }
+
+    private static void generateWriteBits( ClassWriter cw, Method writeMethod )
+    {
+        MethodVisitor mv = cw.visitMethod( ACC_PUBLIC, "writeBits", "(Ljava/lang/Object;J)V", null, null );
+        mv.visitCode();
+        mv.visitVarInsn( ALOAD, 1 );
+        mv.visitTypeInsn( CHECKCAST, Type.getInternalName( writeMethod.getDeclaringClass() ) );
+        mv.visitVarInsn( LLOAD, 2 );
+        fromBits( mv, writeMethod.getParameterTypes()[ 0 ] );
+        invokeOnCastTarget( mv, writeMethod );
+        discard( mv, writeMethod.getReturnType() );
+        mv.visitInsn( RETURN );
+        mv.visitMaxs( 0, 0 );
+        mv.visitEnd();
+    }
+
+    private static void generateFlag( ClassWriter cw, String name )
+    {
+        MethodVisitor mv = cw.visitMethod( ACC_PUBLIC, name, "()Z", null, null );
+        mv.visitCode();
+        mv.visitInsn( ICONST_1 );
+        mv.visitInsn( IRETURN );
+        mv.visitMaxs( 0, 0 );
+        mv.visitEnd();
+    }
+
+    private static void invoke( MethodVisitor mv, Method method )
+    {
+        mv.visitTypeInsn( CHECKCAST, Type.getInternalName( method.getDeclaringClass() ) );
+        invokeOnCastTarget( mv, method );
+    }
+
+    private static void invokeOnCastTarget( MethodVisitor mv, Method method )
+    {
+        Class owner = method.getDeclaringClass();
+
+        mv.visitMethodInsn( owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL,
+                            Type.getInternalName( owner ),
+                            method.getName(),
+                            Type.getMethodDescriptor( method ) );
+    }
+
+    private static void discard( MethodVisitor mv, Class type )
+    {
+        if( type == Void.TYPE )
+        {
+            return;
+        }
+
+        mv.visitInsn( type == Long.TYPE || type == Double.TYPE ? POP2 : POP );
+    }
+
+    private static void box( MethodVisitor mv, Class type )
+    {
+        if( !type.isPrimitive() )
+        {
+            return;
+        }
+
+        String wrapper = Type.getInternalName( wrapperOf( type ) );
+
+        mv.visitMethodInsn( INVOKESTATIC, wrapper, "valueOf", "(" + Type.getDescriptor( type ) + ")L" + wrapper + ";" );
+    }
+
+    private static void unbox( MethodVisitor mv, Class type )
+    {
+        if( !type.isPrimitive() )
+        {
+            if( !OBJECT_NAME.equals( Type.getInternalName( type ) ) )
+            {
+                mv.visitTypeInsn( CHECKCAST, Type.getInternalName( type ) );
+            }
+            return;
+        }
+
+        String wrapper = Type.getInternalName( wrapperOf( type ) );
+
+        mv.visitTypeInsn( CHECKCAST, wrapper );
+        mv.visitMethodInsn( INVOKEVIRTUAL, wrapper, type.getName() + "Value", "()" + Type.getDescriptor( type ) );
+    }
+
+    // see PrimitiveBits for the encoding.
+    private static void toBits( MethodVisitor mv, Class type )
+    {
+        if( type == Long.TYPE )
+        {
+            return;
+        }
+
+        if( type == Double.TYPE )
+        {
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Double", "doubleToLongBits", "(D)J" );
+            return;
+        }
+
+        if( type == Float.TYPE )
+        {
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Float", "floatToIntBits", "(F)I" );
+        }
+
+        mv.visitInsn( I2L );
+    }
+
+    private static void fromBits( MethodVisitor mv, Class type )
+    {
+        if( type == Long.TYPE )
+        {
+            return;
+        }
+
+        if( type == Double.TYPE )
+        {
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Double", "longBitsToDouble", "(J)D" );
+            return;
+        }
+
+        mv.visitInsn( L2I );
+
+        if( type == Float.TYPE )
+        {
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Float", "intBitsToFloat", "(I)F" );
+        }
+        else if( type == Short.TYPE )
+        {
+            mv.visitInsn( I2S );
+        }
+        else if( type == Byte.TYPE )
+        {
+            mv.visitInsn( I2B );
+        }
+        else if( type == Character.TYPE )
+        {
+            mv.visitInsn( I2C );
+        }
+    }
+
+    private static Class wrapperOf( Class primitive )
+    {
+        if( primitive == Integer.TYPE )
+        {
+            return Integer.class;
+        }
+        else if( primitive == Long.TYPE )
+        {
+            return Long.class;
+        }
+        else if( primitive == Double.TYPE )
+        {
+            return Double.class;
+        }
+        else if( primitive == Boolean.TYPE )
+        {
+            return Boolean.class;
+        }
+        else if( primitive == Float.TYPE )
+        {
+            return Float.class;
+        }
+        else if( primitive == Short.TYPE )
+        {
+            return Short.class;
+        }
+        else if( primitive == Byte.TYPE )
+        {
+            return Byte.class;
+        }
+        else if( primitive == Character.TYPE )
+        {
+            return Character.class;
+        }
+
+        throw new IllegalArgumentException( "Not a primitive type - " + primitive );
+    }
+
+    private static final class AccessorClassLoader extends ClassLoader
+    {
+
+        AccessorClassLoader( ClassLoader parent )
+        {
+            super( parent );
+        }
+
+        Class define( String name, byte[] bytes )
+        {
+            return defineClass( name, bytes, 0, bytes.length );
+        }
+
+        @Override protected synchronized Class<?> loadClass( String name, boolean resolve )
+            throws ClassNotFoundException
+        {
+            // the host class loader does not necessarily see the library classes.
+            if( AbstractPropertyAccessor.class.getName().equals( name ) )
+            {
+                return AbstractPropertyAccessor.class;
+            }
+
+            return super.loadClass( name, resolve );
+        }
+    }
+
+}
@@ -0,0 +1,397 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.access;
+
+import java.beans.PropertyDescriptor;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import net.groovysips.jdiff.PropertyDescriptorUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Registry of the property accessors. Accessors are created once per class and property and reused afterwards,
+ * generated ones are preferred and reflective ones are used where generation is not possible.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public abstract class Accessors
+{
+
+    private static final PropertyAccessor NONE = new AbstractPropertyAccessor( null )
+    {
+    };
+
+    // accessors of the classes loaded by the class loader of this library (or one of its parents), read without locking.
+    private static final ConcurrentMap<Class, ClassAccessors> classes = new ConcurrentHashMap<Class, ClassAccessors>();
+
+    // accessors of the other classes, weakly keyed. The accessors refer to their class and would keep its class loader
+    // around if held strongly, so they are held through soft references: cleared when the memory runs low rather than
+    // on every collection, which would have the accessors generated again and again.
+    private static final Map<Class, Reference<ClassAccessors>> foreignClasses =
+        new WeakHashMap<Class, Reference<ClassAccessors>>();
+
+    /**
+     * @param clazz        - class of the bean
+     * @param propertyName - name of the property
+     * @return accessor or null if the class has no such property.
+     */
+    public static PropertyAccessor forProperty( Class clazz, String propertyName )
+    {
+        ClassAccessors accessors = accessorsOf( clazz );
+
+        PropertyAccessor result = accessors.properties.get( propertyName );
+
+        if( result == null )
+        {
+            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor( clazz, propertyName );
+
+            result = pd == null ?
+                     NONE :
+                     create( propertyName, PropertyDescriptorUtils.findReadMethod( clazz, pd ), pd.getWriteMethod() );
+
+            PropertyAccessor existing = accessors.properties.putIfAbsent( propertyName, result );
+
+            if( existing != null )
+            {
+                result = existing;
+            }
+        }
+
+        return result == NONE ? null : result;
+    }
+
+    /**
+     * Resolves the accessor of a property descriptor that may come from some other class than the bean's own.
+     *
+     * @param clazz      - class of the bean
+     * @param descriptor - descriptor of the property
+     * @return the accessor of the class's property of that name, or an accessor of the descriptor's methods if the
+     *         class has no such property.
+     */
+    public static PropertyAccessor forDescriptor( Class clazz, PropertyDescriptor descriptor )
+    {
+        PropertyAccessor result = forProperty( clazz, descriptor.getName() );
+
+        if( result != null )
+        {
+            return result;
+        }
+
+        ConcurrentMap<PropertyDescriptor, PropertyAccessor> descriptors = accessorsOf( clazz ).descriptors;
+
+        result = descriptors.get( descriptor );
+
+        if( result == null )
+        {
+            result = create( descriptor.getName(),
+                             PropertyDescriptorUtils.findReadMethod( clazz, descriptor ),
+                             descriptor.getWriteMethod() );
+
+            PropertyAccessor existing = descriptors.putIfAbsent( descriptor, result );
+
+            if( existing != null )
+            {
+                result = existing;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolves the accessor of the instance field declared by the class or one of its super classes.
+     *
+     * @param clazz     - class of the bean
+     * @param fieldName - name of the field
+     * @return accessor or null if the class has no such field.
+     */
+    public static PropertyAccessor forField( Class clazz, String fieldName )
+    {
+        PropertyAccessor[] fields = forFields( clazz );
+
+        for( int i = 0; i < fields.length; i++ )
+        {
+            if( fields[ i ].getPropertyName().equals( fieldName ) )
+            {
+                return fields[ i ];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Resolves the field table of the class: accessors of all the instance fields of the class and its super
+     * classes ordered by name. Static, transient and synthetic fields are not included, a field hides the same named
+     * fields of the super classes.
+     *
+     * @param clazz - class of the bean
+     * @return field accessors, shared - do not modify.
+     */
+    public static PropertyAccessor[] forFields( Class clazz )
+    {
+        ClassAccessors accessors = accessorsOf( clazz );
+
+        PropertyAccessor[] result = accessors.fields;
+
+        if( result == null )
+        {
+            result = createFieldTable( clazz );
+
+            // racing threads build equal tables, any of them will do.
+            accessors.fields = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolves public single argument method of the class that accepts the value of the given class. The overloads are
+     * matched the way the compiler would match them: the exact parameter type first, then the most specific one of
+     * the super types, primitives take their wrappers. The result is cached by the class of the value.
+     *
+     * @param clazz      - class of the bean
+     * @param methodName - name of the method
+     * @param valueClass - class of the argument, null for a null argument
+     * @return write only accessor
+     * @throws NoSuchMethodException - if there is no such method.
+     */
+    public static PropertyAccessor forWriteMethod( Class clazz, String methodName, Class valueClass )
+        throws NoSuchMethodException
+    {
+        ConcurrentMap<Class, PropertyAccessor> overloads = accessorsOf( clazz ).writersNamed( methodName );
+
+        // no value is of class void, the null values are kept under it.
+        Class key = valueClass == null ? Void.TYPE : valueClass;
+
+        PropertyAccessor result = overloads.get( key );
+
+        if( result == null )
+        {
+            result = create( methodName, null, findWriteMethod( clazz, methodName, valueClass ) );
+
+            PropertyAccessor existing = overloads.putIfAbsent( key, result );
+
+            if( existing != null )
+            {
+                result = existing;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a new, not cached, accessor for the methods.
+     *
+     * @param propertyName
+     * @param readMethod   - may be null
+     * @param writeMethod  - may be null
+     * @return accessor
+     */
+    public static PropertyAccessor create( String propertyName, Method readMethod, Method writeMethod )
+    {
+        PropertyAccessor result = AccessorGenerator.generate( propertyName, readMethod, writeMethod );
+
+        if( result == null )
+        {
+            result = new ReflectivePropertyAccessor( propertyName, readMethod, writeMethod );
+        }
+
+        return result;
+    }
+
+    /**
+     * @param clazz
+     * @return whether the class goes away together with this library (it is loaded by the class loader of the library
+     *         or one of its parents), so that whatever is cached for it can be held strongly.
+     */
+    public static boolean isCacheSafe( Class clazz )
+    {
+        ClassLoader target = clazz.getClassLoader();
+
+        if( target == null )
+        {
+            return true;
+        }
+
+        for( ClassLoader loader = Accessors.class.getClassLoader(); loader != null; loader = loader.getParent() )
+        {
+            if( loader == target )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // HELPERS
+    private static Method findWriteMethod( Class clazz, String methodName, Class valueClass )
+        throws NoSuchMethodException
+    {
+        Method result = valueClass == null ? null : ClassUtils.getMethodIfAvailable( clazz, methodName, new Class[] { valueClass } );
+
+        if( result != null )
+        {
+            return result;
+        }
+
+        Method[] methods = clazz.getMethods();
+
+        for( int i = 0; i < methods.length; i++ )
+        {
+            Class[] parameterTypes = methods[ i ].getParameterTypes();
+
+            if( parameterTypes.length != 1 || !methods[ i ].getName().equals( methodName ) )
+            {
+                continue;
+            }
+
+            boolean accepts = valueClass == null ?
+                              !parameterTypes[ 0 ].isPrimitive() :
+                              ClassUtils.isAssignable( parameterTypes[ 0 ], valueClass );
+
+            if( accepts && ( result == null || ClassUtils.isAssignable( result.getParameterTypes()[ 0 ], parameterTypes[ 0 ] ) ) )
+            {
+                result = methods[ i ];
+            }
+        }
+
+        if( result == null )
+        {
+            throw new NoSuchMethodException( clazz.getName() + "." + methodName + "(" + ( valueClass == null ? "null" : valueClass.getName() ) + ")" );
+        }
+
+        return result;
+    }
+
+    private static PropertyAccessor[] createFieldTable( Class clazz )
+    {
+        List<FieldPropertyAccessor> result = new ArrayList<FieldPropertyAccessor>();
+
+        Set<String> names = new HashSet<String>();
+
+        for( Class c = clazz; c != null && c != Object.class; c = c.getSuperclass() )
+        {
+            Field[] declared = c.getDeclaredFields();
+
+            for( int i = 0; i < declared.length; i++ )
+            {
+                int modifiers = declared[ i ].getModifiers();
+
+                if( Modifier.isStatic( modifiers ) || Modifier.isTransient( modifiers ) || declared[ i ].isSynthetic() )
+                {
+                    continue;
+                }
+
+                if( names.add( declared[ i ].getName() ) )
+                {
+                    result.add( new FieldPropertyAccessor( declared[ i ] ) );
+                }
+            }
+        }
+
+        Collections.sort( result, new Comparator<FieldPropertyAccessor>()
+        {
+            public int compare( FieldPropertyAccessor a1, FieldPropertyAccessor a2 )
+            {
+                return a1.getPropertyName().compareTo( a2.getPropertyName() );
+            }
+        } );
+
+        return result.toArray( new PropertyAccessor[result.size()] );
+    }
+
+    private static ClassAccessors accessorsOf( Class clazz )
+    {
+        ClassAccessors result = classes.get( clazz );
+
+        if( result != null )
+        {
+            return result;
+        }
+
+        if( isCacheSafe( clazz ) )
+        {
+            result = new ClassAccessors();
+
+            ClassAccessors existing = classes.putIfAbsent( clazz, result );
+
+            return existing != null ? existing : result;
+        }
+
+        synchronized( foreignClasses )
+        {
+            Reference<ClassAccessors> cached = foreignClasses.get( clazz );
+
+            result = cached == null ? null : cached.get();
+
+            if( result == null )
+            {
+                result = new ClassAccessors();
+
+                foreignClasses.put( clazz, new SoftReference<ClassAccessors>( result ) );
+            }
+
+            return result;
+        }
+    }
+
+    private static final class ClassAccessors
+    {
+        final ConcurrentMap<String, PropertyAccessor> properties = new ConcurrentHashMap<String, PropertyAccessor>();
+        final ConcurrentMap<PropertyDescriptor, PropertyAccessor> descriptors =
+            new ConcurrentHashMap<PropertyDescriptor, PropertyAccessor>();
+        final ConcurrentMap<String, ConcurrentMap<Class, PropertyAccessor>> writers =
+            new ConcurrentHashMap<String, ConcurrentMap<Class, PropertyAccessor>>();
+        volatile PropertyAccessor[] fields;
+
+        ConcurrentMap<Class, PropertyAccessor> writersNamed( String methodName )
+        {
+            ConcurrentMap<Class, PropertyAccessor> result = writers.get( methodName );
+
+            if( result == null )
+            {
+                result = new ConcurrentHashMap<Class, PropertyAccessor>();
+
+                ConcurrentMap<Class, PropertyAccessor> existing = writers.putIfAbsent( methodName, result );
+
+                if( existing != null )
+                {
+                    result = existing;
+                }
+            }
+
+            return result;
+        }
+    }
+
+}
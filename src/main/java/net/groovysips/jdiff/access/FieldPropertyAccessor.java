@@ -0,0 +1,176 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.access;
+
+import java.lang.reflect.Field;
+
+/**
+ * Accessor that reads and writes the declared field directly, bypassing getters and setters. Final fields are
+ * written as well, which is what lets the field access mode merge into the immutable looking beans.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class FieldPropertyAccessor extends AbstractPropertyAccessor
+{
+
+    private final Field field;
+
+    public FieldPropertyAccessor( Field field )
+    {
+        super( field.getName() );
+
+        this.field = field;
+
+        // unlike ReflectionUtils.makeAccessible() this opens the public final fields for writing too.
+        field.setAccessible( true );
+    }
+
+    public Field getField()
+    {
+        return field;
+    }
+
+    public Object read( Object target )
+    {
+        try
+        {
+            return field.get( target );
+        }
+        catch( IllegalAccessException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    public void write( Object target, Object value )
+    {
+        try
+        {
+            field.set( target, value );
+        }
+        catch( IllegalAccessException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    public long readBits( Object target )
+    {
+        Class type = field.getType();
+
+        try
+        {
+            if( type == Integer.TYPE )
+            {
+                return field.getInt( target );
+            }
+            else if( type == Long.TYPE )
+            {
+                return field.getLong( target );
+            }
+            else if( type == Double.TYPE )
+            {
+                return Double.doubleToLongBits( field.getDouble( target ) );
+            }
+            else if( type == Boolean.TYPE )
+            {
+                return field.getBoolean( target ) ? 1 : 0;
+            }
+            else if( type == Float.TYPE )
+            {
+                return Float.floatToIntBits( field.getFloat( target ) );
+            }
+            else if( type == Short.TYPE )
+            {
+                return field.getShort( target );
+            }
+            else if( type == Byte.TYPE )
+            {
+                return field.getByte( target );
+            }
+            else if( type == Character.TYPE )
+            {
+                return field.getChar( target );
+            }
+        }
+        catch( IllegalAccessException e )
+        {
+            throw new RuntimeException( e );
+        }
+
+        return super.readBits( target );
+    }
+
+    public void writeBits( Object target, long bits )
+    {
+        Class type = field.getType();
+
+        try
+        {
+            if( type == Integer.TYPE )
+            {
+                field.setInt( target, (int) bits );
+            }
+            else if( type == Long.TYPE )
+            {
+                field.setLong( target, bits );
+            }
+            else if( type == Double.TYPE )
+            {
+                field.setDouble( target, Double.longBitsToDouble( bits ) );
+            }
+            else if( type == Boolean.TYPE )
+            {
+                field.setBoolean( target, bits != 0 );
+            }
+            else if( type == Float.TYPE )
+            {
+                field.setFloat( target, Float.intBitsToFloat( (int) bits ) );
+            }
+            else if( type == Short.TYPE )
+            {
+                field.setShort( target, (short) bits );
+            }
+            else if( type == Byte.TYPE )
+            {
+                field.setByte( target, (byte) bits );
+            }
+            else if( type == Character.TYPE )
+            {
+                field.setChar( target, (char) bits );
+            }
+            else
+            {
+                super.writeBits( target, bits );
+            }
+        }
+        catch( IllegalAccessException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    public boolean isReadable()
+    {
+        return true;
+    }
+
+    public boolean isWritable()
+    {
+        return true;
+    }
+
+}
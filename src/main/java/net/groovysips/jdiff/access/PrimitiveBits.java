@@ -0,0 +1,114 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.access;
+
+/**
+ * Conversion of the primitive values to and from their long bits. Two values of a type are equal (in the sense of
+ * the wrappers' equals) when their bits are equal: whole numbers and chars are widened, booleans are 0 or 1, floating
+ * point values go through {@link Double#doubleToLongBits(double)} and {@link Float#floatToIntBits(float)}.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public abstract class PrimitiveBits
+{
+
+    /**
+     * @param type  - primitive type
+     * @param value - boxed value of the type
+     * @return bits of the value
+     */
+    public static long toBits( Class type, Object value )
+    {
+        if( type == Integer.TYPE )
+        {
+            return ( (Integer) value ).intValue();
+        }
+        else if( type == Long.TYPE )
+        {
+            return ( (Long) value ).longValue();
+        }
+        else if( type == Double.TYPE )
+        {
+            return Double.doubleToLongBits( ( (Double) value ).doubleValue() );
+        }
+        else if( type == Boolean.TYPE )
+        {
+            return ( (Boolean) value ).booleanValue() ? 1 : 0;
+        }
+        else if( type == Float.TYPE )
+        {
+            return Float.floatToIntBits( ( (Float) value ).floatValue() );
+        }
+        else if( type == Short.TYPE )
+        {
+            return ( (Short) value ).shortValue();
+        }
+        else if( type == Byte.TYPE )
+        {
+            return ( (Byte) value ).byteValue();
+        }
+        else if( type == Character.TYPE )
+        {
+            return ( (Character) value ).charValue();
+        }
+
+        throw new IllegalArgumentException( "Not a primitive type - " + type );
+    }
+
+    /**
+     * @param type - primitive type
+     * @param bits - bits of a value of the type
+     * @return boxed value
+     */
+    public static Object fromBits( Class type, long bits )
+    {
+        if( type == Integer.TYPE )
+        {
+            return Integer.valueOf( (int) bits );
+        }
+        else if( type == Long.TYPE )
+        {
+            return Long.valueOf( bits );
+        }
+        else if( type == Double.TYPE )
+        {
+            return Double.valueOf( Double.longBitsToDouble( bits ) );
+        }
+        else if( type == Boolean.TYPE )
+        {
+            return Boolean.valueOf( bits != 0 );
+        }
+        else if( type == Float.TYPE )
+        {
+            return Float.valueOf( Float.intBitsToFloat( (int) bits ) );
+        }
+        else if( type == Short.TYPE )
+        {
+            return Short.valueOf( (short) bits );
+        }
+        else if( type == Byte.TYPE )
+        {
+            return Byte.valueOf( (byte) bits );
+        }
+        else if( type == Character.TYPE )
+        {
+            return Character.valueOf( (char) bits );
+        }
+
+        throw new IllegalArgumentException( "Not a primitive type - " + type );
+    }
+
+}
@@ -0,0 +1,68 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.access;
+
+/**
+ * Reads and writes a single property of a bean. Accessors are resolved once per class by {@link Accessors}
+ * and are safe to share between threads.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface PropertyAccessor
+{
+
+    /**
+     * @return name of the property this accessor reads and writes.
+     */
+    String getPropertyName();
+
+    /**
+     * @param target - object to read the property value from
+     * @return value of the property
+     * @throws RuntimeException - if the property can not be read.
+     */
+    Object read( Object target );
+
+    /**
+     * @param target - object to write the property value into
+     * @param value  - the value to write
+     * @throws RuntimeException - if the property can not be written.
+     */
+    void write( Object target, Object value );
+
+    /**
+     * Reads a primitive property without boxing its value.
+     *
+     * @param target - object to read the property value from
+     * @return {@link PrimitiveBits} of the value
+     * @throws RuntimeException - if the property can not be read or is not of a primitive type.
+     */
+    long readBits( Object target );
+
+    /**
+     * Writes a primitive property without boxing its value.
+     *
+     * @param target - object to write the property value into
+     * @param bits   - {@link PrimitiveBits} of the value
+     * @throws RuntimeException - if the property can not be written or is not of a primitive type.
+     */
+    void writeBits( Object target, long bits );
+
+    boolean isReadable();
+
+    boolean isWritable();
+
+}
@@ -0,0 +1,142 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.access;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Accessor that goes through {@link Method#invoke(Object, Object[])}. It is used whenever an accessor can not be
+ * generated, i.e. for the non-public classes and methods.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class ReflectivePropertyAccessor extends AbstractPropertyAccessor
+{
+
+    private final Method readMethod;
+    private final Method writeMethod;
+
+    public ReflectivePropertyAccessor( String propertyName, Method readMethod, Method writeMethod )
+    {
+        super( propertyName );
+
+        this.readMethod = readMethod;
+        this.writeMethod = writeMethod;
+
+        if( readMethod != null )
+        {
+            ReflectionUtils.makeAccessible( readMethod );
+        }
+
+        if( writeMethod != null )
+        {
+            ReflectionUtils.makeAccessible( writeMethod );
+        }
+    }
+
+    public Object read( Object target )
+    {
+        if( readMethod == null )
+        {
+            return super.read( target );
+        }
+
+        try
+        {
+            return readMethod.invoke( target );
+        }
+        catch( InvocationTargetException e )
+        {
+            throw rethrow( e.getTargetException() );
+        }
+        catch( IllegalAccessException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    public void write( Object target, Object value )
+    {
+        if( writeMethod == null )
+        {
+            super.write( target, value );
+            return;
+        }
+
+        try
+        {
+            writeMethod.invoke( target, value );
+        }
+        catch( InvocationTargetException e )
+        {
+            throw rethrow( e.getTargetException() );
+        }
+        catch( IllegalAccessException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    public long readBits( Object target )
+    {
+        if( readMethod == null || !readMethod.getReturnType().isPrimitive() )
+        {
+            return super.readBits( target );
+        }
+
+        return PrimitiveBits.toBits( readMethod.getReturnType(), read( target ) );
+    }
+
+    public void writeBits( Object target, long bits )
+    {
+        if( writeMethod == null || !writeMethod.getParameterTypes()[ 0 ].isPrimitive() )
+        {
+            super.writeBits( target, bits );
+            return;
+        }
+
+        write( target, PrimitiveBits.fromBits( writeMethod.getParameterTypes()[ 0 ], bits ) );
+    }
+
+    public boolean isReadable()
+    {
+        return readMethod != null;
+    }
+
+    public boolean isWritable()
+    {
+        return writeMethod != null;
+    }
+
+    // HELPERS
+    private static RuntimeException rethrow( Throwable t )
+    {
+        if( t instanceof RuntimeException )
+        {
+            return (RuntimeException) t;
+        }
+
+        if( t instanceof Error )
+        {
+            throw (Error) t;
+        }
+
+        return new RuntimeException( t );
+    }
+
+}
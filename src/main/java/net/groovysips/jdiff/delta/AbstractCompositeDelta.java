@@ -15,27 +15,38 @@
 package net.groovysips.jdiff.delta;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import net.groovysips.jdiff.CompositeDelta;
 import net.groovysips.jdiff.Delta;
 import net.groovysips.jdiff.DeltaVisitor;
+import static net.groovysips.jdiff.StringUtils.buildLogableString;
 
 /**
  * @author Alex Shneyderman
  * @since 0.3
  */
-public abstract class AbstractCompositeDelta implements CompositeDelta
+public abstract class AbstractCompositeDelta implements CompositeDelta, TypedDelta
 {
 
-    private List<Delta> children = new ArrayList<Delta>();
+    // created with the first child, most of the containers a diff starts end up empty.
+    private List<Delta> children;
 
+    /**
+     * @return children of the delta, add them with {@link #addChild(Delta)}.
+     */
     public List<Delta> children()
     {
-        return children;
+        return children == null ? Collections.<Delta>emptyList() : children;
     }
 
     public void addChild( Delta child )
     {
+        if( children == null )
+        {
+            children = new ArrayList<Delta>( 4 );
+        }
+
         children.add( child );
     }
 
@@ -43,18 +54,75 @@ public abstract class AbstractCompositeDelta implements CompositeDelta
     {
         visitor.visit( this );
 
-        for( Delta child : children )
+        if( children != null )
         {
-            visitor.visitChild( child );
+            for( int i = 0; i < children.size(); i++ )
+            {
+                visitor.visitChild( children.get( i ) );
+            }
         }
 
         visitor.endVisit( this );
     }
 
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        if( !acceptStart( visitor ) )
+        {
+            return;
+        }
+
+        if( children != null )
+        {
+            for( int i = 0; i < children.size(); i++ )
+            {
+                acceptChild( children.get( i ), visitor );
+            }
+        }
+
+        acceptEnd( visitor );
+    }
+
+    /**
+     * Calls back the visit method of the visitor for the type of this delta.
+     *
+     * @return true if the children and the end of this delta are to be visited.
+     */
+    protected abstract boolean acceptStart( TypedDeltaVisitor visitor );
+
+    /**
+     * Calls back the end method of the visitor for the type of this delta.
+     */
+    protected abstract void acceptEnd( TypedDeltaVisitor visitor );
+
+    /**
+     * Lets the visitor visit any delta, {@link Delta#NULL} is skipped.
+     *
+     * @throws RuntimeException - if the delta is not a {@link TypedDelta}.
+     */
+    static void acceptChild( Delta delta, TypedDeltaVisitor visitor )
+    {
+        if( delta == Delta.NULL )
+        {
+            return;
+        }
+
+        if( !( delta instanceof TypedDelta ) )
+        {
+            String msg = buildLogableString( "We do not know yet how to deal with this delta, it is not a TypedDelta.",
+                                             new Object[][]{
+                                                 { "delta", delta }
+                                             } );
+            throw new RuntimeException( msg );
+        }
+
+        ( (TypedDelta) delta ).accept( visitor );
+    }
+
     @Override public String toString()
     {
         return this.getClass().getSimpleName() + "{" +
-               "children=" + ( children == null ? "null" : children.size() ) +
+               "children=" + children().size() +
                '}';
     }
 }
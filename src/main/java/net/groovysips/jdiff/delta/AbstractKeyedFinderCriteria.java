@@ -0,0 +1,66 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Keyed criteria that uses its {@link #critValues()} as the key. Subclasses only need to provide the criteria values
+ * of the item they look for and of a candidate item.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public abstract class AbstractKeyedFinderCriteria implements KeyedFinderCriteria
+{
+
+    /**
+     * @param candidate - collection item
+     * @return criteria values of the candidate, in the same form as {@link #critValues()}, or null.
+     */
+    protected abstract Map<String, Object> critValuesOf( Object candidate );
+
+    public Object getKey()
+    {
+        return critValues();
+    }
+
+    public Object keyOf( Object candidate )
+    {
+        return candidate == null ? null : critValuesOf( candidate );
+    }
+
+    public Object find( Collection collection )
+    {
+        Object key = getKey();
+
+        if( key == null || collection == null )
+        {
+            return null;
+        }
+
+        for( Object candidate : collection )
+        {
+            if( key.equals( keyOf( candidate ) ) )
+            {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,73 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.CompositeDelta;
+
+/**
+ * Changes of an array property. The target array is re-allocated when its length is different from the new one,
+ * the children are {@link ArrayRangeDelta}s copied over it.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class ArrayDelta extends AbstractCompositeDelta implements CompositeDelta
+{
+
+    private String propertyName;
+    private Class componentType;
+    private int length;
+
+    public String getPropertyName()
+    {
+        return propertyName;
+    }
+
+    public Class getComponentType()
+    {
+        return componentType;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    public ArrayDelta( String propertyName, Class componentType, int length )
+    {
+        this.propertyName = propertyName;
+        this.componentType = componentType;
+        this.length = length;
+    }
+
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitArray( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endArray( this );
+    }
+
+    @Override public String toString()
+    {
+        return "ArrayDelta{" +
+               "componentType=" + componentType +
+               ", length=" + length +
+               ", propertyName='" + propertyName + '\'' +
+               '}';
+    }
+}
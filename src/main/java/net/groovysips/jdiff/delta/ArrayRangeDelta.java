@@ -0,0 +1,72 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.lang.reflect.Array;
+import net.groovysips.jdiff.DeltaVisitor;
+
+/**
+ * Replaces a range of the array elements starting at the offset with the elements of the slice. The slice is an array
+ * of the same component type as the target, primitive arrays stay primitive.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class ArrayRangeDelta implements TypedDelta
+{
+
+    private int offset;
+
+    private Object slice;
+
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    public Object getSlice()
+    {
+        return slice;
+    }
+
+    public int getLength()
+    {
+        return Array.getLength( slice );
+    }
+
+    public ArrayRangeDelta( int offset, Object slice )
+    {
+        this.offset = offset;
+        this.slice = slice;
+    }
+
+    public void visit( DeltaVisitor visitor )
+    {
+        visitor.visit( this );
+    }
+
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitArrayRange( this );
+    }
+
+    public String toString()
+    {
+        return "ArrayRangeDelta{" +
+               "offset=" + offset +
+               ", length=" + getLength() +
+               '}';
+    }
+}
@@ -0,0 +1,270 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Finds the ranges in which two arrays of the same component type differ. Every primitive component type has a loop
+ * of its own so that the elements are never boxed. Ranges separated by only a few equal elements are joined, a range
+ * delta costs more than re-sending a handful of elements.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+final class ArrayRanges
+{
+
+    // equal runs shorter than this do not split a range.
+    static final int GAP = 8;
+
+    private final List<int[]> ranges = new ArrayList<int[]>();
+
+    private int start = -1;
+    private int end = -1;
+
+    private ArrayRanges()
+    {
+    }
+
+    /**
+     * Compares the arrays element by element up to the length of the shorter one; when the modified array is longer
+     * its tail is reported as changed as well.
+     *
+     * @param original - array, can not be null
+     * @param modified - array of the same component type, can not be null
+     * @return [from, to) ranges of the modified array that are different from the original.
+     */
+    static List<int[]> changed( Object original, Object modified )
+    {
+        ArrayRanges result = new ArrayRanges();
+
+        Class componentType = modified.getClass().getComponentType();
+
+        if( componentType == int.class )
+        {
+            result.scan( (int[]) original, (int[]) modified );
+        }
+        else if( componentType == long.class )
+        {
+            result.scan( (long[]) original, (long[]) modified );
+        }
+        else if( componentType == double.class )
+        {
+            result.scan( (double[]) original, (double[]) modified );
+        }
+        else if( componentType == byte.class )
+        {
+            result.scan( (byte[]) original, (byte[]) modified );
+        }
+        else if( componentType == float.class )
+        {
+            result.scan( (float[]) original, (float[]) modified );
+        }
+        else if( componentType == short.class )
+        {
+            result.scan( (short[]) original, (short[]) modified );
+        }
+        else if( componentType == char.class )
+        {
+            result.scan( (char[]) original, (char[]) modified );
+        }
+        else if( componentType == boolean.class )
+        {
+            result.scan( (boolean[]) original, (boolean[]) modified );
+        }
+        else
+        {
+            result.scan( (Object[]) original, (Object[]) modified );
+        }
+
+        return result.ranges;
+    }
+
+    // HELPERS
+    private void scan( int[] a, int[] b )
+    {
+        int n = Math.min( a.length, b.length );
+
+        for( int i = 0; i < n; i++ )
+        {
+            if( a[ i ] != b[ i ] )
+            {
+                mark( i );
+            }
+        }
+
+        finish( n, b.length );
+    }
+
+    private void scan( long[] a, long[] b )
+    {
+        int n = Math.min( a.length, b.length );
+
+        for( int i = 0; i < n; i++ )
+        {
+            if( a[ i ] != b[ i ] )
+            {
+                mark( i );
+            }
+        }
+
+        finish( n, b.length );
+    }
+
+    private void scan( double[] a, double[] b )
+    {
+        int n = Math.min( a.length, b.length );
+
+        // bitwise, the same way Arrays.equals compares doubles.
+        for( int i = 0; i < n; i++ )
+        {
+            if( Double.doubleToLongBits( a[ i ] ) != Double.doubleToLongBits( b[ i ] ) )
+            {
+                mark( i );
+            }
+        }
+
+        finish( n, b.length );
+    }
+
+    private void scan( byte[] a, byte[] b )
+    {
+        int n = Math.min( a.length, b.length );
+
+        for( int i = 0; i < n; i++ )
+        {
+            if( a[ i ] != b[ i ] )
+            {
+                mark( i );
+            }
+        }
+
+        finish( n, b.length );
+    }
+
+    private void scan( float[] a, float[] b )
+    {
+        int n = Math.min( a.length, b.length );
+
+        for( int i = 0; i < n; i++ )
+        {
+            if( Float.floatToIntBits( a[ i ] ) != Float.floatToIntBits( b[ i ] ) )
+            {
+                mark( i );
+            }
+        }
+
+        finish( n, b.length );
+    }
+
+    private void scan( short[] a, short[] b )
+    {
+        int n = Math.min( a.length, b.length );
+
+        for( int i = 0; i < n; i++ )
+        {
+            if( a[ i ] != b[ i ] )
+            {
+                mark( i );
+            }
+        }
+
+        finish( n, b.length );
+    }
+
+    private void scan( char[] a, char[] b )
+    {
+        int n = Math.min( a.length, b.length );
+
+        for( int i = 0; i < n; i++ )
+        {
+            if( a[ i ] != b[ i ] )
+            {
+                mark( i );
+            }
+        }
+
+        finish( n, b.length );
+    }
+
+    private void scan( boolean[] a, boolean[] b )
+    {
+        int n = Math.min( a.length, b.length );
+
+        for( int i = 0; i < n; i++ )
+        {
+            if( a[ i ] != b[ i ] )
+            {
+                mark( i );
+            }
+        }
+
+        finish( n, b.length );
+    }
+
+    private void scan( Object[] a, Object[] b )
+    {
+        int n = Math.min( a.length, b.length );
+
+        for( int i = 0; i < n; i++ )
+        {
+            if( !ObjectUtils.nullSafeEquals( a[ i ], b[ i ] ) )
+            {
+                mark( i );
+            }
+        }
+
+        finish( n, b.length );
+    }
+
+    private void mark( int index )
+    {
+        if( start >= 0 && index - end < GAP )
+        {
+            end = index + 1;
+            return;
+        }
+
+        flush();
+
+        start = index;
+        end = index + 1;
+    }
+
+    private void finish( int compared, int length )
+    {
+        if( length > compared )
+        {
+            mark( compared );
+            end = length;
+        }
+
+        flush();
+    }
+
+    private void flush()
+    {
+        if( start >= 0 )
+        {
+            ranges.add( new int[]{ start, end } );
+        }
+
+        start = -1;
+    }
+
+}
@@ -0,0 +1,350 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State of a single build: the modified objects visited so far (by identity), the originals each of them has been
+ * diffed against and the delta that created or updated it, plus the structural hashes computed so far. This is what stops the builder from going around in
+ * circles on back references and from diffing a shared object once per reference.
+ * <p/>
+ * Chunks of a parallel build get a context of their own that sees what the parent context has seen when the chunk
+ * was forked. The parent takes in what the chunks have seen once they are done.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+class BuildContext
+{
+
+    private final BuildContext parent;
+    private final AtomicInteger referenceIds;
+    private final Map<Object, Visit> visits = new IdentityHashMap<Object, Visit>();
+    private StructuralHasher hasher;
+    private DeltaStream stream;
+
+    BuildContext()
+    {
+        this( null, new AtomicInteger() );
+    }
+
+    private BuildContext( BuildContext parent, AtomicInteger referenceIds )
+    {
+        this.parent = parent;
+        this.referenceIds = referenceIds;
+    }
+
+    /**
+     * @return a context for a chunk of a parallel build.
+     */
+    BuildContext fork()
+    {
+        return new BuildContext( this, referenceIds );
+    }
+
+    boolean isFork()
+    {
+        return parent != null;
+    }
+
+    /**
+     * @param builder - builder whose plans the hashes are computed from
+     * @return hasher of this build, a fork reuses the hashes computed by its parent.
+     */
+    StructuralHasher hasher( DefaultDeltaBuilder builder )
+    {
+        if( hasher == null )
+        {
+            hasher = new StructuralHasher( builder, parent == null ? null : parent.hasher );
+        }
+
+        return hasher;
+    }
+
+    /**
+     * @return stream the bean containers of this build are pushed into, null if the deltas are to be collected.
+     */
+    DeltaStream getStream()
+    {
+        return stream;
+    }
+
+    void setStream( DeltaStream stream )
+    {
+        this.stream = stream;
+    }
+
+    /**
+     * @param modified
+     * @return visit of the object or null if the object has not been visited yet.
+     */
+    Visit visitOf( Object modified )
+    {
+        for( BuildContext context = this; context != null; context = context.parent )
+        {
+            Visit result = context.visits.get( modified );
+
+            if( result != null )
+            {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Records that the object is being diffed against the original (null for a new object) by the container delta.
+     */
+    void enter( Object modified, Object original, Referenceable container )
+    {
+        Visit visit = visitFor( modified );
+
+        if( visit.container == null && !visit.pending )
+        {
+            visit.container = container;
+        }
+
+        visit.addOriginal( original );
+    }
+
+    /**
+     * Records that the object is being diffed against the original by a container delta that is not there yet. The
+     * container is created by {@link #containerOf(Visit, String)} once the diff finds a change, or by
+     * {@link #referenceIdOf(Visit)} once a reference to the object turns up.
+     *
+     * @return the visit if references to the object are to resolve to the container of this diff, null otherwise.
+     */
+    Visit enterLazily( Object modified, Object original, String propertyName )
+    {
+        Visit visit = visitFor( modified );
+
+        visit.addOriginal( original );
+
+        if( visit.container != null || visit.pending )
+        {
+            return null;
+        }
+
+        visit.pending = true;
+        visit.propertyName = propertyName;
+
+        return visit;
+    }
+
+    /**
+     * @param owned        - visit returned by {@link #enterLazily(Object, Object, String)}, may be null
+     * @param propertyName - name of the property of a container that nobody refers to
+     * @return container of the visit, created on the first request; a new container if there is no visit.
+     */
+    SimpleContainerDelta containerOf( Visit owned, String propertyName )
+    {
+        return owned == null ? new SimpleContainerDelta( propertyName ) : (SimpleContainerDelta) owned.openContainer();
+    }
+
+    /**
+     * Records that the container delta is done. A container that is dropped from the graph can not be referred to.
+     */
+    void leave( Object modified, Referenceable container, boolean emitted )
+    {
+        Visit visit = visits.get( modified );
+
+        if( !emitted && visit != null && visit.container == container )
+        {
+            visit.container = null;
+        }
+    }
+
+    /**
+     * Records that the diff of a visit entered lazily is done.
+     */
+    void leave( Visit owned, boolean emitted )
+    {
+        if( owned == null )
+        {
+            return;
+        }
+
+        owned.pending = false;
+
+        if( !emitted )
+        {
+            owned.container = null;
+        }
+    }
+
+    /**
+     * @return reference id of the visit's container, assigned on the first request.
+     */
+    int referenceIdOf( Visit visit )
+    {
+        return referenceIdOf( visit.openContainer() );
+    }
+
+    /**
+     * @return reference id of the container, assigned on the first request.
+     */
+    int referenceIdOf( Referenceable container )
+    {
+        // containers of a parent context can be referred to from several chunks at the same time.
+        synchronized( container )
+        {
+            if( container.getReferenceId() == 0 )
+            {
+                container.setReferenceId( referenceIds.incrementAndGet() );
+            }
+
+            return container.getReferenceId();
+        }
+    }
+
+    /**
+     * Takes in the visits of a finished fork.
+     */
+    void join( BuildContext fork )
+    {
+        for( Map.Entry<Object, Visit> entry : fork.visits.entrySet() )
+        {
+            Visit visit = visits.get( entry.getKey() );
+
+            if( visit == null )
+            {
+                visits.put( entry.getKey(), entry.getValue() );
+            }
+            else
+            {
+                visit.addOriginals( entry.getValue() );
+
+                if( visit.container == null && !visit.pending )
+                {
+                    visit.container = entry.getValue().container;
+                }
+            }
+        }
+    }
+
+    // HELPERS
+    private Visit visitFor( Object modified )
+    {
+        Visit visit = visits.get( modified );
+
+        if( visit == null )
+        {
+            Visit inherited = parent == null ? null : parent.visitOf( modified );
+
+            // inherited visits are shared with the other chunks, they are copied rather than touched.
+            visit = new Visit( inherited == null || !inherited.isReferable() ? null : inherited.openContainer() );
+
+            if( inherited != null )
+            {
+                visit.addOriginals( inherited );
+            }
+
+            visits.put( modified, visit );
+        }
+
+        return visit;
+    }
+
+    static class Visit
+    {
+        // the only original or the first one, the map is there for the objects diffed against several originals.
+        private Object original;
+        private Map<Object, Object> originals;
+        private Referenceable container;
+
+        // true while the container of the visit may still be created lazily.
+        private boolean pending;
+        private String propertyName;
+
+        Visit( Referenceable container )
+        {
+            this.container = container;
+        }
+
+        /**
+         * @return true if the object has been (or is being) diffed against this original.
+         */
+        boolean hasOriginal( Object original )
+        {
+            return this.original == original || ( originals != null && originals.containsKey( original ) );
+        }
+
+        /**
+         * @return delta that created or updated the object, null if there is no such delta in the graph (yet).
+         */
+        Referenceable getContainer()
+        {
+            return container;
+        }
+
+        /**
+         * @return true if a reference to the object can be resolved to the delta that creates or updates it.
+         */
+        boolean isReferable()
+        {
+            return container != null || pending;
+        }
+
+        // several chunks may turn up a reference to an object being diffed further up the graph at the same time.
+        synchronized Referenceable openContainer()
+        {
+            if( container == null && pending )
+            {
+                container = new SimpleContainerDelta( propertyName );
+            }
+
+            return container;
+        }
+
+        void addOriginal( Object original )
+        {
+            if( original == null || hasOriginal( original ) )
+            {
+                return;
+            }
+
+            if( this.original == null )
+            {
+                this.original = original;
+                return;
+            }
+
+            if( originals == null )
+            {
+                originals = new IdentityHashMap<Object, Object>();
+            }
+
+            originals.put( original, original );
+        }
+
+        void addOriginals( Visit other )
+        {
+            addOriginal( other.original );
+
+            if( other.originals != null )
+            {
+                for( Object original : other.originals.keySet() )
+                {
+                    addOriginal( original );
+                }
+            }
+        }
+    }
+
+}
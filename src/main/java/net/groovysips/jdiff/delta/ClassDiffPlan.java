@@ -0,0 +1,64 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+/**
+ * Everything the builder needs to know about a class in order to diff its instances: the ordered,
+ * exclude-filtered property slots. Plans are immutable and are shared between threads.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class ClassDiffPlan
+{
+
+    private final Class beanClass;
+    private final PropertySlot[] slots;
+
+    public ClassDiffPlan( Class beanClass, PropertySlot[] slots )
+    {
+        this.beanClass = beanClass;
+        this.slots = slots;
+    }
+
+    public Class getBeanClass()
+    {
+        return beanClass;
+    }
+
+    /**
+     * @return copy of the slots in diffing order, system properties are not included.
+     */
+    public PropertySlot[] getSlots()
+    {
+        return slots.clone();
+    }
+
+    /**
+     * @return the slots themselves, shared - do not modify.
+     */
+    PropertySlot[] slots()
+    {
+        return slots;
+    }
+
+    @Override public String toString()
+    {
+        return "ClassDiffPlan{" +
+               "beanClass=" + beanClass +
+               ", slots=" + slots.length +
+               '}';
+    }
+}
@@ -15,7 +15,6 @@
 package net.groovysips.jdiff.delta;
 
 import net.groovysips.jdiff.DeltaVisitor;
-import net.groovysips.jdiff.Delta;
 
 /**
  * TODO: provide javadoc.
@@ -23,7 +22,7 @@ import net.groovysips.jdiff.Delta;
  * @author Alex Shneyderman
  * @since 0.5
  */
-public class ClearAllDelta implements Delta
+public class ClearAllDelta implements TypedDelta
 {
 
     public void visit( DeltaVisitor visitor )
@@ -31,6 +30,11 @@ public class ClearAllDelta implements Delta
         visitor.visit( this );
     }
 
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitClearAll( this );
+    }
+
     public String toString()
     {
         return "ClearAllDelta{}";
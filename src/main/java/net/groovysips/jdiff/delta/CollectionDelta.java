@@ -49,6 +49,16 @@ public class CollectionDelta extends AbstractCompositeDelta implements Composite
      *   2. 
      */
 
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitCollection( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endCollection( this );
+    }
+
     @Override public String toString()
     {
         return "CollectionDelta{" +
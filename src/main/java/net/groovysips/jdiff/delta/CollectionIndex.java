@@ -0,0 +1,240 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the items of a collection a {@link CollectionDelta} is merged into. Items are keyed with
+ * {@link KeyedFinderCriteria#keyOf(Object)} of the criteria the item deltas come with, an index per kind of criteria
+ * built on its first lookup. Removed and replaced items are only marked, {@link #flush()} takes care of them all in a
+ * single pass over the collection.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+class CollectionIndex
+{
+
+    private final Collection items;
+
+    // items by their keys, per class of the criteria that keyed them.
+    private final Map<Class, Keys> keys = new HashMap<Class, Keys>( 4 );
+
+    private final Map<Object, Object> removed = new IdentityHashMap<Object, Object>();
+
+    private final Map<Object, Object> replaced = new IdentityHashMap<Object, Object>();
+
+    CollectionIndex( Collection items )
+    {
+        this.items = items;
+    }
+
+    /**
+     * @param crit - criteria of the item
+     * @return item the criteria looks for or null if there is no such item (any more).
+     */
+    Object find( FinderCriteria crit )
+    {
+        Object key = crit instanceof KeyedFinderCriteria ? ( (KeyedFinderCriteria) crit ).getKey() : null;
+
+        if( key == null )
+        {
+            // the criteria has to look at the collection as it is.
+            flush();
+
+            return crit.find( items );
+        }
+
+        return keysOf( (KeyedFinderCriteria) crit ).items.get( key );
+    }
+
+    /**
+     * Marks the item as removed, it can not be found any more.
+     *
+     * @param item
+     */
+    void remove( Object item )
+    {
+        removed.put( item, item );
+
+        for( Keys k : keys.values() )
+        {
+            Object key = k.criteria.keyOf( item );
+
+            if( key != null && k.items.get( key ) == item )
+            {
+                k.items.remove( key );
+            }
+        }
+    }
+
+    /**
+     * Marks the item as replaced, the replacement is found in its place from now on.
+     *
+     * @param item
+     * @param replacement
+     */
+    void replace( Object item, Object replacement )
+    {
+        replaced.put( item, replacement );
+
+        for( Keys k : keys.values() )
+        {
+            Object key = k.criteria.keyOf( item );
+
+            if( key != null && k.items.get( key ) == item )
+            {
+                k.items.put( key, replacement );
+            }
+        }
+    }
+
+    /**
+     * Lets the indexes know of an item added to the collection.
+     *
+     * @param item
+     */
+    void add( Object item )
+    {
+        for( Keys k : keys.values() )
+        {
+            k.put( item );
+        }
+    }
+
+    /**
+     * Removes the items marked as removed from the collection, the first occurrence of each, and puts the replacements
+     * in place of the replaced ones. Items of a collection other than a list are replaced at its end.
+     */
+    @SuppressWarnings( "unchecked" )
+    void flush()
+    {
+        if( removed.isEmpty() && replaced.isEmpty() )
+        {
+            return;
+        }
+
+        if( items instanceof List )
+        {
+            // rebuilt rather than changed one by one, removing from the middle of a list moves the rest of it.
+            List<Object> retained = new ArrayList<Object>( items.size() );
+
+            for( Object item : items )
+            {
+                Object current = currentOf( item );
+
+                if( current == null || removed.remove( current ) == null )
+                {
+                    retained.add( current );
+                }
+            }
+
+            items.clear();
+            items.addAll( retained );
+        }
+        else
+        {
+            List<Object> replacements = new ArrayList<Object>( replaced.size() );
+
+            for( Iterator iter = items.iterator(); iter.hasNext(); )
+            {
+                Object item = iter.next();
+
+                Object current = currentOf( item );
+
+                if( current == null )
+                {
+                    continue;
+                }
+
+                if( removed.remove( current ) != null )
+                {
+                    iter.remove();
+                }
+                else if( current != item )
+                {
+                    replacements.add( current );
+                    iter.remove();
+                }
+            }
+
+            items.addAll( replacements );
+        }
+
+        removed.clear();
+        replaced.clear();
+    }
+
+    // HELPERS
+    private Object currentOf( Object item )
+    {
+        // a replaced item may well have been removed after it was replaced.
+        return item != null && replaced.containsKey( item ) ? replaced.get( item ) : item;
+    }
+
+    private Keys keysOf( KeyedFinderCriteria crit )
+    {
+        Keys result = keys.get( crit.getClass() );
+
+        if( result == null )
+        {
+            result = new Keys( crit, items.size() );
+
+            for( Object item : items )
+            {
+                if( item != null && !removed.containsKey( item ) )
+                {
+                    result.put( item );
+                }
+            }
+
+            keys.put( crit.getClass(), result );
+        }
+
+        return result;
+    }
+
+    private static final class Keys
+    {
+        private final KeyedFinderCriteria criteria;
+
+        private final Map<Object, Object> items;
+
+        private Keys( KeyedFinderCriteria criteria, int size )
+        {
+            this.criteria = criteria;
+            this.items = new HashMap<Object, Object>( size * 2 );
+        }
+
+        private void put( Object item )
+        {
+            Object key = criteria.keyOf( item );
+
+            // the first one wins, the same way a linear find would do.
+            if( key != null && !items.containsKey( key ) )
+            {
+                items.put( key, item );
+            }
+        }
+    }
+
+}
@@ -15,16 +15,35 @@
 package net.groovysips.jdiff.delta;
 
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import net.groovysips.jdiff.CompositeDelta;
 import net.groovysips.jdiff.Delta;
 import net.groovysips.jdiff.DeltaBuilder;
+import net.groovysips.jdiff.DeltaVisitor;
 import net.groovysips.jdiff.PropertyDescriptorUtils;
+import net.groovysips.jdiff.access.Accessors;
+import net.groovysips.jdiff.access.FieldPropertyAccessor;
+import net.groovysips.jdiff.access.PrimitiveBits;
+import net.groovysips.jdiff.access.PropertyAccessor;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ObjectUtils;
 
 /**
@@ -47,6 +66,7 @@ public class DefaultDeltaBuilder implements DeltaBuilder
     public void setExcludes( Map<Class, List<String>> excludes )
     {
         this.excludes = excludes;
+        plans.clear();
     }
 
     private Map<Class, List<String>> refilledCollection = new HashMap<Class, List<String>>();
@@ -59,6 +79,41 @@ public class DefaultDeltaBuilder implements DeltaBuilder
     public void setRefilledCollection( Map<Class, List<String>> refilledCollection )
     {
         this.refilledCollection = refilledCollection;
+        plans.clear();
+    }
+
+    private Map<Class, List<String>> prunedCollection = new HashMap<Class, List<String>>();
+
+    /**
+     * @return names of the collection properties, per class, from which the items missing in the modified collection
+     *         are removed. Other overlaid collections are add/update only.
+     */
+    public Map<Class, List<String>> getPrunedCollection()
+    {
+        return prunedCollection;
+    }
+
+    public void setPrunedCollection( Map<Class, List<String>> prunedCollection )
+    {
+        this.prunedCollection = prunedCollection;
+        plans.clear();
+    }
+
+    private Map<Class, List<String>> orderedCollection = new HashMap<Class, List<String>>();
+
+    /**
+     * @return names of the list properties, per class, that are diffed by position. Such lists produce index addressed
+     *         insert, remove, move and update deltas instead of being overlaid or refilled.
+     */
+    public Map<Class, List<String>> getOrderedCollection()
+    {
+        return orderedCollection;
+    }
+
+    public void setOrderedCollection( Map<Class, List<String>> orderedCollection )
+    {
+        this.orderedCollection = orderedCollection;
+        plans.clear();
     }
 
     private Map<Class, Map<String, String>> writeMethodOverrides = new HashMap<Class, Map<String, String>>();
@@ -71,6 +126,61 @@ public class DefaultDeltaBuilder implements DeltaBuilder
     public void setWriteMethodOverrides( Map<Class, Map<String, String>> writeMethodOverrides )
     {
         this.writeMethodOverrides = writeMethodOverrides;
+        plans.clear();
+    }
+
+    private Map<Class, ValueComparator> valueComparators = new HashMap<Class, ValueComparator>();
+
+    /**
+     * @return comparators by the type of the values (sub types included). The properties of the types with no
+     *         comparator get the built-in fast path of their type, see {@link ValueComparators#forType(Class)}. Bean
+     *         values are walked rather than compared unless a comparator is configured for them, mapping a bean type
+     *         to {@link ValueComparators#EQUALS} lets its equals decide, except for a bean already being walked.
+     */
+    public Map<Class, ValueComparator> getValueComparators()
+    {
+        return valueComparators;
+    }
+
+    public void setValueComparators( Map<Class, ValueComparator> valueComparators )
+    {
+        this.valueComparators = valueComparators;
+        plans.clear();
+    }
+
+    private Map<Class, Map<String, ValueComparator>> propertyComparators = new HashMap<Class, Map<String, ValueComparator>>();
+
+    /**
+     * @return comparators of single properties, per class. These win over the ones configured by the type of the
+     *         values.
+     */
+    public Map<Class, Map<String, ValueComparator>> getPropertyComparators()
+    {
+        return propertyComparators;
+    }
+
+    public void setPropertyComparators( Map<Class, Map<String, ValueComparator>> propertyComparators )
+    {
+        this.propertyComparators = propertyComparators;
+        plans.clear();
+    }
+
+    private Set<Class> fieldAccess = new HashSet<Class>();
+
+    /**
+     * @return classes (sub classes included) that are diffed field by field instead of through their bean
+     *         properties. Such classes need no getters or setters, excludes and collection settings then refer to the
+     *         names of the fields.
+     */
+    public Set<Class> getFieldAccess()
+    {
+        return fieldAccess;
+    }
+
+    public void setFieldAccess( Set<Class> fieldAccess )
+    {
+        this.fieldAccess = fieldAccess;
+        plans.clear();
     }
 
     private FinderCriteriaFactory finderCriteriaFactory;
@@ -84,6 +194,120 @@ public class DefaultDeltaBuilder implements DeltaBuilder
     {
         this.finderCriteriaFactory = finderCriteriaFactory;
     }
+
+    private boolean structuralHashing;
+
+    /**
+     * @return true if the subtrees are compared by their structural hashes before being diffed. Equal hashes mean the
+     *         subtree is skipped, beans can supply their own hashes by implementing {@link Fingerprinted}.
+     */
+    public boolean isStructuralHashing()
+    {
+        return structuralHashing;
+    }
+
+    public void setStructuralHashing( boolean structuralHashing )
+    {
+        this.structuralHashing = structuralHashing;
+    }
+
+    private boolean dirtyTracking;
+
+    /**
+     * @return true if only the dirty primitive properties of {@link DirtyTrackable} beans are compared. Composite,
+     *         collection, map and array properties of such beans are walked into either way, unless the tracker of
+     *         the bean is {@link DirtyTracker#isDeep() deep}.
+     */
+    public boolean isDirtyTracking()
+    {
+        return dirtyTracking;
+    }
+
+    public void setDirtyTracking( boolean dirtyTracking )
+    {
+        this.dirtyTracking = dirtyTracking;
+    }
+
+    private ExecutorService executor;
+
+    /**
+     * @return executor the items of large collections are diffed on, null (the default) keeps everything on the
+     *         calling thread.
+     */
+    public ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
+    public void setExecutor( ExecutorService executor )
+    {
+        this.executor = executor;
+    }
+
+    private int parallelThreshold = 2048;
+
+    /**
+     * @return the smallest collection that is diffed in parallel when an executor is set.
+     */
+    public int getParallelThreshold()
+    {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold( int parallelThreshold )
+    {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    private int parallelChunkSize = 512;
+
+    /**
+     * @return number of items diffed by a single executor task.
+     */
+    public int getParallelChunkSize()
+    {
+        return parallelChunkSize;
+    }
+
+    public void setParallelChunkSize( int parallelChunkSize )
+    {
+        this.parallelChunkSize = parallelChunkSize;
+    }
+
+    private static final Object NULL_ITEM_KEY = new Object();
+
+    // context of the build running on the thread. Executor threads get a fork of it while they diff a chunk, nested
+    // collections are then diffed in line so that chunks never wait on each other.
+    private static final ThreadLocal<BuildContext> CONTEXT = new ThreadLocal<BuildContext>();
+
+    // plans are compiled from the configuration above, so any change of it drops them.
+    private final ConcurrentMap<Class, ClassDiffPlan> plans = new ConcurrentHashMap<Class, ClassDiffPlan>();
+
+    /**
+     * Returns the diff plan of the class, compiling and caching it on the first request.
+     *
+     * @param clazz
+     * @return plan
+     */
+    public ClassDiffPlan getPlan( Class clazz )
+    {
+        ClassDiffPlan plan = plans.get( clazz );
+
+        if( plan == null )
+        {
+            plan = compilePlan( clazz );
+
+            ClassDiffPlan existing = plans.putIfAbsent( clazz, plan );
+
+            if( existing != null )
+            {
+                plan = existing;
+            }
+        }
+
+        return plan;
+    }
+
     // INTERFACE.
     /**
      * Calculates delta between two java beans.
@@ -94,389 +318,1243 @@ public class DefaultDeltaBuilder implements DeltaBuilder
      */
     public Delta build( Object original, Object modified )
     {
-        if( original == null && modified != null )
+        if( modified == null )
+        {
+            return new NullReturnDelta();
+        }
+
+        return buildInContext( original, modified, null );
+    }
+
+    /**
+     * Calculates delta between two java beans that can trigger an assignment of the result to a property described by
+     * propertyDescriptor argument.
+     *
+     * @param original
+     * @param modified
+     * @param propertyDescriptor
+     * @return delta
+     */
+    public Delta build( Object original, Object modified, PropertyDescriptor propertyDescriptor )
+    {
+        if( original != null && modified == null )
+        {
+            String propertyWriteMethodName = findPropertyWriteMethodOverride( original.getClass(), propertyDescriptor.getName() );
+            return new NullReturnDelta( propertyDescriptor.getName(), propertyWriteMethodName );
+        }
+
+        return buildInContext( original, modified, propertyDescriptor.getName() );
+    }
+
+    /**
+     * Streaming flavour of {@link #build(Object, Object)}: the deltas are pushed into the visitor while the graph is
+     * being walked instead of being collected into a tree. Bean deltas are opened with
+     * {@link DeltaVisitor#visit(Delta)} only once they turn out to have changes and are closed with
+     * {@link DeltaVisitor#endVisit(CompositeDelta)}; they reach the visitor without their children, which follow
+     * through {@link DeltaVisitor#visitChild(Delta)}. Collection, map and array deltas are passed to visitChild whole.
+     * Bean deltas all get reference ids, as a reference to them may turn up after they have been visited.
+     * <p/>
+     * Apart from the missing visitChild calls of the nested bean deltas, the visitor sees what it would see visiting
+     * the tree built by {@link #build(Object, Object)}, while the memory held stays proportional to the depth of the
+     * graph rather than to the size of the delta.
+     *
+     * @param original java bean
+     * @param modified java bean
+     * @param visitor  - receiver of the deltas
+     */
+    public void stream( Object original, Object modified, DeltaVisitor visitor )
+    {
+        if( modified == null )
+        {
+            new NullReturnDelta().visit( visitor );
+            return;
+        }
+
+        if( CONTEXT.get() != null )
+        {
+            build( original, modified ).visit( visitor );
+            return;
+        }
+
+        BuildContext context = new BuildContext();
+
+        DeltaStream stream = new DeltaStream( visitor, context );
+
+        context.setStream( stream );
+
+        CONTEXT.set( context );
+
+        try
+        {
+            Delta result = build( original, modified, (String) null );
+
+            // whatever did not go through the stream: no changes at all, or a reference.
+            if( result != Delta.NULL || !stream.hasEmitted() )
+            {
+                result.visit( visitor );
+            }
+        }
+        finally
+        {
+            CONTEXT.remove();
+        }
+    }
+
+    // HELPERS.
+    private Delta buildInContext( Object original, Object modified, String propertyName )
+    {
+        if( CONTEXT.get() != null )
         {
-            return buildDeltaWhereOriginalIsNullAndModifiedIsNotNull( modified, null );
+            return build( original, modified, propertyName );
         }
 
-        if( original != null && modified != null )
+        CONTEXT.set( new BuildContext() );
+
+        try
+        {
+            return build( original, modified, propertyName );
+        }
+        finally
         {
-            return buildDeltaWhereOriginalIsNotNullAndModifiedIsNotNull( original, modified, null );
+            CONTEXT.remove();
         }
+    }
 
+    private Delta build( Object original, Object modified, String propertyName )
+    {
         if( modified == null )
         {
-            return new NullReturnDelta();
+            return Delta.NULL;
+        }
+
+        BuildContext context = CONTEXT.get();
+
+        BuildContext.Visit visit = context.visitOf( modified );
+
+        if( visit != null )
+        {
+            // the pair is taken care of already, or is being taken care of further up the graph.
+            if( original != null && visit.hasOriginal( original ) )
+            {
+                return Delta.NULL;
+            }
+
+            // updated collection items have no place to put a reference to, they get diffed once more.
+            if( visit.isReferable() && ( original == null || propertyName != null ) )
+            {
+                return new ReferenceDelta( propertyName, context.referenceIdOf( visit ) );
+            }
+        }
+
+        if( original == null )
+        {
+            return buildDeltaWhereOriginalIsNullAndModifiedIsNotNull( modified, propertyName );
+        }
+
+        if( structuralHashing && original.getClass() == modified.getClass() )
+        {
+            StructuralHasher hasher = context.hasher( this );
+
+            if( hasher.fingerprint( original ) == hasher.fingerprint( modified ) )
+            {
+                return Delta.NULL;
+            }
+        }
+
+        return buildDeltaWhereOriginalIsNotNullAndModifiedIsNotNull( original, modified, propertyName );
+    }
+
+    private Delta buildDeltaWhereOriginalIsNullAndModifiedIsNotNull( Object modified, String propertyName )
+    {
+        PropertySlot[] slots = getPlan( modified.getClass() ).slots();
+
+        JavaBeanDelta result = null;
+
+        if( propertyName == null )
+        {
+            result = new JavaBeanDelta( modified.getClass() );
+        }
+        else
+        {
+            result = new JavaBeanDelta( modified.getClass(), propertyName );
+        }
+
+        BuildContext context = CONTEXT.get();
+
+        context.enter( modified, null, result );
+
+        DeltaStream stream = context.getStream();
+
+        if( stream != null )
+        {
+            stream.open( result );
+        }
+
+        for( int i = 0; i < slots.length; i++ )
+        {
+            Delta delta = null;
+
+            if( stream != null && slots[ i ].getKind() != PropertySlot.Kind.COMPOSITE )
+            {
+                context.setStream( null );
+
+                try
+                {
+                    delta = createDeltaForNullOriginal( modified, slots[ i ] );
+                }
+                finally
+                {
+                    context.setStream( stream );
+                }
+            }
+            else
+            {
+                delta = createDeltaForNullOriginal( modified, slots[ i ] );
+            }
+
+            if( delta != null && delta != Delta.NULL )
+            {
+                addChild( result, delta, stream );
+            }
+        }
+
+        if( stream != null )
+        {
+            // the new object has to be created whether or not it has any properties set.
+            stream.close( result, true );
         }
 
-        return Delta.NULL;
+        context.leave( modified, result, true );
+
+        return stream == null ? result : Delta.NULL;
     }
 
-    /**
-     * Calculates delta between two java beans that can trigger an assignment of the result to a property described by
-     * propertyDescriptor argument.
-     *
-     * @param original
-     * @param modified
-     * @param propertyDescriptor
-     * @return delta
-     */
-    public Delta build( Object original, Object modified, PropertyDescriptor propertyDescriptor )
-    {
-        Delta result = Delta.NULL;
+    private Delta buildDeltaWhereOriginalIsNotNullAndModifiedIsNotNull( Object original, Object modified, String propertyeName )
+    {
+        PropertySlot[] modifiedSlots = getPlan( modified.getClass() ).slots();
+
+        // the same class on both sides is the common case, it shares the plan.
+        PropertySlot[] originalSlots = original.getClass() == modified.getClass() ?
+                                       modifiedSlots :
+                                       getPlan( original.getClass() ).slots();
+
+        BuildContext context = CONTEXT.get();
+
+        // most of the beans turn out to be unchanged, the container is only created for a change or a reference.
+        BuildContext.Visit owned = context.enterLazily( modified, original, propertyeName );
+
+        SimpleContainerDelta result = null;
+
+        DeltaStream stream = context.getStream();
+
+        if( stream != null )
+        {
+            result = context.containerOf( owned, propertyeName );
+
+            stream.open( result );
+        }
+
+        DirtyTracker tracker = dirtyTracking && modified instanceof DirtyTrackable ?
+                               ( (DirtyTrackable) modified ).dirtyTracker() :
+                               null;
+
+        // the bits of a tracker kept for some other class do not line up with the slots.
+        if( tracker != null && tracker.getBeanClass() != modified.getClass() )
+        {
+            tracker = null;
+        }
+
+        for( int i = 0; i < modifiedSlots.length; i++ )
+        {
+            if( tracker != null &&
+                ( tracker.isDeep() || modifiedSlots[ i ].getKind() == PropertySlot.Kind.PRIMITIVE ) &&
+                !tracker.isDirty( modifiedSlots[ i ].getDirtyIndex() ) )
+            {
+                continue;
+            }
+
+            Delta delta = null;
+
+            if( stream != null && modifiedSlots[ i ].getKind() != PropertySlot.Kind.COMPOSITE )
+            {
+                context.setStream( null );
+
+                try
+                {
+                    delta = createDelta( original, modified, originalSlots[ i ], modifiedSlots[ i ] );
+                }
+                finally
+                {
+                    context.setStream( stream );
+                }
+            }
+            else
+            {
+                delta = createDelta( original, modified, originalSlots[ i ], modifiedSlots[ i ] );
+            }
+
+            if( delta != null && delta != Delta.NULL )
+            {
+                if( result == null )
+                {
+                    result = context.containerOf( owned, propertyeName );
+                }
+
+                addChild( result, delta, stream );
+            }
+        }
+
+        if( result == null && owned != null )
+        {
+            // created by a reference to the object, if any.
+            result = (SimpleContainerDelta) owned.getContainer();
+        }
+
+        // an unchanged object still has to be there for whoever refers to it.
+        boolean emitted = result != null &&
+                          ( stream != null ?
+                            stream.close( result, result.getReferenceId() != 0 ) :
+                            !result.children().isEmpty() || result.getReferenceId() != 0 );
+
+        context.leave( owned, emitted );
+
+        return emitted && stream == null ? result : Delta.NULL;
+    }
+
+    // collections and maps are diffed whole even when streaming (the stream is detached while they are), so that the
+    // beans in them end up inside of their item deltas.
+    private void addChild( AbstractCompositeDelta container, Delta delta, DeltaStream stream )
+    {
+        if( stream != null )
+        {
+            stream.emit( delta );
+        }
+        else
+        {
+            container.addChild( delta );
+        }
+    }
+
+    private Delta createDeltaForNullOriginal( Object modified, PropertySlot slot )
+    {
+        Object propNewValue = slot.read( modified );
+
+        if( propNewValue == null )
+        {
+            return Delta.NULL;
+        }
+
+        switch( slot.getKind() )
+        {
+            case PRIMITIVE:
+                return new PropertyUpdateDelta( slot.getName(), propNewValue, null, slot.getWriteMethodOverride() );
+
+            case ARRAY:
+                return createArrayDelta( null, propNewValue, slot.getName() );
+
+            case COLLECTION:
+                CollectionDelta collDelta = createNewCollectionDelta( (Collection) propNewValue, slot.getName(), slot.getPropertyType() );
+                return (collDelta == null || collDelta.children() == null || collDelta.children().isEmpty()) ? Delta.NULL : collDelta;
+
+            case MAP:
+                MapDelta mapDelta = createMapDelta( null, (Map) propNewValue, slot.getName(), slot.getPropertyType() );
+                return mapDelta.children().isEmpty() ? Delta.NULL : mapDelta;
+
+            default:
+                // composite
+                return build( null, propNewValue, slot.getName() );
+        }
+    }
+
+    private Delta createDelta( Object original, Object modified, PropertySlot originalSlot, PropertySlot modifiedSlot )
+    {
+        // the numbers and flags are compared and carried as bits, boxing them all is what a large diff allocates most.
+        if( modifiedSlot.isComparedByBits() &&
+            originalSlot.getPropertyType() == modifiedSlot.getPropertyType() &&
+            originalSlot.getWriteMethodOverride() == null )
+        {
+            long originalBits = originalSlot.readBits( original );
+
+            long modifiedBits = modifiedSlot.readBits( modified );
+
+            return originalBits == modifiedBits ?
+                   Delta.NULL :
+                   new PrimitiveUpdateDelta( originalSlot.getName(), modifiedSlot.getPropertyType(), modifiedBits, originalBits );
+        }
+
+        Object originalPropVal = originalSlot.read( original );
+
+        Object modifiedPropVal = modifiedSlot.read( modified );
+
+        PropertySlot.Kind kind = modifiedSlot.getKind();
+        if( kind == PropertySlot.Kind.COLLECTION )
+        {
+            if (modifiedPropVal == null && originalPropVal == null)
+            {
+                return Delta.NULL;
+            }
+
+            if ((modifiedPropVal != null && ((Collection) modifiedPropVal).isEmpty()) &&
+                (originalPropVal != null && ((Collection) originalPropVal).isEmpty()))
+            {
+                return Delta.NULL;
+            }
+
+            CollectionDelta collDelta = null;
+            if (originalPropVal == null)
+            {
+                collDelta = createNewCollectionDelta( (Collection) modifiedPropVal, modifiedSlot.getName(), modifiedSlot.getPropertyType() );
+            }
+            else if ( originalSlot.isRefilled() )
+            {
+                collDelta = createRefillCollectionDelta( (Collection) modifiedPropVal, modifiedSlot.getName(), modifiedSlot.getPropertyType() );
+            }
+            else if ( originalSlot.isOrdered() && originalPropVal instanceof List && modifiedPropVal instanceof List )
+            {
+                collDelta = createOrderedListDelta( (List) originalPropVal, (List) modifiedPropVal, modifiedSlot.getName(), originalSlot.getPropertyType() );
+            }
+            else
+            {
+                collDelta = createOverlayCollectionDelta( (Collection) originalPropVal, (Collection) modifiedPropVal, modifiedSlot.getName(), originalSlot.getPropertyType(), originalSlot.isPruned() );
+            }
+
+            return (collDelta == null || collDelta.children() == null || collDelta.children().isEmpty()) ? Delta.NULL : collDelta;
+        }
+
+        if( kind == PropertySlot.Kind.MAP && modifiedPropVal != null )
+        {
+            MapDelta mapDelta = createMapDelta( (Map) originalPropVal, (Map) modifiedPropVal, modifiedSlot.getName(), originalSlot.getPropertyType() );
+
+            return mapDelta.children().isEmpty() ? Delta.NULL : mapDelta;
+        }
+
+        if( isComparable( modifiedSlot, originalPropVal, modifiedPropVal ) &&
+            modifiedSlot.isUnchanged( originalPropVal, modifiedPropVal ) )
+        {
+            return Delta.NULL;
+        }
+
+        if( kind == PropertySlot.Kind.PRIMITIVE ||
+            modifiedPropVal == null)
+        {
+            return new PropertyUpdateDelta( originalSlot.getName(), modifiedPropVal, originalPropVal, originalSlot.getWriteMethodOverride() );
+        }
+
+        if( kind == PropertySlot.Kind.ARRAY )
+        {
+            return createArrayDelta( originalPropVal, modifiedPropVal, originalSlot.getName() );
+        }
+
+        // it must be a composite.
+        return build( originalPropVal, modifiedPropVal, originalSlot.getName() );
+    }
+
+    /**
+     * @return whether the values of the slot can be compared as they are. The default equals of a bean may well go
+     *         around a back pointer forever, so beans are walked instead unless their slot has a comparator configured
+     *         and the modified bean is not being walked already.
+     */
+    private boolean isComparable( PropertySlot slot, Object originalPropVal, Object modifiedPropVal )
+    {
+        if( slot.getKind() != PropertySlot.Kind.COMPOSITE || originalPropVal == null || modifiedPropVal == null )
+        {
+            return true;
+        }
+
+        return slot.isComparatorConfigured() && CONTEXT.get().visitOf( modifiedPropVal ) == null;
+    }
+
+    private ClassDiffPlan compilePlan( Class clazz )
+    {
+        if( isFieldAccess( clazz ) )
+        {
+            return compileFieldPlan( clazz );
+        }
+
+        Set<String> excludedProps = findExcludedProperties( clazz );
+
+        PropertyDescriptor[] descriptors = PropertyDescriptorUtils.getClassPropertyDescriptors( clazz, excludedProps );
+
+        Set<String> refilledProps = findCollectionProperties( refilledCollection, clazz );
+
+        Set<String> prunedProps = findCollectionProperties( prunedCollection, clazz );
+
+        Set<String> orderedProps = findCollectionProperties( orderedCollection, clazz );
+
+        List<PropertySlot> slots = new ArrayList<PropertySlot>( descriptors.length );
+
+        for( PropertyDescriptor descriptor : descriptors )
+        {
+            String name = descriptor.getName();
+
+            if( PropertyDescriptorUtils.isSystemProperty( name ) )
+            {
+                continue;
+            }
+
+            boolean refilled = refilledProps != null && refilledProps.contains( name );
+
+            boolean pruned = prunedProps != null && prunedProps.contains( name );
+
+            boolean ordered = orderedProps != null && orderedProps.contains( name );
+
+            slots.add( new PropertySlot( clazz, descriptor, refilled, pruned, ordered, findPropertyWriteMethodOverride( clazz, name ),
+                                         findValueComparator( clazz, name, descriptor.getPropertyType() ) ) );
+        }
+
+        return new ClassDiffPlan( clazz, slots.toArray( new PropertySlot[slots.size()] ) );
+    }
+
+    private ClassDiffPlan compileFieldPlan( Class clazz )
+    {
+        Set<String> excludedProps = findExcludedProperties( clazz );
+
+        Set<String> refilledProps = findCollectionProperties( refilledCollection, clazz );
+
+        Set<String> prunedProps = findCollectionProperties( prunedCollection, clazz );
+
+        Set<String> orderedProps = findCollectionProperties( orderedCollection, clazz );
+
+        PropertyAccessor[] fields = Accessors.forFields( clazz );
+
+        List<PropertySlot> slots = new ArrayList<PropertySlot>( fields.length );
+
+        for( PropertyAccessor field : fields )
+        {
+            String name = field.getPropertyName();
+
+            if( excludedProps != null && excludedProps.contains( name ) )
+            {
+                continue;
+            }
+
+            boolean refilled = refilledProps != null && refilledProps.contains( name );
+
+            boolean pruned = prunedProps != null && prunedProps.contains( name );
+
+            boolean ordered = orderedProps != null && orderedProps.contains( name );
+
+            slots.add( new PropertySlot( clazz, (FieldPropertyAccessor) field, refilled, pruned, ordered, findPropertyWriteMethodOverride( clazz, name ),
+                                         findValueComparator( clazz, name, ( (FieldPropertyAccessor) field ).getField().getType() ) ) );
+        }
+
+        return new ClassDiffPlan( clazz, slots.toArray( new PropertySlot[slots.size()] ) );
+    }
+
+    private boolean isFieldAccess( Class clazz )
+    {
+        if( fieldAccess == null )
+        {
+            return false;
+        }
+
+        for( Class keyClass : fieldAccess )
+        {
+            if( keyClass.isAssignableFrom( clazz ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private CollectionDelta createRefillCollectionDelta(Collection modCollection, String propertyName, Class collectionClazz)
+    {
+        Class collectionType = determineCollectionType(collectionClazz);
+        CollectionDelta result = new CollectionDelta(propertyName, collectionType);
+        result.addChild( new ClearAllDelta() );
+        if (modCollection == null)
+        {
+            return result;
+        }
+
+        addNewItemDeltas( result, modCollection );
+
+        return result;
+    }
+
+    private CollectionDelta createNewCollectionDelta(Collection modCollection, String propertyName, Class collectionClazz)
+    {
+        Class collectionType = determineCollectionType(collectionClazz);
+        CollectionDelta result = new CollectionDelta(propertyName, collectionType );
+
+        addNewItemDeltas( result, modCollection );
+
+        return result;
+    }
+
+    private void addNewItemDeltas( CollectionDelta result, Collection modCollection )
+    {
+        final Object[] modItems = modCollection.toArray();
+
+        List<Delta> deltas = diffItems( modItems.length, new ItemDiff()
+        {
+            public Delta diff( int index )
+            {
+                return createNewItemDelta( modItems[ index ] );
+            }
+        } );
+
+        for( Delta delta : deltas )
+        {
+            result.addChild( delta );
+        }
+    }
+
+    private Delta createNewItemDelta( Object modObj )
+    {
+        if ( modObj != null && PropertyDescriptorUtils.isPrimitive( modObj.getClass() ))
+        {
+            return new NewItemDelta( new PrimitiveValueDelta( modObj ) );
+        }
+
+        Delta itemDelegateDelta = build( null, modObj );
+        if (itemDelegateDelta instanceof ReferenceDelta)
+        {
+            return new NewItemDelta( (ReferenceDelta) itemDelegateDelta );
+        }
+        else if (Delta.NULL != itemDelegateDelta)
+        {
+            return new NewItemDelta( (JavaBeanDelta) itemDelegateDelta );
+        }
+
+        return null;
+    }
+
+    private Class determineCollectionType( Class collectionClazz )
+    {
+        if (Set.class.isAssignableFrom( collectionClazz ))
+        {
+            return HashSet.class;
+        }
+        else if (List.class.isAssignableFrom( collectionClazz ))
+        {
+            return ArrayList.class;
+        }
+        else if ( Map.class.isAssignableFrom( collectionClazz ))
+        {
+            return HashMap.class;
+        }
+
+        return ArrayList.class;
+    }
+
+    private CollectionDelta createOverlayCollectionDelta(Collection origCollection, Collection modCollection, String propertyName, Class collectionClazz, boolean pruned)
+    {
+        Class collectionType = determineCollectionType(collectionClazz);
+        CollectionDelta result = new CollectionDelta(propertyName, collectionType );
+
+        if(modCollection == null)
+        {
+            return result;
+        }
+
+        ItemIndex origIndex = new ItemIndex( origCollection, finderCriteriaFactory, pruned );
+
+        // matching goes through the index on this thread, only the item diffs are worth spreading around.
+        final Object[] modItems = modCollection.toArray();
+        final Object[] origItems = new Object[modItems.length];
+        final FinderCriteria[] crits = new FinderCriteria[modItems.length];
+
+        for( int i = 0; i < modItems.length; i++ )
+        {
+            crits[ i ] = finderCriteriaFactory.create( modItems[ i ] );
+            origItems[ i ] = origIndex.find( crits[ i ] );
+        }
+
+        List<Delta> deltas = diffItems( modItems.length, new ItemDiff()
+        {
+            public Delta diff( int index )
+            {
+                if( origItems[ index ] == null )
+                {
+                    return createNewItemDelta( modItems[ index ] );
+                }
+
+                Delta delta = build( origItems[ index ], modItems[ index ] );
+                if( Delta.NULL != delta )
+                {
+                    return new UpdateItemDelta( (SimpleContainerDelta) delta, crits[ index ] );
+                }
+
+                return null;
+            }
+        } );
+
+        for( Delta delta : deltas )
+        {
+            result.addChild( delta );
+        }
+
+        // remove original items that are not in the modified collection. Only done for the pruned collections, the rest
+        // of them are refill or add only (items for example).
+        if( pruned )
+        {
+            for( Object origObj : origIndex.unmatched() )
+            {
+                FinderCriteria crit = origIndex.criteriaFor( origObj );
+
+                // criteria that locates nothing would not remove anything either.
+                if( !( crit instanceof NullReturningCriteria ) )
+                {
+                    result.addChild( new RemoveItemDelta( crit ) );
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Diffs two lists position by position. The longest common subsequence of the item keys stays in place, the rest
+     * of the original items are removed, moved (when the same key shows up elsewhere in the modified list) or updated,
+     * and the missing items are inserted. Deltas carry positions valid at the time they are applied, in order.
+     */
+    private CollectionDelta createOrderedListDelta( List origList, List modList, String propertyName, Class collectionClazz )
+    {
+        Class collectionType = determineCollectionType( collectionClazz );
+        CollectionDelta result = new CollectionDelta( propertyName, collectionType );
+
+        // items are compared by ids, items with equal keys share an id.
+        Map<Object, Integer> ids = new HashMap<Object, Integer>();
+        int[] origIds = itemIds( origList, ids );
+        int[] modIds = itemIds( modList, ids );
+
+        int[] origMatches = SequenceDiff.match( origIds, modIds );
+
+        int[] modMatches = new int[modIds.length];
+        Arrays.fill( modMatches, -1 );
+
+        for( int i = 0; i < origMatches.length; i++ )
+        {
+            if( origMatches[ i ] >= 0 )
+            {
+                modMatches[ origMatches[ i ] ] = i;
+            }
+        }
+
+        // an unmatched original item whose key shows up among the unmatched modified items is moved, not re-sent.
+        Map<Integer, LinkedList<Integer>> leftovers = new HashMap<Integer, LinkedList<Integer>>();
+
+        for( int i = 0; i < origMatches.length; i++ )
+        {
+            if( origMatches[ i ] < 0 )
+            {
+                LinkedList<Integer> positions = leftovers.get( origIds[ i ] );
+
+                if( positions == null )
+                {
+                    positions = new LinkedList<Integer>();
+                    leftovers.put( origIds[ i ], positions );
+                }
+
+                positions.add( i );
+            }
+        }
+
+        int[] moveSources = new int[modIds.length];
+        Arrays.fill( moveSources, -1 );
+
+        boolean[] moving = new boolean[origIds.length];
+
+        for( int j = 0; j < modIds.length; j++ )
+        {
+            if( modMatches[ j ] < 0 )
+            {
+                LinkedList<Integer> positions = leftovers.get( modIds[ j ] );
+
+                if( positions != null && !positions.isEmpty() )
+                {
+                    moveSources[ j ] = positions.removeFirst();
+                    moving[ moveSources[ j ] ] = true;
+                }
+            }
+        }
+
+        // replay the edits to know the index each delta applies at. The list splits at pos into the items already in
+        // place, kept in the order they were placed in, and the original items still ahead, kept in their original
+        // order. Both parts count their members so that finding the index of an item takes O(log n).
+        PositionCounter ahead = new PositionCounter( origIds.length );
+        PositionCounter placed = new PositionCounter( origIds.length + modIds.length );
+
+        boolean[] isAhead = new boolean[origIds.length];
+        Arrays.fill( isAhead, true );
+
+        for( int i = 0; i < origIds.length; i++ )
+        {
+            ahead.add( i );
+        }
+
+        // the slot of every original item in place, slots are handed out in the order the items are placed in.
+        int[] slots = new int[origIds.length];
+        int nextSlot = 0;
+
+        int head = 0;
+        int pos = 0;
+
+        for( int j = 0; j < modIds.length; j++ )
+        {
+            Object modObj = modList.get( j );
+
+            if( modMatches[ j ] >= 0 )
+            {
+                int origPos = modMatches[ j ];
+
+                // items in front of the match go away, unless they are moved further down the list later on.
+                for( ; head < origPos; head++ )
+                {
+                    if( !isAhead[ head ] )
+                    {
+                        continue;
+                    }
+
+                    isAhead[ head ] = false;
+                    ahead.remove( head );
+
+                    if( moving[ head ] )
+                    {
+                        slots[ head ] = nextSlot;
+                        placed.add( nextSlot++ );
+                        pos++;
+                    }
+                    else
+                    {
+                        result.addChild( new RemoveItemAtDelta( pos ) );
+                    }
+                }
+
+                addItemAtUpdate( result, pos, origList.get( origPos ), modObj );
+
+                isAhead[ origPos ] = false;
+                ahead.remove( origPos );
+                placed.add( nextSlot++ );
+                head = origPos + 1;
+                pos++;
+            }
+            else if( moveSources[ j ] >= 0 )
+            {
+                int origPos = moveSources[ j ];
+                int from;
+                int to;
+
+                if( isAhead[ origPos ] )
+                {
+                    from = pos + ahead.countBelow( origPos );
+                    to = pos;
+
+                    isAhead[ origPos ] = false;
+                    ahead.remove( origPos );
+                }
+                else
+                {
+                    from = placed.countBelow( slots[ origPos ] );
+                    to = pos - 1;
+
+                    placed.remove( slots[ origPos ] );
+                }
+
+                if( from != to )
+                {
+                    result.addChild( new MoveItemDelta( from, to ) );
+                }
+
+                slots[ origPos ] = nextSlot;
+                placed.add( nextSlot++ );
 
-        if( original == null && modified != null )
-        {
-            result = buildDeltaWhereOriginalIsNullAndModifiedIsNotNull( modified, propertyDescriptor );
-        }
+                addItemAtUpdate( result, to, origList.get( origPos ), modObj );
+                pos = to + 1;
+            }
+            else
+            {
+                Delta itemDelta = createInsertItemAtDelta( pos, modObj );
 
-        if( original != null && modified != null )
-        {
-            result = buildDeltaWhereOriginalIsNotNullAndModifiedIsNotNull( original, modified, propertyDescriptor.getName() );
+                if( itemDelta != null )
+                {
+                    result.addChild( itemDelta );
+                    placed.add( nextSlot++ );
+                    pos++;
+                }
+            }
         }
 
-        if( original != null && modified == null )
+        for( int i = ahead.countBelow( origIds.length ); i > 0; i-- )
         {
-            String propertyWriteMethodName = findPropertyWriteMethodOverride( original, propertyDescriptor );
-            return new NullReturnDelta( propertyDescriptor.getName(), propertyWriteMethodName );
+            result.addChild( new RemoveItemAtDelta( pos ) );
         }
 
         return result;
     }
 
-    // HELPERS.
-    private Delta buildDeltaWhereOriginalIsNullAndModifiedIsNotNull( Object modified, PropertyDescriptor propertyDescriptor )
+    private int[] itemIds( List items, Map<Object, Integer> ids )
     {
-        PropertyDescriptor[] modifiedObjectPropertyDescs = EMPTY_PROPERTY_DESCRIPTORS_ARRAY;
-
-        List<String> excludedProps = findExcludedProperties(modified.getClass());
+        int[] result = new int[items.size()];
 
-        modifiedObjectPropertyDescs = PropertyDescriptorUtils.getPropertyDescriptors( modified, excludedProps );
+        int i = 0;
 
-        AbstractCompositeDelta result = null;
-
-        if( propertyDescriptor == null )
-        {
-            result = new JavaBeanDelta( modified.getClass() );
-        }
-        else
+        for( Object item : items )
         {
-            result = new JavaBeanDelta( modified.getClass(), propertyDescriptor.getName() );
-        }
+            Object key = itemKey( item );
 
-        for( int i = 0; i < modifiedObjectPropertyDescs.length; i++ )
-        {
-            PropertyDescriptor propertyDesc = modifiedObjectPropertyDescs[ i ];
+            Integer id = ids.get( key );
 
-            if( PropertyDescriptorUtils.isSystemProperty( propertyDesc.getName() ) )
+            if( id == null )
             {
-                continue;
+                id = ids.size();
+                ids.put( key, id );
             }
 
-            Delta delta = createDeltaForNullOriginal( modified, propertyDesc );
-
-            if( delta != null && delta != Delta.NULL )
-            {
-                result.addChild( delta );
-            }
+            result[ i++ ] = id;
         }
 
         return result;
     }
 
-    private Delta buildDeltaWhereOriginalIsNotNullAndModifiedIsNotNull( Object original, Object modified, String propertyeName )
+    private Object itemKey( Object item )
     {
-        PropertyDescriptor[] modifiedObjectPropertyDescs = EMPTY_PROPERTY_DESCRIPTORS_ARRAY;
-
-        PropertyDescriptor[] originalObjectPropertyDescs = EMPTY_PROPERTY_DESCRIPTORS_ARRAY;
-
-        List<String> excludedProps = findExcludedProperties(modified.getClass());
-
-        modifiedObjectPropertyDescs = PropertyDescriptorUtils.getPropertyDescriptors( modified, excludedProps );
-
-        originalObjectPropertyDescs = PropertyDescriptorUtils.getPropertyDescriptors( original, excludedProps );
-
-        AbstractCompositeDelta result = new SimpleContainerDelta(propertyeName);
-
-        for( int i = 0; i < modifiedObjectPropertyDescs.length; i++ )
+        if( item == null )
         {
-            PropertyDescriptor modifiedObjectPropertyDesc = modifiedObjectPropertyDescs[ i ];
-
-            PropertyDescriptor originalObjectPropertyDesc = originalObjectPropertyDescs[ i ];
-
-            if( PropertyDescriptorUtils.isSystemProperty( modifiedObjectPropertyDesc.getName() ) )
-            {
-                continue;
-            }
+            return NULL_ITEM_KEY;
+        }
 
-            Delta delta = createDelta( original, modified, originalObjectPropertyDesc, modifiedObjectPropertyDesc );
+        if( !PropertyDescriptorUtils.isPrimitive( item.getClass() ) && finderCriteriaFactory != null )
+        {
+            FinderCriteria crit = finderCriteriaFactory.create( item );
 
-            if( delta != null && delta != Delta.NULL )
+            if( crit instanceof KeyedFinderCriteria && ( (KeyedFinderCriteria) crit ).getKey() != null )
             {
-                result.addChild( delta );
+                return ( (KeyedFinderCriteria) crit ).getKey();
             }
         }
 
-        if( result.children() != null && !result.children().isEmpty() )
-        {
-            return result;
-        }
-
-        return Delta.NULL;
+        // no key to go by, the item has to identify itself.
+        return item;
     }
 
-    private Delta createDeltaForNullOriginal( Object modified, PropertyDescriptor propertyDesc )
+    private Delta createInsertItemAtDelta( int index, Object modObj )
     {
-        Object propNewValue = PropertyDescriptorUtils.read( modified, propertyDesc );
-
-        if( propNewValue == null )
+        if( modObj == null || PropertyDescriptorUtils.isPrimitive( modObj.getClass() ) )
         {
-            return Delta.NULL;
+            return new InsertItemAtDelta( index, new PrimitiveValueDelta( modObj ) );
         }
 
-        Class propertyType = propertyDesc.getPropertyType();
-        if( PropertyDescriptorUtils.isPrimitive( propertyType ) )
+        Delta itemDelegateDelta = build( null, modObj );
+
+        if( itemDelegateDelta instanceof ReferenceDelta )
         {
-            String propertyWriteMethodName = findPropertyWriteMethodOverride( modified, propertyDesc );
-            return new PropertyUpdateDelta( propertyDesc.getName(), propNewValue, null, propertyWriteMethodName );
+            return new InsertItemAtDelta( index, (ReferenceDelta) itemDelegateDelta );
         }
-
-        if( propertyType.isArray() )  // TODO (Shneyderman - Jun 13, 2009) : we do not do arrays yet.
+        else if( Delta.NULL != itemDelegateDelta )
         {
-            return Delta.NULL;
+            return new InsertItemAtDelta( index, (JavaBeanDelta) itemDelegateDelta );
         }
 
-        if( Collection.class.isAssignableFrom( propertyType ) )
+        return null;
+    }
+
+    private void addItemAtUpdate( CollectionDelta result, int index, Object origObj, Object modObj )
+    {
+        if( origObj == null || modObj == null || PropertyDescriptorUtils.isPrimitive( modObj.getClass() ) )
         {
-            CollectionDelta collDelta = createNewCollectionDelta( (Collection) propNewValue, propertyDesc.getName(), propertyType );
-            return (collDelta == null || collDelta.children() == null || collDelta.children().isEmpty()) ? Delta.NULL : collDelta;
+            return; // the keys are the values.
         }
 
-        // composite
-        Object newCompositeVal = PropertyDescriptorUtils.read( modified, propertyDesc );
+        Delta delta = build( origObj, modObj );
 
-        return build( null, newCompositeVal, propertyDesc );
+        if( Delta.NULL != delta )
+        {
+            result.addChild( new UpdateItemAtDelta( index, (SimpleContainerDelta) delta ) );
+        }
     }
 
-    private Delta createDelta( Object original, Object modified, PropertyDescriptor originalPD, PropertyDescriptor modifiedPD )
+    /**
+     * Diffs two maps by key. Keys missing in the modified map are removed, new keys are put and the values present in
+     * both maps are updated in place when they are beans, put again otherwise.
+     */
+    private MapDelta createMapDelta( Map origMap, Map modMap, String propertyName, Class mapClazz )
     {
-        Object originalPropVal = PropertyDescriptorUtils.read( original, originalPD );
+        MapDelta result = new MapDelta( propertyName, determineMapType( mapClazz ) );
 
-        Object modifiedPropVal = PropertyDescriptorUtils.read( modified, modifiedPD );
-
-        Class propertyType = modifiedPD.getPropertyType();
-        if( Collection.class.isAssignableFrom( propertyType ) )
+        for( Object e : modMap.entrySet() )
         {
-            if (modifiedPropVal == null && originalPropVal == null)
-            {
-                return Delta.NULL;
-            }
+            Map.Entry entry = (Map.Entry) e;
+            Object key = entry.getKey();
+            Object modVal = entry.getValue();
 
-            if ((modifiedPropVal != null && ((Collection) modifiedPropVal).isEmpty()) &&
-                (originalPropVal != null && ((Collection) originalPropVal).isEmpty()))
+            if( origMap == null || !origMap.containsKey( key ) )
             {
-                return Delta.NULL;
+                result.addChild( createPutEntryDelta( key, modVal ) );
+                continue;
             }
 
-            CollectionDelta collDelta = null;
-            if (originalPropVal == null)
+            Object origVal = origMap.get( key );
+
+            if( ObjectUtils.nullSafeEquals( origVal, modVal ) )
             {
-                collDelta = createNewCollectionDelta( (Collection) modifiedPropVal, modifiedPD.getName(), modifiedPD.getPropertyType() );
+                continue;
             }
-            else if ( isRefilledCollection( original.getClass(), modifiedPD.getName() ) )
+
+            if( isBeanValue( origVal ) && isBeanValue( modVal ) )
             {
-                collDelta = createRefillCollectionDelta( (Collection) modifiedPropVal, modifiedPD.getName(), modifiedPD.getPropertyType() );
+                Delta delta = build( origVal, modVal );
+
+                if( Delta.NULL != delta )
+                {
+                    result.addChild( new UpdateEntryDelta( key, (SimpleContainerDelta) delta ) );
+                }
             }
             else
             {
-                collDelta = createOverlayCollectionDelta( (Collection) originalPropVal, (Collection) modifiedPropVal, modifiedPD.getName(), originalPD.getPropertyType() );
+                result.addChild( createPutEntryDelta( key, modVal ) );
             }
-
-            return (collDelta == null || collDelta.children() == null || collDelta.children().isEmpty()) ? Delta.NULL : collDelta;
         }
 
-        if( ObjectUtils.nullSafeEquals( originalPropVal, modifiedPropVal ) )
+        if( origMap != null )
         {
-            return Delta.NULL;
+            for( Object key : origMap.keySet() )
+            {
+                if( !modMap.containsKey( key ) )
+                {
+                    result.addChild( new RemoveEntryDelta( key ) );
+                }
+            }
         }
 
-        if( PropertyDescriptorUtils.isPrimitive( propertyType ) ||
-            modifiedPropVal == null)
+        return result;
+    }
+
+    private Class determineMapType( Class mapClazz )
+    {
+        if( !mapClazz.isInterface() && !Modifier.isAbstract( mapClazz.getModifiers() ) )
         {
-            String propertyWriteMethodName = findPropertyWriteMethodOverride( original != null ? original : modified,
-                                                                              originalPD != null ? originalPD : modifiedPD );
-            String propertyName = originalPD != null ? originalPD.getName() : modifiedPD.getName();
-            return new PropertyUpdateDelta( propertyName, modifiedPropVal, originalPropVal, propertyWriteMethodName );
+            return mapClazz;
         }
-
-        if( propertyType.isArray() )
+        else if( SortedMap.class.isAssignableFrom( mapClazz ) )
         {
-            return Delta.NULL;
+            return TreeMap.class;
         }
 
-        // it must be a composite.
-        return build( originalPropVal, modifiedPropVal, originalPD );
+        return HashMap.class;
     }
 
-    private boolean isRefilledCollection( Class clazz, String name )
+    private PutEntryDelta createPutEntryDelta( Object key, Object modVal )
     {
-        if (clazz == null || name == null)
+        // nested containers are built afresh, the merged map must not share them with the modified one.
+        if( modVal instanceof Collection )
         {
-            return false;
+            return new PutEntryDelta( key, createNewCollectionDelta( (Collection) modVal, null, modVal.getClass() ) );
         }
 
-        List<String> pNames = findRefilledCollectionProperties( clazz );
-
-        if (pNames == null)
+        if( modVal instanceof Map )
         {
-            return false;
+            return new PutEntryDelta( key, createMapDelta( null, (Map) modVal, null, determineValueMapType( modVal.getClass() ) ) );
         }
 
-        return pNames.contains( name );
-    }
-
-    private CollectionDelta createRefillCollectionDelta(Collection modCollection, String propertyName, Class collectionClazz)
-    {
-        Class collectionType = determineCollectionType(collectionClazz);
-        CollectionDelta result = new CollectionDelta(propertyName, collectionType);
-        result.addChild( new ClearAllDelta() );
-        if (modCollection == null)
+        if( modVal != null && modVal.getClass().isArray() )
         {
-            return result;
+            return new PutEntryDelta( key, createArrayDelta( null, modVal, null ) );
         }
 
-        for( Object modObj : modCollection )
+        if( isBeanValue( modVal ) )
         {
-            Delta dToAdd = null;
+            Delta valueDelta = build( null, modVal );
 
-            if ( modObj != null && PropertyDescriptorUtils.isPrimitive( modObj.getClass() ))
-            {
-                dToAdd = new NewItemDelta( new PrimitiveValueDelta( modObj ) );
-            }
-            else
+            if( valueDelta instanceof ReferenceDelta )
             {
-                Delta itemDelegateDelta = build( null, modObj );
-                if (Delta.NULL != itemDelegateDelta)
-                {
-                    dToAdd = new NewItemDelta( (JavaBeanDelta) itemDelegateDelta ) ;
-                }
+                return new PutEntryDelta( key, (ReferenceDelta) valueDelta );
             }
 
-            if (dToAdd != null)
-            {
-                result.addChild( dToAdd );
-            }
+            return new PutEntryDelta( key, (JavaBeanDelta) valueDelta );
         }
 
-        return result;
+        // nulls and primitives are sent as they are.
+        return new PutEntryDelta( key, new PrimitiveValueDelta( modVal ) );
     }
 
-    private CollectionDelta createNewCollectionDelta(Collection modCollection, String propertyName, Class collectionClazz)
+    /**
+     * @return class of a map value itself if the merger can instantiate it, otherwise the closest one it can.
+     */
+    private Class determineValueMapType( Class mapClazz )
     {
-        Class collectionType = determineCollectionType(collectionClazz);
-        CollectionDelta result = new CollectionDelta(propertyName, collectionType );
+        if( Modifier.isPublic( mapClazz.getModifiers() ) && ClassUtils.hasConstructor( mapClazz, new Class[0] ) )
+        {
+            return determineMapType( mapClazz );
+        }
+
+        return SortedMap.class.isAssignableFrom( mapClazz ) ? TreeMap.class : HashMap.class;
+    }
 
-        for( Object modObj : modCollection )
+    private boolean isBeanValue( Object value )
+    {
+        if( value == null )
         {
-            if ( modObj != null && PropertyDescriptorUtils.isPrimitive( modObj.getClass() ))
-            {
-                result.addChild( new NewItemDelta( new PrimitiveValueDelta( modObj ) ) );
-            }
-            else
-            {
-                Delta itemDelegateDelta = build( null, modObj );
-                if (Delta.NULL != itemDelegateDelta)
-                {
-                    result.addChild( new NewItemDelta( (JavaBeanDelta) itemDelegateDelta ) );
-                }
-            }
+            return false;
         }
 
-        return result;
+        Class valueClass = value.getClass();
+
+        return !PropertyDescriptorUtils.isPrimitive( valueClass ) &&
+               !Collection.class.isAssignableFrom( valueClass ) &&
+               !Map.class.isAssignableFrom( valueClass ) &&
+               !valueClass.isArray();
     }
 
-    private Class determineCollectionType( Class collectionClazz )
+    /**
+     * Diffs two arrays into ranges of changed elements. The original can be null or of another array class, then the
+     * whole modified array is sent.
+     */
+    private ArrayDelta createArrayDelta( Object origArray, Object modArray, String propertyName )
     {
-        if (Set.class.isAssignableFrom( collectionClazz ))
+        Class componentType = modArray.getClass().getComponentType();
+        int length = Array.getLength( modArray );
+
+        ArrayDelta result = new ArrayDelta( propertyName, componentType, length );
+
+        List<int[]> ranges = null;
+
+        if( origArray != null && origArray.getClass() == modArray.getClass() )
         {
-            return HashSet.class;
+            ranges = ArrayRanges.changed( origArray, modArray );
         }
-        else if (List.class.isAssignableFrom( collectionClazz ))
+        else
         {
-            return ArrayList.class;
+            ranges = new ArrayList<int[]>( 1 );
+
+            if( length > 0 )
+            {
+                ranges.add( new int[]{ 0, length } );
+            }
         }
-        else if ( Map.class.isAssignableFrom( collectionClazz ))
+
+        for( int[] range : ranges )
         {
-            return HashMap.class;
+            Object slice = Array.newInstance( componentType, range[ 1 ] - range[ 0 ] );
+
+            System.arraycopy( modArray, range[ 0 ], slice, 0, range[ 1 ] - range[ 0 ] );
+
+            result.addChild( new ArrayRangeDelta( range[ 0 ], slice ) );
         }
 
-        return ArrayList.class;
+        return result;
     }
 
-    private CollectionDelta createOverlayCollectionDelta(Collection origCollection, Collection modCollection, String propertyName, Class collectionClazz)
+    /**
+     * Diffs the items one by one, or chunk by chunk on the executor when there are enough of them. Either way the
+     * deltas come back in the order of the items.
+     *
+     * @return non-null item deltas.
+     */
+    private List<Delta> diffItems( int count, final ItemDiff itemDiff )
     {
-        Class collectionType = determineCollectionType(collectionClazz);
-        CollectionDelta result = new CollectionDelta(propertyName, collectionType );
+        ExecutorService exec = executor;
 
-        if(modCollection == null)
+        BuildContext context = CONTEXT.get();
+
+        if( exec == null || count < parallelThreshold || count <= parallelChunkSize || context.isFork() )
         {
-            return result;
+            return diffRange( 0, count, itemDiff );
         }
 
-        for( Object modObj : modCollection )
+        List<Future<List<Delta>>> chunks = new ArrayList<Future<List<Delta>>>();
+        List<BuildContext> forks = new ArrayList<BuildContext>();
+
+        for( int from = 0; from < count; from += parallelChunkSize )
         {
-            FinderCriteria crit = finderCriteriaFactory.create( modObj );
-            Object origObj = crit.find( origCollection );
-            if (origObj == null)
+            final int chunkFrom = from;
+            final int chunkTo = Math.min( from + parallelChunkSize, count );
+            final BuildContext fork = context.fork();
+
+            forks.add( fork );
+            chunks.add( exec.submit( new Callable<List<Delta>>()
             {
-                if ( modObj != null && PropertyDescriptorUtils.isPrimitive( modObj.getClass() ))
-                {
-                    result.addChild( new NewItemDelta( new PrimitiveValueDelta( modObj ) ) );
-                }
-                else
+                public List<Delta> call()
                 {
-                    Delta itemDelegateDelta = build( null, modObj );
-                    if (Delta.NULL != itemDelegateDelta)
+                    CONTEXT.set( fork );
+
+                    try
+                    {
+                        return diffRange( chunkFrom, chunkTo, itemDiff );
+                    }
+                    finally
                     {
-                        result.addChild( new NewItemDelta( (JavaBeanDelta) itemDelegateDelta ) );
+                        CONTEXT.remove();
                     }
                 }
+            } ) );
+        }
+
+        List<Delta> result = new ArrayList<Delta>( count );
+
+        try
+        {
+            for( Future<List<Delta>> chunk : chunks )
+            {
+                result.addAll( chunk.get() );
             }
-            else
+        }
+        catch( InterruptedException e )
+        {
+            cancel( chunks );
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while waiting for the collection items to be diffed.", e );
+        }
+        catch( ExecutionException e )
+        {
+            cancel( chunks );
+
+            if( e.getCause() instanceof RuntimeException )
             {
-                Delta delta = build( origObj, modObj );
-                if (Delta.NULL != delta)
-                {
-                    result.addChild( new UpdateItemDelta( (SimpleContainerDelta) delta, crit ) );
-                }
+                throw (RuntimeException) e.getCause();
             }
+
+            if( e.getCause() instanceof Error )
+            {
+                throw (Error) e.getCause();
+            }
+
+            throw new RuntimeException( "Unable to diff the collection items.", e.getCause() );
         }
 
-        // remove original items that are not in the modified collection.
-        // TODO (Shneyderman - Jun 30, 2009) : we do not use this feature as all of our collections are refill or add only
-        //                                     (items for example). So, we need some sane way of dealing with this.
-        //        for( Object origObj : origCollection )
-        //        {
-        //            FinderCriteria crit = finderCriteriaFactory.create( origObj );
-        //            Object modObj = crit.find( modCollection );
-        //            if (modObj == null)
-        //            {
-        //                result.addChild( new RemoveItemDelta( crit ) );
-        //            }
-        //        }
+        // in chunk order, the first chunk to see an object is the one that comes first in the graph.
+        for( BuildContext fork : forks )
+        {
+            context.join( fork );
+        }
 
         return result;
     }
-    private String findPropertyWriteMethodOverride( Object object, PropertyDescriptor propertyDescriptor )
+
+    private List<Delta> diffRange( int from, int to, ItemDiff itemDiff )
     {
-        if( object == null || propertyDescriptor == null )
+        List<Delta> result = new ArrayList<Delta>( to - from );
+
+        for( int i = from; i < to; i++ )
         {
-            return null;
+            Delta delta = itemDiff.diff( i );
+
+            if( delta != null )
+            {
+                result.add( delta );
+            }
         }
 
-        Class objClass = object.getClass();
+        return result;
+    }
+
+    private void cancel( List<Future<List<Delta>>> chunks )
+    {
+        for( Future<List<Delta>> chunk : chunks )
+        {
+            chunk.cancel( true );
+        }
+    }
 
-        String propName = propertyDescriptor.getName();
+    private String findPropertyWriteMethodOverride( Class objClass, String propName )
+    {
+        if( objClass == null || propName == null || writeMethodOverrides == null )
+        {
+            return null;
+        }
 
         Map<String, String> classOverrides = writeMethodOverrides.get( objClass );
 
@@ -509,7 +1587,58 @@ public class DefaultDeltaBuilder implements DeltaBuilder
         return null;
     }
 
-    private List<String> findExcludedProperties( Class clazz )
+    private ValueComparator findValueComparator( Class objClass, String propName, Class propType )
+    {
+        if( propertyComparators != null )
+        {
+            Map<String, ValueComparator> classComparators = propertyComparators.get( objClass );
+
+            if( classComparators != null && classComparators.get( propName ) != null )
+            {
+                return classComparators.get( propName );
+            }
+
+            for( Class keyClass : propertyComparators.keySet() )
+            {
+                if( keyClass != objClass && keyClass.isAssignableFrom( objClass ) )
+                {
+                    Map<String, ValueComparator> superClass = propertyComparators.get( keyClass );
+
+                    if( superClass != null && superClass.get( propName ) != null )
+                    {
+                        return superClass.get( propName );
+                    }
+                }
+            }
+        }
+
+        if( valueComparators == null || propType == null )
+        {
+            return null;
+        }
+
+        // the comparators of the primitives are registered by their wrappers.
+        Class type = propType.isPrimitive() ? PrimitiveBits.fromBits( propType, 0 ).getClass() : propType;
+
+        ValueComparator result = valueComparators.get( type );
+
+        if( result != null )
+        {
+            return result;
+        }
+
+        for( Map.Entry<Class, ValueComparator> entry : valueComparators.entrySet() )
+        {
+            if( entry.getKey().isAssignableFrom( type ) )
+            {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    private Set<String> findExcludedProperties( Class clazz )
     {
         if (excludes == null || clazz == null)
         {
@@ -546,19 +1675,19 @@ public class DefaultDeltaBuilder implements DeltaBuilder
             return null;
         }
 
-        return new ArrayList<String>( result );
+        return result;
     }
 
-    private List<String> findRefilledCollectionProperties( Class clazz )
+    private Set<String> findCollectionProperties( Map<Class, List<String>> collectionProperties, Class clazz )
     {
-        if (refilledCollection == null || clazz == null)
+        if (collectionProperties == null || clazz == null)
         {
             return null;
         }
 
         Set<String> result = new HashSet<String>();
 
-        List<String> directClass = refilledCollection.get( clazz );
+        List<String> directClass = collectionProperties.get( clazz );
 
         if( directClass != null )
         {
@@ -566,13 +1695,13 @@ public class DefaultDeltaBuilder implements DeltaBuilder
         }
 
         // let's see if there is any superclass in that map.
-        Set<Class> keys = refilledCollection.keySet();
+        Set<Class> keys = collectionProperties.keySet();
 
         for( Class keyClass : keys )
         {
             if( keyClass.isAssignableFrom( clazz ) ) //&& keyClass != clazz )
             {
-                List<String> superClass = refilledCollection.get( keyClass );
+                List<String> superClass = collectionProperties.get( keyClass );
 
                 if (superClass != null)
                 {
@@ -586,6 +1715,16 @@ public class DefaultDeltaBuilder implements DeltaBuilder
             return null;
         }
 
-        return new ArrayList<String>( result );
+        return result;
+    }
+
+    /**
+     * Diff of a single collection item. Items are independent of each other, which is what lets them be diffed in
+     * chunks on the executor threads.
+     */
+    private interface ItemDiff
+    {
+        Delta diff( int index );
     }
+
 }
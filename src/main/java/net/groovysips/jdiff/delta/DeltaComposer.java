@@ -0,0 +1,785 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.groovysips.jdiff.CompositeDelta;
+import net.groovysips.jdiff.Delta;
+import static net.groovysips.jdiff.StringUtils.buildLogableString;
+import org.springframework.util.StringUtils;
+
+/**
+ * Squashes a chain of deltas into a single one that applies in one go what the chain applies one delta after another.
+ * Every delta of the chain is expected to be a diff against what the deltas before it made, the way a history of an
+ * entity is recorded.
+ * <p/>
+ * Within a bean a later update of a property overrides the earlier ones and the changes of the same nested bean,
+ * collection or map are folded together. Collection items are told apart by the keys of their
+ * {@link KeyedFinderCriteria}: an update of a new item is folded into the new item, a removal of a new item leaves
+ * nothing behind and a {@link ClearAllDelta} drops whatever was done to the collection before it. Map entries are
+ * handled the same way by their keys. A delta that refers to its own objects (see {@link Referenceable}) is taken over
+ * as it is, nothing is folded into it or across it.
+ * <p/>
+ * An overridden change is dropped even though it might have been seen through another reference to the changed object,
+ * one the deltas know nothing about.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class DeltaComposer
+{
+
+    // new items are merged to find out their keys.
+    private final VisitingDeltaMerger merger;
+
+    public DeltaComposer()
+    {
+        this( new VisitingDeltaMerger() );
+    }
+
+    /**
+     * @param merger - merger to create the new items with, should be set up like the one the deltas are applied with
+     */
+    public DeltaComposer( VisitingDeltaMerger merger )
+    {
+        this.merger = merger;
+    }
+
+    /**
+     * @return delta that applies the first delta and then the second one.
+     */
+    public Delta compose( Delta first, Delta second )
+    {
+        return composeAll( Arrays.asList( first, second ) );
+    }
+
+    /**
+     * @param deltas - chain of deltas, in the order they are applied
+     * @return delta that applies the whole chain, {@link Delta#NULL} for an empty one.
+     * @throws RuntimeException - if a delta of the chain can not be applied to what the deltas before it make.
+     */
+    public Delta composeAll( List<Delta> deltas )
+    {
+        Composition composition = new Composition();
+
+        for( Delta delta : deltas )
+        {
+            composition.add( delta );
+        }
+
+        return composition.close();
+    }
+
+    // HELPERS
+    private static boolean refers( Delta delta )
+    {
+        if( delta instanceof ReferenceDelta )
+        {
+            return true;
+        }
+
+        if( delta instanceof Referenceable && ( (Referenceable) delta ).getReferenceId() != 0 )
+        {
+            return true;
+        }
+
+        if( delta instanceof CompositeDelta )
+        {
+            for( Delta child : ( (CompositeDelta) delta ).children() )
+            {
+                if( refers( child ) )
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static Delta templateOf( Object entry )
+    {
+        return entry instanceof Open ? ( (Open) entry ).template : (Delta) entry;
+    }
+
+    private static String propertyOf( Delta delta )
+    {
+        String result = null;
+
+        if( delta instanceof PropertyUpdateDelta )
+        {
+            result = ( (PropertyUpdateDelta) delta ).getPropertyName();
+        }
+        else if( delta instanceof NullReturnDelta )
+        {
+            result = ( (NullReturnDelta) delta ).getPropertyName();
+        }
+        else if( delta instanceof SimpleContainerDelta )
+        {
+            result = ( (SimpleContainerDelta) delta ).getPropertyName();
+        }
+        else if( delta instanceof JavaBeanDelta )
+        {
+            result = ( (JavaBeanDelta) delta ).getPropertyName();
+        }
+        else if( delta instanceof CollectionDelta )
+        {
+            result = ( (CollectionDelta) delta ).getPropertyName();
+        }
+        else if( delta instanceof MapDelta )
+        {
+            result = ( (MapDelta) delta ).getPropertyName();
+        }
+        else if( delta instanceof ArrayDelta )
+        {
+            result = ( (ArrayDelta) delta ).getPropertyName();
+        }
+        else if( delta instanceof ReferenceDelta )
+        {
+            result = ( (ReferenceDelta) delta ).getPropertyName();
+        }
+
+        return StringUtils.hasText( result ) ? result : null;
+    }
+
+    /**
+     * @return whether the delta sets the property no matter what it was before.
+     */
+    private static boolean overrides( Delta delta )
+    {
+        return delta instanceof PropertyUpdateDelta || delta instanceof NullReturnDelta || delta instanceof JavaBeanDelta;
+    }
+
+    /**
+     * @return whether the entry only sets the property, a later setting makes it useless.
+     */
+    private static boolean isOverridable( Object entry )
+    {
+        Delta template = templateOf( entry );
+
+        return template instanceof PropertyUpdateDelta || template instanceof NullReturnDelta || template instanceof JavaBeanDelta;
+    }
+
+    /**
+     * @return whether the delta is kept open in the composition, so that later deltas can be folded into it.
+     */
+    private static boolean isFoldable( Delta delta )
+    {
+        if( delta instanceof SimpleContainerDelta ||
+            delta instanceof JavaBeanDelta ||
+            delta instanceof CollectionDelta ||
+            delta instanceof MapDelta ||
+            delta instanceof UpdateItemDelta ||
+            delta instanceof UpdateEntryDelta )
+        {
+            return true;
+        }
+
+        // new items and entries are folded only when they are beans.
+        return ( delta instanceof NewItemDelta || delta instanceof PutEntryDelta ) &&
+               ( (CompositeDelta) delta ).children().get( 0 ) instanceof JavaBeanDelta;
+    }
+
+    private static AbstractCompositeDelta withChildren( AbstractCompositeDelta delta, List<Delta> children )
+    {
+        for( Delta child : children )
+        {
+            delta.addChild( child );
+        }
+
+        return delta;
+    }
+
+    private static JavaBeanDelta bean( JavaBeanDelta template, int referenceId, List<Delta> children )
+    {
+        JavaBeanDelta result = new JavaBeanDelta( template.getRootObjectClass(), template.getPropertyName() );
+        result.setReferenceId( referenceId );
+
+        return (JavaBeanDelta) withChildren( result, children );
+    }
+
+    private static SimpleContainerDelta container( SimpleContainerDelta template, int referenceId, List<Delta> children )
+    {
+        SimpleContainerDelta result = new SimpleContainerDelta( template.getPropertyName() );
+        result.setReferenceId( referenceId );
+
+        return (SimpleContainerDelta) withChildren( result, children );
+    }
+
+    /**
+     * The deltas of a chain composed so far.
+     */
+    private final class Composition
+    {
+        // Delta.NULL, a delta that does not depend on what it is applied to or the open root.
+        private Object root = Delta.NULL;
+
+        // whether a delta taken over already refers to its own objects.
+        private boolean registered;
+
+        private void add( Delta delta )
+        {
+            if( delta == Delta.NULL )
+            {
+                return;
+            }
+
+            boolean refers = refers( delta );
+
+            if( !VisitingDeltaMerger.expectsInitialObjectOnResultStack( delta ) )
+            {
+                // nothing before such a delta matters.
+                root = delta instanceof JavaBeanDelta && propertyOf( delta ) == null ? new Open( delta, !refers ) : delta;
+                registered = refers;
+                return;
+            }
+
+            if( root == Delta.NULL )
+            {
+                root = new Open( delta, !refers );
+                registered = refers;
+                return;
+            }
+
+            if( !( root instanceof Open ) )
+            {
+                String msg = buildLogableString( "Unable to compose a delta applied to the object the deltas before it do not return.",
+                                                 new Object[][]{
+                                                     { "before", root },
+                                                     { "delta", delta }
+                                                 } );
+                throw new RuntimeException( msg );
+            }
+
+            Open open = (Open) root;
+
+            int referenceId = ( (SimpleContainerDelta) delta ).getReferenceId();
+
+            if( referenceId != 0 && referenceId != open.referenceId )
+            {
+                // the root is registered once, before any delta of the chain registers anything.
+                if( open.referenceId != 0 || registered )
+                {
+                    String msg = buildLogableString( "Unable to compose a delta referring to its root under an id in use already.",
+                                                     new Object[][]{
+                                                         { "delta", delta },
+                                                         { "referenceId", referenceId }
+                                                     } );
+                    throw new RuntimeException( msg );
+                }
+
+                open.referenceId = referenceId;
+            }
+
+            open.feed( delta, !refers );
+
+            registered |= refers;
+        }
+
+        private Delta close()
+        {
+            return root instanceof Open ? ( (Open) root ).close() : (Delta) root;
+        }
+    }
+
+    /**
+     * A composite delta of the composition that is still open for the deltas folded into it.
+     */
+    private final class Open
+    {
+        private final Delta template;
+
+        private final Slots children;
+
+        private int referenceId;
+
+        private Open( Delta template, boolean folding )
+        {
+            this.template = template;
+
+            if( template instanceof CollectionDelta )
+            {
+                this.children = new Items();
+            }
+            else if( template instanceof MapDelta )
+            {
+                this.children = new Entries();
+            }
+            else
+            {
+                this.children = new Properties();
+            }
+
+            if( template instanceof Referenceable )
+            {
+                this.referenceId = ( (Referenceable) template ).getReferenceId();
+            }
+
+            feed( template, folding );
+        }
+
+        /**
+         * @return whether the later delta changes the same object this one does.
+         */
+        private boolean absorbs( Delta later )
+        {
+            if( template instanceof SimpleContainerDelta || template instanceof JavaBeanDelta )
+            {
+                return later instanceof SimpleContainerDelta;
+            }
+
+            if( template instanceof NewItemDelta || template instanceof UpdateItemDelta )
+            {
+                return later instanceof UpdateItemDelta;
+            }
+
+            if( template instanceof PutEntryDelta || template instanceof UpdateEntryDelta )
+            {
+                return later instanceof UpdateEntryDelta;
+            }
+
+            return template.getClass() == later.getClass();
+        }
+
+        private void feed( Delta delta, boolean folding )
+        {
+            List<Delta> content = ( (CompositeDelta) delta ).children();
+
+            // the items and the entries wrap the bean they are about.
+            if( delta instanceof NewItemDelta ||
+                delta instanceof UpdateItemDelta ||
+                delta instanceof PutEntryDelta ||
+                delta instanceof UpdateEntryDelta )
+            {
+                content = ( (CompositeDelta) content.get( 0 ) ).children();
+            }
+
+            if( folding )
+            {
+                for( Delta child : content )
+                {
+                    children.add( child );
+                }
+            }
+            else
+            {
+                children.barrier();
+
+                for( Delta child : content )
+                {
+                    children.append( child );
+                }
+
+                children.barrier();
+            }
+        }
+
+        private Delta close()
+        {
+            List<Delta> closed = children.close();
+
+            if( template instanceof SimpleContainerDelta )
+            {
+                return container( (SimpleContainerDelta) template, referenceId, closed );
+            }
+
+            if( template instanceof JavaBeanDelta )
+            {
+                return bean( (JavaBeanDelta) template, referenceId, closed );
+            }
+
+            if( template instanceof CollectionDelta )
+            {
+                CollectionDelta collection = (CollectionDelta) template;
+
+                return withChildren( new CollectionDelta( collection.getPropertyName(), collection.getCollectionClass() ), closed );
+            }
+
+            if( template instanceof MapDelta )
+            {
+                MapDelta map = (MapDelta) template;
+
+                return withChildren( new MapDelta( map.getPropertyName(), map.getMapClass() ), closed );
+            }
+
+            Delta inner = ( (CompositeDelta) template ).children().get( 0 );
+
+            if( template instanceof NewItemDelta )
+            {
+                return new NewItemDelta( bean( (JavaBeanDelta) inner, ( (JavaBeanDelta) inner ).getReferenceId(), closed ) );
+            }
+
+            if( template instanceof UpdateItemDelta )
+            {
+                SimpleContainerDelta item = container( (SimpleContainerDelta) inner, ( (SimpleContainerDelta) inner ).getReferenceId(), closed );
+
+                return new UpdateItemDelta( item, ( (UpdateItemDelta) template ).getFinderCriteria() );
+            }
+
+            if( template instanceof PutEntryDelta )
+            {
+                return new PutEntryDelta( ( (PutEntryDelta) template ).getKey(), bean( (JavaBeanDelta) inner, ( (JavaBeanDelta) inner ).getReferenceId(), closed ) );
+            }
+
+            return new UpdateEntryDelta( ( (UpdateEntryDelta) template ).getKey(), container( (SimpleContainerDelta) inner, ( (SimpleContainerDelta) inner ).getReferenceId(), closed ) );
+        }
+    }
+
+    /**
+     * Children of an open delta. Dropped children leave a hole behind, so that the positions of the rest stay valid.
+     * Nothing is folded into the children before the barrier.
+     */
+    private abstract class Slots
+    {
+        protected final List<Object> entries = new ArrayList<Object>();
+
+        private int barrier;
+
+        protected abstract void add( Delta delta );
+
+        /**
+         * @return position of the delta, appended as it is.
+         */
+        protected int append( Delta delta )
+        {
+            entries.add( delta );
+
+            return entries.size() - 1;
+        }
+
+        /**
+         * @return position of the delta, appended open if it can have the later deltas folded into it.
+         */
+        protected int appendOpen( Delta delta )
+        {
+            entries.add( isFoldable( delta ) ? new Open( delta, true ) : delta );
+
+            return entries.size() - 1;
+        }
+
+        protected void drop( int position )
+        {
+            entries.set( position, null );
+        }
+
+        protected void barrier()
+        {
+            barrier = entries.size();
+        }
+
+        protected void dropAll()
+        {
+            for( int i = barrier; i < entries.size(); i++ )
+            {
+                drop( i );
+            }
+        }
+
+        /**
+         * @return the position if there is a child at it that can be folded into or dropped, -1 otherwise.
+         */
+        protected int live( Integer position )
+        {
+            return position != null && position >= barrier && entries.get( position ) != null ? position : -1;
+        }
+
+        private List<Delta> close()
+        {
+            List<Delta> result = new ArrayList<Delta>( entries.size() );
+
+            for( Object entry : entries )
+            {
+                if( entry != null )
+                {
+                    result.add( entry instanceof Open ? ( (Open) entry ).close() : (Delta) entry );
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Children of a bean, by the property they change.
+     */
+    private final class Properties extends Slots
+    {
+        private final Map<String, Integer> lastChanges = new HashMap<String, Integer>();
+
+        protected void add( Delta delta )
+        {
+            String property = propertyOf( delta );
+
+            if( property == null )
+            {
+                appendOpen( delta );
+                barrier();
+                return;
+            }
+
+            int last = live( lastChanges.get( property ) );
+
+            if( last >= 0 )
+            {
+                Object earlier = entries.get( last );
+
+                if( overrides( delta ) && isOverridable( earlier ) )
+                {
+                    drop( last );
+                }
+                else if( earlier instanceof Open && ( (Open) earlier ).absorbs( delta ) )
+                {
+                    ( (Open) earlier ).feed( delta, true );
+                    return;
+                }
+            }
+
+            lastChanges.put( property, appendOpen( delta ) );
+        }
+    }
+
+    /**
+     * Children of a collection, by the keys of the items they change.
+     */
+    private final class Items extends Slots
+    {
+        // positions of the changes by their keys, per class of the criteria that keyed them.
+        private final Map<Class, Map<Object, Integer>> keys = new HashMap<Class, Map<Object, Integer>>();
+
+        // positions of the new items and how many of them were keyed by each class of the criteria.
+        private final List<Integer> newItems = new ArrayList<Integer>();
+        private final Map<Class, Integer> keyedNewItems = new HashMap<Class, Integer>();
+
+        protected void add( Delta delta )
+        {
+            if( delta instanceof ClearAllDelta )
+            {
+                dropAll();
+                append( delta );
+                reset();
+                return;
+            }
+
+            if( delta instanceof NewItemDelta )
+            {
+                newItems.add( appendOpen( delta ) );
+                return;
+            }
+
+            KeyedFinderCriteria crit = keyedCriteriaOf( delta );
+
+            if( crit == null )
+            {
+                // nothing is known of the item it changes, it may be any of them.
+                appendOpen( delta );
+                reset();
+                return;
+            }
+
+            Map<Object, Integer> byKey = keysOf( crit );
+
+            Object key = crit.getKey();
+
+            int last = live( byKey.get( key ) );
+
+            Object entry = last < 0 ? null : entries.get( last );
+
+            Delta earlier = templateOf( entry );
+
+            if( delta instanceof UpdateItemDelta )
+            {
+                if( entry instanceof Open && ( (Open) entry ).absorbs( delta ) )
+                {
+                    ( (Open) entry ).feed( delta, true );
+
+                    if( earlier instanceof NewItemDelta )
+                    {
+                        rekey( crit, key, last, byKey );
+                    }
+                    return;
+                }
+            }
+            else if( earlier instanceof NewItemDelta )
+            {
+                // added and removed again.
+                drop( last );
+                byKey.remove( key );
+                return;
+            }
+            else if( earlier instanceof UpdateItemDelta )
+            {
+                drop( last );
+            }
+
+            byKey.put( key, appendOpen( delta ) );
+        }
+
+        private void reset()
+        {
+            barrier();
+            keys.clear();
+            newItems.clear();
+            keyedNewItems.clear();
+        }
+
+        private KeyedFinderCriteria keyedCriteriaOf( Delta delta )
+        {
+            FinderCriteria crit = null;
+
+            if( delta instanceof UpdateItemDelta )
+            {
+                crit = ( (UpdateItemDelta) delta ).getFinderCriteria();
+            }
+            else if( delta instanceof RemoveItemDelta )
+            {
+                crit = ( (RemoveItemDelta) delta ).getFinderCriteria();
+            }
+
+            if( crit instanceof KeyedFinderCriteria && ( (KeyedFinderCriteria) crit ).getKey() != null )
+            {
+                return (KeyedFinderCriteria) crit;
+            }
+
+            return null;
+        }
+
+        private Map<Object, Integer> keysOf( KeyedFinderCriteria crit )
+        {
+            Map<Object, Integer> result = keys.get( crit.getClass() );
+
+            if( result == null )
+            {
+                result = new HashMap<Object, Integer>();
+                keys.put( crit.getClass(), result );
+            }
+
+            Integer keyed = keyedNewItems.get( crit.getClass() );
+
+            // the new items added since the last lookup with such criteria.
+            for( int i = keyed == null ? 0 : keyed; i < newItems.size(); i++ )
+            {
+                int position = newItems.get( i );
+
+                if( entries.get( position ) == null )
+                {
+                    continue;
+                }
+
+                Object key = crit.keyOf( itemOf( entries.get( position ) ) );
+
+                Integer previous = key == null ? null : result.get( key );
+
+                if( key != null && ( previous == null || previous < position ) )
+                {
+                    result.put( key, position );
+                }
+            }
+
+            keyedNewItems.put( crit.getClass(), newItems.size() );
+
+            return result;
+        }
+
+        /**
+         * Keys the new item again, an update might have changed its key.
+         */
+        private void rekey( KeyedFinderCriteria crit, Object key, int position, Map<Object, Integer> byKey )
+        {
+            Object newKey = crit.keyOf( itemOf( entries.get( position ) ) );
+
+            if( !key.equals( newKey ) )
+            {
+                byKey.remove( key );
+
+                if( newKey != null )
+                {
+                    byKey.put( newKey, position );
+                }
+            }
+        }
+
+        private Object itemOf( Object newItem )
+        {
+            Delta delta = newItem instanceof Open ? ( (Open) newItem ).close() : (Delta) newItem;
+
+            Delta item = ( (CompositeDelta) delta ).children().get( 0 );
+
+            if( item instanceof PrimitiveValueDelta )
+            {
+                return ( (PrimitiveValueDelta) item ).getValue();
+            }
+
+            return merger.merge( null, item );
+        }
+    }
+
+    /**
+     * Children of a map, by the keys of the entries they change.
+     */
+    private final class Entries extends Slots
+    {
+        private final Map<Object, Integer> lastChanges = new HashMap<Object, Integer>();
+
+        protected void add( Delta delta )
+        {
+            Object key;
+
+            if( delta instanceof PutEntryDelta )
+            {
+                key = ( (PutEntryDelta) delta ).getKey();
+            }
+            else if( delta instanceof UpdateEntryDelta )
+            {
+                key = ( (UpdateEntryDelta) delta ).getKey();
+            }
+            else if( delta instanceof RemoveEntryDelta )
+            {
+                key = ( (RemoveEntryDelta) delta ).getKey();
+            }
+            else
+            {
+                appendOpen( delta );
+                barrier();
+                lastChanges.clear();
+                return;
+            }
+
+            int last = live( lastChanges.get( key ) );
+
+            Object earlier = last < 0 ? null : entries.get( last );
+
+            if( delta instanceof UpdateEntryDelta )
+            {
+                if( earlier instanceof Open && ( (Open) earlier ).absorbs( delta ) )
+                {
+                    ( (Open) earlier ).feed( delta, true );
+                    return;
+                }
+            }
+            else if( templateOf( earlier ) instanceof PutEntryDelta || templateOf( earlier ) instanceof RemoveEntryDelta )
+            {
+                // the entry is put or removed no matter what it was.
+                drop( last );
+            }
+
+            lastChanges.put( key, appendOpen( delta ) );
+        }
+    }
+
+}
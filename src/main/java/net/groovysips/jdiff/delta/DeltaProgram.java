@@ -0,0 +1,374 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+import net.groovysips.jdiff.CompositeDelta;
+import net.groovysips.jdiff.Delta;
+import net.groovysips.jdiff.PropertyDescriptorUtils;
+import net.groovysips.jdiff.access.PropertyAccessor;
+import static net.groovysips.jdiff.StringUtils.buildLogableString;
+import org.springframework.util.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A delta compiled by {@link VisitingDeltaMerger#compile(Delta)}. The delta tree is lowered once into a flat list of
+ * instructions; stepping into a bean property, setting a property and stepping back out are instructions of their
+ * own with the accessors resolved on the first use and kept per instruction. The rest of the deltas are handed to the
+ * merger one by one, just as the visit of the tree would.
+ * <p/>
+ * A program is thread safe as long as the delta it was compiled from does not change.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class DeltaProgram
+{
+
+    private static final Log LOG = LogFactory.getLog( DeltaProgram.class );
+
+    // the merger does the job, same as when visiting.
+    private static final int VISIT = 0;
+    private static final int VISIT_CHILD = 1;
+    private static final int END_VISIT = 2;
+
+    // read the property of the bean on the top, push the value (its copy when applying copy on write).
+    private static final int DESCEND = 4;
+    // pop, hand the popped value to the result holder if it is on the top.
+    private static final int ASCEND = 5;
+    // write the value to the property of the bean on the top.
+    private static final int SET = 6;
+    // write the bits to the primitive property of the bean on the top.
+    private static final int SET_BITS = 7;
+
+    private final VisitingDeltaMerger merger;
+
+    private final Delta delta;
+
+    private final boolean targetPushed;
+
+    private final int[] ops;
+
+    private final Delta[] operands;
+
+    // accessors of the property instructions by the class they were last resolved for.
+    private final Site[] sites;
+
+    DeltaProgram( VisitingDeltaMerger merger, Delta delta )
+    {
+        this.merger = merger;
+        this.delta = delta;
+        this.targetPushed = VisitingDeltaMerger.expectsInitialObjectOnResultStack( delta );
+
+        List<Integer> opList = new ArrayList<Integer>();
+        List<Delta> operandList = new ArrayList<Delta>();
+
+        if( delta instanceof CompositeDelta )
+        {
+            lowerComposite( delta, opList, operandList );
+        }
+        else
+        {
+            lowerChild( delta, opList, operandList );
+        }
+
+        this.ops = new int[opList.size()];
+        for( int i = 0; i < ops.length; i++ )
+        {
+            ops[ i ] = opList.get( i );
+        }
+
+        this.operands = operandList.toArray( new Delta[operandList.size()] );
+        this.sites = new Site[ops.length];
+
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "DeltaProgram", new Object[][] { { "delta", delta }, { "instructions", ops.length } } ) );
+        }
+    }
+
+    public Delta getDelta()
+    {
+        return delta;
+    }
+
+    /**
+     * @return number of instructions the delta was compiled into.
+     */
+    public int size()
+    {
+        return ops.length;
+    }
+
+    /**
+     * Applies the delta to the object.
+     *
+     * @param object - object to apply the delta to
+     * @return merged object, same as {@link VisitingDeltaMerger#merge(Object, Delta)} returns.
+     */
+    public Object apply( Object object )
+    {
+        MergeContext context = merger.acquireContext();
+
+        try
+        {
+            return run( object, context );
+        }
+        finally
+        {
+            context.release();
+        }
+    }
+
+    /**
+     * Applies the delta copy on write, leaving the object alone.
+     *
+     * @param object - object to apply the delta to, not changed
+     * @return merged object, same as {@link VisitingDeltaMerger#mergeCopy(Object, Delta)} returns.
+     */
+    public Object applyCopy( Object object )
+    {
+        MergeContext context = merger.acquireContext();
+
+        context.setCopyOnWrite( true );
+
+        try
+        {
+            Object result = run( object, context );
+
+            context.repointCopies( result );
+
+            return result;
+        }
+        finally
+        {
+            context.release();
+        }
+    }
+
+    // HELPERS
+    private Object run( Object object, MergeContext context )
+    {
+        Stack stack = context.resultStack;
+
+        stack.push( new VisitingDeltaMerger.ResultHolder() );
+
+        if( targetPushed )
+        {
+            stack.push( context.writable( object ) );
+        }
+
+        for( int pc = 0; pc < ops.length; pc++ )
+        {
+            switch( ops[ pc ] )
+            {
+                case DESCEND:
+                {
+                    Object bean = stack.peek();
+
+                    stack.push( bean == null ? null : descend( pc, bean, context ) );
+                    break;
+                }
+                case ASCEND:
+                {
+                    Object popped = stack.pop();
+
+                    if( stack.peek() instanceof VisitingDeltaMerger.ResultHolder )
+                    {
+                        ( (VisitingDeltaMerger.ResultHolder) stack.peek() ).result = popped;
+                    }
+                    break;
+                }
+                case SET:
+                {
+                    Object bean = stack.peek();
+
+                    PropertyAccessor accessor = bean == null ? null : accessorAt( pc, bean.getClass() );
+
+                    if( accessor != null )
+                    {
+                        PropertyDescriptorUtils.write( bean, ( (PropertyUpdateDelta) operands[ pc ] ).getNewValue(), accessor );
+                    }
+                    break;
+                }
+                case SET_BITS:
+                {
+                    Object bean = stack.peek();
+
+                    PropertyAccessor accessor = bean == null ? null : accessorAt( pc, bean.getClass() );
+
+                    if( accessor != null )
+                    {
+                        PropertyDescriptorUtils.writeBits( bean, ( (PrimitiveUpdateDelta) operands[ pc ] ).getNewBits(), accessor );
+                    }
+                    break;
+                }
+                case VISIT:
+                    ( (AbstractCompositeDelta) operands[ pc ] ).acceptStart( context );
+                    break;
+                case VISIT_CHILD:
+                    AbstractCompositeDelta.acceptChild( operands[ pc ], context );
+                    break;
+                case END_VISIT:
+                    ( (AbstractCompositeDelta) operands[ pc ] ).acceptEnd( context );
+                    break;
+                default:
+                    throw new IllegalStateException( "Unknown instruction " + ops[ pc ] );
+            }
+        }
+
+        return ( (VisitingDeltaMerger.ResultHolder) stack.pop() ).result;
+    }
+
+    private Object descend( int pc, Object bean, MergeContext context )
+    {
+        Object value = read( pc, bean );
+
+        Object result = context.writable( value );
+
+        // the bean is a copy already, it takes the copy of the value.
+        if( result != value )
+        {
+            PropertyDescriptorUtils.write( bean, result, accessorAt( pc, bean.getClass() ) );
+        }
+
+        return result;
+    }
+
+    private Object read( int pc, Object bean )
+    {
+        PropertyAccessor accessor = accessorAt( pc, bean.getClass() );
+
+        // no such property, the merger would fail the same way.
+        return accessor != null ?
+               PropertyDescriptorUtils.read( bean, accessor ) :
+               PropertyDescriptorUtils.read( bean, ( (SimpleContainerDelta) operands[ pc ] ).getPropertyName() );
+    }
+
+    private PropertyAccessor accessorAt( int pc, Class beanClass )
+    {
+        Site site = sites[ pc ];
+
+        if( site == null || site.beanClass != beanClass )
+        {
+            site = new Site( beanClass, merger.accessorOf( beanClass, propertyNameOf( operands[ pc ] ) ) );
+
+            sites[ pc ] = site;
+        }
+
+        return site.accessor;
+    }
+
+    private static String propertyNameOf( Delta delta )
+    {
+        return delta instanceof SimpleContainerDelta ?
+               ( (SimpleContainerDelta) delta ).getPropertyName() :
+               ( (PropertyUpdateDelta) delta ).getPropertyName();
+    }
+
+    private static void lowerComposite( Delta delta, List<Integer> ops, List<Delta> operands )
+    {
+        if( !( delta instanceof AbstractCompositeDelta ) )
+        {
+            // the merger fails such a delta the same way.
+            emit( VISIT_CHILD, delta, ops, operands );
+            return;
+        }
+
+        if( delta instanceof SimpleContainerDelta &&
+            ( (SimpleContainerDelta) delta ).getReferenceId() == 0 )
+        {
+            // without a reference id there is nothing to register, only the step into the property is left.
+            if( StringUtils.hasText( ( (SimpleContainerDelta) delta ).getPropertyName() ) )
+            {
+                emit( DESCEND, delta, ops, operands );
+            }
+        }
+        else
+        {
+            emit( VISIT, delta, ops, operands );
+        }
+
+        for( Delta child : ( (CompositeDelta) delta ).children() )
+        {
+            if( child instanceof CompositeDelta )
+            {
+                lowerComposite( child, ops, operands );
+            }
+            else
+            {
+                lowerChild( child, ops, operands );
+            }
+        }
+
+        if( delta instanceof SimpleContainerDelta ||
+            delta instanceof JavaBeanDelta ||
+            delta instanceof ArrayDelta ||
+            delta instanceof MapDelta )
+        {
+            emit( ASCEND, delta, ops, operands );
+        }
+        else if( !( delta instanceof UpdateItemDelta || delta instanceof UpdateItemAtDelta || delta instanceof UpdateEntryDelta ) )
+        {
+            // a collection delta ends with its removals taken out of the collection.
+            emit( END_VISIT, delta, ops, operands );
+        }
+    }
+
+    private static void lowerChild( Delta delta, List<Integer> ops, List<Delta> operands )
+    {
+        if( delta == Delta.NULL )
+        {
+            return;
+        }
+
+        if( delta instanceof PrimitiveUpdateDelta )
+        {
+            emit( SET_BITS, delta, ops, operands );
+        }
+        else if( delta instanceof PropertyUpdateDelta &&
+                 !StringUtils.hasText( ( (PropertyUpdateDelta) delta ).getWriteMethodName() ) )
+        {
+            emit( SET, delta, ops, operands );
+        }
+        else
+        {
+            emit( VISIT_CHILD, delta, ops, operands );
+        }
+    }
+
+    private static void emit( int op, Delta delta, List<Integer> ops, List<Delta> operands )
+    {
+        ops.add( op );
+        operands.add( delta );
+    }
+
+    private static final class Site
+    {
+        private final Class beanClass;
+
+        private final PropertyAccessor accessor;
+
+        private Site( Class beanClass, PropertyAccessor accessor )
+        {
+            this.beanClass = beanClass;
+            this.accessor = accessor;
+        }
+    }
+
+}
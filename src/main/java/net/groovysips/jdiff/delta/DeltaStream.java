@@ -0,0 +1,130 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.groovysips.jdiff.Delta;
+import net.groovysips.jdiff.DeltaVisitor;
+
+/**
+ * Pushes the deltas of a streaming build into a visitor as they are found. Bean containers are opened lazily: a
+ * container is visited just before its first child, so an unchanged container costs nothing and never reaches the
+ * visitor. The only state kept is the path of the open containers.
+ * <p/>
+ * Streamed containers are visited directly, not through {@link DeltaVisitor#visitChild(Delta)} of their parent, and
+ * reach the visitor without children. Everything else is handed over whole through visitChild, the way a visitor
+ * walking the built tree would get it.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+class DeltaStream
+{
+
+    private final DeltaVisitor visitor;
+    private final BuildContext context;
+    private final List<AbstractCompositeDelta> open = new ArrayList<AbstractCompositeDelta>();
+
+    // the open containers below this index have been visited.
+    private int visited;
+    private boolean emitted;
+
+    DeltaStream( DeltaVisitor visitor, BuildContext context )
+    {
+        this.visitor = visitor;
+        this.context = context;
+    }
+
+    /**
+     * @return true if anything has reached the visitor.
+     */
+    boolean hasEmitted()
+    {
+        return emitted;
+    }
+
+    void open( AbstractCompositeDelta container )
+    {
+        open.add( container );
+    }
+
+    /**
+     * Hands a finished delta of the innermost open container to the visitor.
+     */
+    void emit( Delta child )
+    {
+        flush();
+
+        visitor.visitChild( child );
+
+        emitted = true;
+    }
+
+    /**
+     * Closes the innermost open container.
+     *
+     * @param container - the container being closed
+     * @param force     - true if the container has to reach the visitor even when it has no children
+     * @return true if the container has reached the visitor.
+     */
+    boolean close( AbstractCompositeDelta container, boolean force )
+    {
+        int depth = open.size() - 1;
+
+        if( depth < 0 || open.get( depth ) != container )
+        {
+            throw new IllegalStateException( "Containers must be closed in the order they were opened." );
+        }
+
+        if( force )
+        {
+            flush();
+        }
+
+        boolean result = visited > depth;
+
+        open.remove( depth );
+
+        if( result )
+        {
+            visited = depth;
+
+            visitor.endVisit( container );
+        }
+
+        return result;
+    }
+
+    // HELPERS
+    private void flush()
+    {
+        for( ; visited < open.size(); visited++ )
+        {
+            AbstractCompositeDelta container = open.get( visited );
+
+            // a back reference to the container may turn up after it has been visited, it gets its id up front.
+            if( container instanceof Referenceable )
+            {
+                context.referenceIdOf( (Referenceable) container );
+            }
+
+            visitor.visit( container );
+
+            emitted = true;
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+/**
+ * A bean that keeps track of its own modified properties. In the dirty tracking mode of the builder only the dirty
+ * primitive properties of such a bean are compared, composite, collection, map and array properties are still walked
+ * into so that the changes of the objects below are not missed. A bean with a {@link DirtyTracker#isDeep() deep}
+ * tracker has the changes below it propagated into its own tracker, and so none of its clean properties are walked.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface DirtyTrackable
+{
+
+    /**
+     * @return tracker of the bean, never null.
+     */
+    DirtyTracker dirtyTracker();
+
+}
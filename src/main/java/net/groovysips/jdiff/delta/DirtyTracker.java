@@ -0,0 +1,323 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import net.groovysips.jdiff.PropertyDescriptorUtils;
+import net.groovysips.jdiff.access.Accessors;
+import static net.groovysips.jdiff.StringUtils.buildLogableString;
+
+/**
+ * Set of the modified properties of a bean, kept as a bitset indexed by the position of the property among the
+ * properties of the bean class. Typically a bean creates one for itself and marks a property dirty in its setter.
+ * <p/>
+ * A deep tracker also vouches for everything below the bean: the trackers of the nested beans are
+ * {@link #attachTo(DirtyTracker, String) attached} to it, so that a change anywhere below marks the property holding
+ * the nested bean dirty, and the bean marks its collection, map and array properties dirty when their content changes.
+ * The builder then skips the clean properties of a deep tracker altogether instead of walking into them.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class DirtyTracker
+{
+
+    // indexes of the classes loaded by the class loader of this library (or one of its parents), read without locking.
+    private static final ConcurrentMap<Class, Map<String, Integer>> indexes =
+        new ConcurrentHashMap<Class, Map<String, Integer>>();
+
+    // indexes of the other classes. They hold nothing but property names, so the weak keys are all it takes not to pin
+    // the class loaders.
+    private static final Map<Class, Map<String, Integer>> foreignIndexes = new WeakHashMap<Class, Map<String, Integer>>();
+
+    private final Class beanClass;
+    private final Map<String, Integer> index;
+    private final long[] bits;
+    private final boolean deep;
+
+    private List<Parent> parents;
+
+    public DirtyTracker( Class beanClass )
+    {
+        this( beanClass, false );
+    }
+
+    /**
+     * @param beanClass
+     * @param deep - true if the bean reports the changes below it, see {@link #isDeep()}.
+     */
+    public DirtyTracker( Class beanClass, boolean deep )
+    {
+        this.beanClass = beanClass;
+        this.index = indexOf( beanClass );
+        this.bits = new long[( index.size() + 63 ) >>> 6];
+        this.deep = deep;
+    }
+
+    public Class getBeanClass()
+    {
+        return beanClass;
+    }
+
+    /**
+     * @return true if a clean property of the bean is clean all the way down, and so can be skipped by the builder
+     *         whatever its kind. Otherwise only the clean primitive properties are skipped.
+     */
+    public boolean isDeep()
+    {
+        return deep;
+    }
+
+    /**
+     * Makes the changes of this tracker's bean mark the given property of the parent bean dirty, and so on up the
+     * graph. A bean held by several parents is attached to each of them.
+     *
+     * @param parent - tracker of the bean holding this tracker's bean.
+     * @param propertyName - property of the parent holding this tracker's bean, directly or as an element.
+     * @throws RuntimeException - if the parent bean class has no such property.
+     */
+    public void attachTo( DirtyTracker parent, String propertyName )
+    {
+        if( parents == null )
+        {
+            parents = new ArrayList<Parent>( 1 );
+        }
+
+        int propertyIndex = parent.indexOf( propertyName );
+
+        parents.add( new Parent( parent, propertyIndex ) );
+
+        if( !isClean() )
+        {
+            parent.markDirty( propertyIndex );
+        }
+    }
+
+    /**
+     * Undoes {@link #attachTo(DirtyTracker, String)}, usually once the bean is no longer held by the parent.
+     *
+     * @param parent
+     * @param propertyName
+     */
+    public void detachFrom( DirtyTracker parent, String propertyName )
+    {
+        if( parents == null )
+        {
+            return;
+        }
+
+        int propertyIndex = parent.indexOf( propertyName );
+
+        for( int i = 0; i < parents.size(); i++ )
+        {
+            if( parents.get( i ).tracker == parent && parents.get( i ).propertyIndex == propertyIndex )
+            {
+                parents.remove( i );
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param propertyName
+     * @throws RuntimeException - if the bean class has no such property.
+     */
+    public void markDirty( String propertyName )
+    {
+        markDirty( indexOf( propertyName ) );
+    }
+
+    public boolean isDirty( String propertyName )
+    {
+        return isDirty( indexOf( propertyName ) );
+    }
+
+    /**
+     * @param propertyIndex - as returned by {@link #indexOf(Class, String)}
+     * @return true if the property has been modified, unknown properties are always dirty.
+     */
+    public boolean isDirty( int propertyIndex )
+    {
+        if( propertyIndex < 0 || propertyIndex >= index.size() )
+        {
+            return true;
+        }
+
+        return ( bits[ propertyIndex >>> 6 ] & ( 1L << propertyIndex ) ) != 0;
+    }
+
+    public boolean isClean()
+    {
+        for( int i = 0; i < bits.length; i++ )
+        {
+            if( bits[ i ] != 0 )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Forgets all the modifications, usually once the bean's delta has been taken.
+     */
+    public void clear()
+    {
+        for( int i = 0; i < bits.length; i++ )
+        {
+            bits[ i ] = 0;
+        }
+    }
+
+    /**
+     * @param beanClass
+     * @param propertyName
+     * @return position of the property among the properties of the class, -1 if the class has no such property.
+     */
+    public static int indexOf( Class beanClass, String propertyName )
+    {
+        Integer result = indexOf( beanClass ).get( propertyName );
+
+        return result == null ? -1 : result;
+    }
+
+    @Override public String toString()
+    {
+        StringBuilder dirty = new StringBuilder();
+
+        for( Map.Entry<String, Integer> entry : index.entrySet() )
+        {
+            if( isDirty( entry.getValue() ) )
+            {
+                dirty.append( dirty.length() == 0 ? "" : "," ).append( entry.getKey() );
+            }
+        }
+
+        return "DirtyTracker{" +
+               "beanClass=" + beanClass +
+               ", dirty=[" + dirty + "]" +
+               '}';
+    }
+
+    // HELPERS
+    private void markDirty( int propertyIndex )
+    {
+        bits[ propertyIndex >>> 6 ] |= 1L << propertyIndex;
+
+        if( parents == null )
+        {
+            return;
+        }
+
+        // a parent already dirty in that property has passed it on before, which also ends the cycles of the graph.
+        for( int i = 0; i < parents.size(); i++ )
+        {
+            Parent parent = parents.get( i );
+
+            if( !parent.tracker.isDirty( parent.propertyIndex ) )
+            {
+                parent.tracker.markDirty( parent.propertyIndex );
+            }
+        }
+    }
+
+    private int indexOf( String propertyName )
+    {
+        Integer result = index.get( propertyName );
+
+        if( result == null )
+        {
+            String msg = buildLogableString( "There is no such property to track.",
+                                             new Object[][]{
+                                                 { "beanClass", beanClass },
+                                                 { "propertyName", propertyName }
+                                             } );
+            throw new RuntimeException( msg );
+        }
+
+        return result;
+    }
+
+    private static Map<String, Integer> indexOf( Class beanClass )
+    {
+        Map<String, Integer> result = indexes.get( beanClass );
+
+        if( result != null )
+        {
+            return result;
+        }
+
+        if( Accessors.isCacheSafe( beanClass ) )
+        {
+            // racing threads build equal indexes, any of them will do.
+            result = createIndex( beanClass );
+
+            Map<String, Integer> existing = indexes.putIfAbsent( beanClass, result );
+
+            return existing != null ? existing : result;
+        }
+
+        synchronized( foreignIndexes )
+        {
+            result = foreignIndexes.get( beanClass );
+
+            if( result == null )
+            {
+                result = createIndex( beanClass );
+
+                foreignIndexes.put( beanClass, result );
+            }
+
+            return result;
+        }
+    }
+
+    private static Map<String, Integer> createIndex( Class beanClass )
+    {
+        PropertyDescriptor[] descriptors = PropertyDescriptorUtils.getClassPropertyDescriptors( beanClass, null );
+
+        Map<String, Integer> result = new HashMap<String, Integer>();
+
+        for( int i = 0; i < descriptors.length; i++ )
+        {
+            result.put( descriptors[ i ].getName(), i );
+        }
+
+        return result;
+    }
+
+    private static final class Parent
+    {
+
+        private final DirtyTracker tracker;
+        private final int propertyIndex;
+
+        private Parent( DirtyTracker tracker, int propertyIndex )
+        {
+            this.tracker = tracker;
+            this.propertyIndex = propertyIndex;
+        }
+
+    }
+
+}
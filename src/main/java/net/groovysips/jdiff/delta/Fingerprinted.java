@@ -0,0 +1,33 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+/**
+ * A bean that knows its own structural fingerprint, typically one it keeps up to date as it is modified. Equal
+ * fingerprints of two instances tell the builder they have nothing to diff, so a fingerprint has to cover everything
+ * the builder would otherwise look at.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface Fingerprinted
+{
+
+    /**
+     * @return 64-bit structural hash of the bean and everything it refers to.
+     */
+    long fingerprint();
+
+}
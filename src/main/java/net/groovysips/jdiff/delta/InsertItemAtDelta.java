@@ -0,0 +1,71 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.CompositeDelta;
+
+/**
+ * Inserts a new item into the list at the given position.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class InsertItemAtDelta extends AbstractCompositeDelta implements CompositeDelta
+{
+
+    private int index;
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public InsertItemAtDelta( int index, JavaBeanDelta delegate )
+    {
+        this.index = index;
+        addChild( delegate );
+    }
+
+    public InsertItemAtDelta( int index, PrimitiveValueDelta delegate )
+    {
+        this.index = index;
+        addChild( delegate );
+    }
+
+    public InsertItemAtDelta( int index, ReferenceDelta delegate )
+    {
+        this.index = index;
+        addChild( delegate );
+    }
+
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitInsertItemAt( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endInsertItemAt( this );
+    }
+
+    @Override public String toString()
+    {
+        return "InsertItemAtDelta{" +
+               "index=" + index +
+               ", delegate=" + (children() != null && !children().isEmpty() ? children().get( 0 ) : null) +
+               '}';
+    }
+
+}
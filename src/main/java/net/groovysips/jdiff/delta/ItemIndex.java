@@ -0,0 +1,162 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash index of the collection items by the keys of their {@link KeyedFinderCriteria}. The index is built on the first
+ * keyed lookup, items that can not be keyed stay in a side list that is searched the old way. Optionally the index
+ * remembers the items it has handed out so that the items nobody asked for can be listed afterwards.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+class ItemIndex
+{
+
+    private final Collection items;
+    private final FinderCriteriaFactory criteriaFactory;
+
+    private Map<Object, Object> keyed;
+    private List<Object> unkeyed;
+    private Map<Object, Object> matched;
+
+    ItemIndex( Collection items, FinderCriteriaFactory criteriaFactory )
+    {
+        this( items, criteriaFactory, false );
+    }
+
+    ItemIndex( Collection items, FinderCriteriaFactory criteriaFactory, boolean trackMatches )
+    {
+        this.items = items;
+        this.criteriaFactory = criteriaFactory;
+
+        if( trackMatches )
+        {
+            matched = new IdentityHashMap<Object, Object>();
+        }
+    }
+
+    /**
+     * Locates the item the criteria looks for.
+     *
+     * @param crit
+     * @return item or null if there is no such item.
+     */
+    Object find( FinderCriteria crit )
+    {
+        Object result = lookup( crit );
+
+        if( result != null && matched != null )
+        {
+            matched.put( result, result );
+        }
+
+        return result;
+    }
+
+    /**
+     * @return items that have not been found so far, in the order of the collection. Only available when the
+     *         index tracks matches.
+     */
+    List<Object> unmatched()
+    {
+        List<Object> result = new ArrayList<Object>();
+
+        for( Object item : items )
+        {
+            if( item != null && !matched.containsKey( item ) )
+            {
+                result.add( item );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param item
+     * @return criteria that locates the item.
+     */
+    FinderCriteria criteriaFor( Object item )
+    {
+        return criteriaFactory.create( item );
+    }
+
+    // HELPERS
+    private Object lookup( FinderCriteria crit )
+    {
+        Object key = crit instanceof KeyedFinderCriteria ? ( (KeyedFinderCriteria) crit ).getKey() : null;
+
+        if( key == null )
+        {
+            return crit.find( items );
+        }
+
+        if( keyed == null )
+        {
+            index();
+        }
+
+        Object result = keyed.get( key );
+
+        if( result == null && !unkeyed.isEmpty() )
+        {
+            result = crit.find( unkeyed );
+        }
+
+        return result;
+    }
+
+    private void index()
+    {
+        keyed = new HashMap<Object, Object>( items.size() * 2 );
+        unkeyed = new ArrayList<Object>();
+
+        for( Object item : items )
+        {
+            Object key = keyOf( item );
+
+            if( key == null )
+            {
+                unkeyed.add( item );
+            }
+            else if( !keyed.containsKey( key ) )
+            {
+                // the first one wins, the same way a linear find would do.
+                keyed.put( key, item );
+            }
+        }
+    }
+
+    private Object keyOf( Object item )
+    {
+        if( item == null )
+        {
+            return null;
+        }
+
+        FinderCriteria crit = criteriaFor( item );
+
+        return crit instanceof KeyedFinderCriteria ? ( (KeyedFinderCriteria) crit ).getKey() : null;
+    }
+
+}
@@ -15,6 +15,7 @@
 package net.groovysips.jdiff.delta;
 
 import net.groovysips.jdiff.Delta;
+import org.springframework.beans.BeanUtils;
 
 /**
  * TODO: provide javadoc.
@@ -22,12 +23,24 @@ import net.groovysips.jdiff.Delta;
  * @author Alex Shneyderman
  * @since 0.3
  */
-public class JavaBeanDelta extends AbstractCompositeDelta
+public class JavaBeanDelta extends AbstractCompositeDelta implements Referenceable
 {
 
     private Class rootObjectClass = null;
     private String propertyName = null;
 
+    private int referenceId;
+
+    public int getReferenceId()
+    {
+        return referenceId;
+    }
+
+    public void setReferenceId( int referenceId )
+    {
+        this.referenceId = referenceId;
+    }
+
     public String getPropertyName()
     {
         return propertyName;
@@ -53,15 +66,20 @@ public class JavaBeanDelta extends AbstractCompositeDelta
     {
         JavaBeanDelta prototype = (JavaBeanDelta) graph;
         this.rootObjectClass = prototype.rootObjectClass;
-        this.children().addAll( prototype.children() );
+        for( Delta child : prototype.children() )
+        {
+            addChild( child );
+        }
         this.propertyName = propertyName;
+        this.referenceId = prototype.referenceId;
     }
 
     public Object createInstance()
     {
         try
         {
-            return rootObjectClass.newInstance();
+            // private no argument constructors are fine, the beans diffed field by field often hide them.
+            return BeanUtils.instantiateClass( rootObjectClass );
         }
         catch( Exception e )
         {
@@ -69,11 +87,22 @@ public class JavaBeanDelta extends AbstractCompositeDelta
         }
     }
 
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitJavaBean( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endJavaBean( this );
+    }
+
     @Override public String toString()
     {
         return "BeanCreate{" +
                "assignedToProperty='" + propertyName + "'" +
                ", beanClass='" + rootObjectClass + "'" +
+               ( referenceId != 0 ? ", referenceId=" + referenceId : "" ) +
                "}";
     }
 }
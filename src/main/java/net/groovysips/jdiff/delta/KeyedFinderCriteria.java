@@ -0,0 +1,42 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+/**
+ * A finder criteria that can express what it looks for as a key. Keys allow the builder and the merger to index a
+ * collection once and to locate items through a hash lookup instead of calling {@link #find} for every item.
+ * Keys of the criteria created for equal items must be equal and must have consistent hash codes.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface KeyedFinderCriteria extends FinderCriteria
+{
+
+    /**
+     * @return key of the item this criteria looks for or null if the item can not be keyed.
+     */
+    Object getKey();
+
+    /**
+     * Extracts the key out of a candidate item, the candidate is located by this criteria when its key is equal to
+     * {@link #getKey()}.
+     *
+     * @param candidate - collection item
+     * @return key of the candidate or null if the candidate is not the kind of item this criteria looks for.
+     */
+    Object keyOf( Object candidate );
+
+}
@@ -0,0 +1,64 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.CompositeDelta;
+
+/**
+ * Changes of a map property, its children are entry deltas addressed by key.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class MapDelta extends AbstractCompositeDelta implements CompositeDelta
+{
+
+    private String propertyName;
+    private Class mapClass;
+
+    public String getPropertyName()
+    {
+        return propertyName;
+    }
+
+    public Class getMapClass()
+    {
+        return mapClass;
+    }
+
+    public MapDelta( String propertyName, Class mapClass )
+    {
+        this.propertyName = propertyName;
+        this.mapClass = mapClass;
+    }
+
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitMap( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endMap( this );
+    }
+
+    @Override public String toString()
+    {
+        return "MapDelta{" +
+               "mapClass=" + mapClass +
+               ", propertyName='" + propertyName + '\'' +
+               '}';
+    }
+}
@@ -0,0 +1,694 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Stack;
+import net.groovysips.jdiff.PropertyDescriptorUtils;
+import net.groovysips.jdiff.access.Accessors;
+import net.groovysips.jdiff.access.PropertyAccessor;
+
+/**
+ * State of a single {@link VisitingDeltaMerger#merge(Object, Delta)} call. The merger itself keeps only its
+ * configuration, the contexts are what visits the deltas. A context is not thread safe, it is used by one merge at a
+ * time and reset after it, so it can be kept around and reused by the next merge of the same thread, whatever the
+ * merger.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+class MergeContext implements TypedDeltaVisitor
+{
+
+    // walk order of an object whose component repointCopies has settled.
+    private static final int SETTLED = -1;
+
+    // merger of the merge on, null while the context is not in use.
+    private VisitingDeltaMerger merger;
+
+    final Stack resultStack = new Stack();
+
+    // objects created or updated by the referenceable deltas of the graph being merged.
+    final Map<Integer, Object> references = new HashMap<Integer, Object>();
+
+    // indexes of the collections whose items are being updated or removed, built on the first such item.
+    private final Map<Collection, CollectionIndex> indexes = new IdentityHashMap<Collection, CollectionIndex>();
+
+    // copies made by a copy on write merge, by their originals and by themselves.
+    private final Map<Object, Object> copies = new IdentityHashMap<Object, Object>();
+
+    private boolean copyOnWrite;
+
+
+    public boolean visitJavaBean( JavaBeanDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endJavaBean( JavaBeanDelta delta )
+    {
+        merger.handleEnd( this );
+    }
+
+    public boolean visitContainer( SimpleContainerDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endContainer( SimpleContainerDelta delta )
+    {
+        merger.handleEnd( this );
+    }
+
+    public boolean visitCollection( CollectionDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endCollection( CollectionDelta delta )
+    {
+        merger.handleEnd( delta, this );
+    }
+
+    public boolean visitNewItem( NewItemDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endNewItem( NewItemDelta delta )
+    {
+        merger.handleEnd( delta, this );
+    }
+
+    public boolean visitUpdateItem( UpdateItemDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endUpdateItem( UpdateItemDelta delta )
+    {
+        // the item was popped by the end of its container already.
+    }
+
+    public boolean visitArray( ArrayDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endArray( ArrayDelta delta )
+    {
+        merger.handleEnd( this );
+    }
+
+    public boolean visitMap( MapDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endMap( MapDelta delta )
+    {
+        merger.handleEnd( this );
+    }
+
+    public boolean visitPutEntry( PutEntryDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endPutEntry( PutEntryDelta delta )
+    {
+        merger.handleEnd( delta, this );
+    }
+
+    public boolean visitUpdateEntry( UpdateEntryDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endUpdateEntry( UpdateEntryDelta delta )
+    {
+        // the item was popped by the end of its container already.
+    }
+
+    public boolean visitInsertItemAt( InsertItemAtDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endInsertItemAt( InsertItemAtDelta delta )
+    {
+        merger.handleEnd( delta, this );
+    }
+
+    public boolean visitUpdateItemAt( UpdateItemAtDelta delta )
+    {
+        merger.handleStart( delta, this );
+        return true;
+    }
+
+    public void endUpdateItemAt( UpdateItemAtDelta delta )
+    {
+        // the item was popped by the end of its container already.
+    }
+
+    public void visitPropertyUpdate( PropertyUpdateDelta delta )
+    {
+        merger.handlePropertyUpdate( delta, this );
+    }
+
+    public void visitPrimitiveUpdate( PrimitiveUpdateDelta delta )
+    {
+        merger.handlePrimitiveUpdate( delta, this );
+    }
+
+    public void visitNullReturn( NullReturnDelta delta )
+    {
+        merger.handleNullReturn( delta, this );
+    }
+
+    public void visitRemoveItem( RemoveItemDelta delta )
+    {
+        merger.handleRemoveItem( delta, this );
+    }
+
+    public void visitReference( ReferenceDelta delta )
+    {
+        merger.handleReference( delta, this );
+    }
+
+    public void visitArrayRange( ArrayRangeDelta delta )
+    {
+        merger.handleArrayRange( delta, this );
+    }
+
+    public void visitRemoveEntry( RemoveEntryDelta delta )
+    {
+        merger.handleRemoveEntry( delta, this );
+    }
+
+    public void visitRemoveItemAt( RemoveItemAtDelta delta )
+    {
+        merger.handleRemoveItemAt( delta, this );
+    }
+
+    public void visitMoveItem( MoveItemDelta delta )
+    {
+        merger.handleMoveItem( delta, this );
+    }
+
+    public void visitPrimitiveValue( PrimitiveValueDelta delta )
+    {
+        merger.handlePrimitiveValue( delta, this );
+    }
+
+    public void visitClearAll( ClearAllDelta delta )
+    {
+        merger.handleClearAll( delta, this );
+    }
+
+    /**
+     * @return true if this context is taken by a merge that is still running.
+     */
+    boolean isInUse()
+    {
+        return merger != null;
+    }
+
+    /**
+     * @param collection - collection a {@link CollectionDelta} is merged into
+     * @return index of the collection, created on the first call.
+     */
+    CollectionIndex indexOf( Collection collection )
+    {
+        CollectionIndex result = indexes.get( collection );
+
+        if( result == null )
+        {
+            result = new CollectionIndex( collection );
+            indexes.put( collection, result );
+        }
+
+        return result;
+    }
+
+    /**
+     * @param collection
+     * @return index of the collection if there is one, the context forgets it.
+     */
+    CollectionIndex removeIndex( Collection collection )
+    {
+        return indexes.remove( collection );
+    }
+
+    /**
+     * @param collection
+     * @return index of the collection if there is one.
+     */
+    CollectionIndex existingIndex( Collection collection )
+    {
+        return indexes.get( collection );
+    }
+
+    /**
+     * @param copyOnWrite - whether the merge leaves the objects it is given alone and changes copies of them instead
+     */
+    void setCopyOnWrite( boolean copyOnWrite )
+    {
+        this.copyOnWrite = copyOnWrite;
+    }
+
+    /**
+     * @param original - object the merge is about to change
+     * @return the object itself or, merging copy on write, its copy. An object is copied once per merge no matter how
+     *         many times it is reached, so the sharing within the changed part of the graph stays as it was.
+     */
+    Object writable( Object original )
+    {
+        if( !copyOnWrite || original == null )
+        {
+            return original;
+        }
+
+        Object result = copies.get( original );
+
+        if( result == null )
+        {
+            result = ShallowCopier.copy( original );
+
+            copies.put( original, result );
+            copies.put( result, result );
+        }
+
+        return result;
+    }
+
+    /**
+     * Points the untouched part of a graph merged copy on write at the copies the merge made. A copied object may also
+     * be reachable through objects the delta does not touch, i.e. a child shared by two parents, and the in place merge
+     * changes it for all of its parents alike. Such parents are copied in turn, and so are the parents of theirs.
+     * <p/>
+     * The graph is walked once. An object refers to a copy only through the objects it reaches, so the objects are
+     * settled a strongly connected component at a time, after everything the component reaches: if any of them refers
+     * to a copy all of them are copied, since each reaches the others. Only the components that do are written to.
+     *
+     * @param merged - object the copy on write merge resulted in
+     */
+    void repointCopies( Object merged )
+    {
+        if( !copyOnWrite || copies.isEmpty() || !isWalked( merged ) )
+        {
+            return;
+        }
+
+        // walk order of the objects reached, SETTLED once their component is.
+        Map<Object, Integer> order = new IdentityHashMap<Object, Integer>();
+        List<Object> unsettled = new ArrayList<Object>();
+        Stack<Walk> walks = new Stack<Walk>();
+
+        walks.push( new Walk( merged, 0, unsettled.size() ) );
+        order.put( merged, 0 );
+        unsettled.add( merged );
+
+        while( !walks.isEmpty() )
+        {
+            Walk walk = walks.peek();
+
+            if( walk.hasNext() )
+            {
+                Object next = walk.next();
+                Object copy = copyOf( next );
+
+                // the merged graph goes through the copy.
+                next = copy != null ? copy : next;
+
+                if( !isWalked( next ) )
+                {
+                    continue;
+                }
+
+                Integer position = order.get( next );
+
+                if( position == null )
+                {
+                    walks.push( new Walk( next, order.size(), unsettled.size() ) );
+                    order.put( next, order.size() );
+                    unsettled.add( next );
+                }
+                else if( position.intValue() != SETTLED )
+                {
+                    walk.lowest = Math.min( walk.lowest, position.intValue() );
+                }
+
+                continue;
+            }
+
+            walks.pop();
+
+            if( !walks.isEmpty() )
+            {
+                walks.peek().lowest = Math.min( walks.peek().lowest, walk.lowest );
+            }
+
+            if( walk.lowest == walk.position )
+            {
+                List<Object> component = unsettled.subList( walk.unsettled, unsettled.size() );
+
+                for( Object object : component )
+                {
+                    order.put( object, SETTLED );
+                }
+
+                settle( component );
+                component.clear();
+            }
+        }
+    }
+
+    void acquire( VisitingDeltaMerger merger )
+    {
+        this.merger = merger;
+    }
+
+    /**
+     * Forgets everything the last merge left behind, also when it failed half way.
+     */
+    void release()
+    {
+        resultStack.clear();
+        references.clear();
+        indexes.clear();
+        copies.clear();
+        copyOnWrite = false;
+        merger = null;
+    }
+
+    // HELPERS
+    private void settle( List<Object> component )
+    {
+        boolean stale = false;
+
+        for( int i = 0; i < component.size() && !stale; i++ )
+        {
+            stale = refersToCopies( component.get( i ) );
+        }
+
+        if( !stale )
+        {
+            return;
+        }
+
+        // all copies first, the objects of the component refer to each other.
+        Object[] targets = new Object[component.size()];
+
+        for( int i = 0; i < targets.length; i++ )
+        {
+            targets[ i ] = writable( component.get( i ) );
+        }
+
+        for( Object target : targets )
+        {
+            if( refersToCopies( target ) )
+            {
+                repoint( target );
+            }
+        }
+    }
+
+    private boolean refersToCopies( Object object )
+    {
+        if( object instanceof Object[] )
+        {
+            for( Object item : (Object[]) object )
+            {
+                if( copyOf( item ) != null )
+                {
+                    return true;
+                }
+            }
+        }
+        else if( object instanceof Collection )
+        {
+            for( Object item : (Collection) object )
+            {
+                if( copyOf( item ) != null )
+                {
+                    return true;
+                }
+            }
+        }
+        else if( object instanceof Map )
+        {
+            for( Map.Entry entry : (Iterable<Map.Entry>) ( (Map) object ).entrySet() )
+            {
+                if( copyOf( entry.getKey() ) != null || copyOf( entry.getValue() ) != null )
+                {
+                    return true;
+                }
+            }
+        }
+        else
+        {
+            for( PropertyAccessor field : Accessors.forFields( object.getClass() ) )
+            {
+                if( copyOf( field.read( object ) ) != null )
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private void repoint( Object target )
+    {
+        if( target instanceof Object[] )
+        {
+            Object[] array = (Object[]) target;
+
+            for( int i = 0; i < array.length; i++ )
+            {
+                array[ i ] = current( array[ i ] );
+            }
+        }
+        else if( target instanceof List )
+        {
+            for( ListIterator iterator = ( (List) target ).listIterator(); iterator.hasNext(); )
+            {
+                iterator.set( current( iterator.next() ) );
+            }
+        }
+        else if( target instanceof Collection )
+        {
+            Collection collection = (Collection) target;
+            List<Object> items = new ArrayList<Object>( collection.size() );
+
+            for( Object item : collection )
+            {
+                items.add( current( item ) );
+            }
+
+            collection.clear();
+            collection.addAll( items );
+        }
+        else if( target instanceof Map )
+        {
+            Map map = (Map) target;
+            Map<Object, Object> entries = new LinkedHashMap<Object, Object>( map.size() );
+
+            for( Map.Entry entry : (Iterable<Map.Entry>) map.entrySet() )
+            {
+                entries.put( current( entry.getKey() ), current( entry.getValue() ) );
+            }
+
+            map.clear();
+            map.putAll( entries );
+        }
+        else
+        {
+            for( PropertyAccessor field : Accessors.forFields( target.getClass() ) )
+            {
+                Object copy = copyOf( field.read( target ) );
+
+                if( copy != null )
+                {
+                    field.write( target, copy );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the copy of the object made by this merge, the object itself if there is none.
+     */
+    private Object current( Object object )
+    {
+        Object copy = copyOf( object );
+
+        return copy != null ? copy : object;
+    }
+
+    /**
+     * @return copy of the original made by this merge, null if there is none.
+     */
+    private Object copyOf( Object original )
+    {
+        Object result = original == null ? null : copies.get( original );
+
+        return result == original ? null : result;
+    }
+
+    /**
+     * @return whether the object may refer to the objects a merge copies.
+     */
+    private static boolean isWalked( Object object )
+    {
+        if( object == null )
+        {
+            return false;
+        }
+
+        if( object instanceof Object[] || object instanceof Collection || object instanceof Map )
+        {
+            return true;
+        }
+
+        Class clazz = object.getClass();
+
+        return !clazz.isArray() && !PropertyDescriptorUtils.isPrimitive( clazz ) && !clazz.getName().startsWith( "java." );
+    }
+
+    @Override public String toString()
+    {
+        return "MergeContext{" +
+               "stack=" + resultStack +
+               ", references=" + references.size() +
+               '}';
+    }
+
+    /**
+     * An object reached by {@link MergeContext#repointCopies(Object)}, with the references it has yet to go through.
+     */
+    private static final class Walk
+    {
+
+        final int position;
+
+        // where the object is on the list of the objects whose component is not settled yet.
+        final int unsettled;
+
+        // lowest position of an unsettled object reached from this one.
+        int lowest;
+
+        private final Object object;
+
+        // references of a bean, of a collection or map its iterator, of an array the index of the next one.
+        private PropertyAccessor[] fields;
+
+        private Iterator iterator;
+
+        private int next;
+
+        // value of the map entry whose key was the last reference.
+        private Object value;
+
+        Walk( Object object, int position, int unsettled )
+        {
+            this.object = object;
+            this.position = position;
+            this.unsettled = unsettled;
+            this.lowest = position;
+
+            if( object instanceof Collection )
+            {
+                iterator = ( (Collection) object ).iterator();
+            }
+            else if( object instanceof Map )
+            {
+                iterator = ( (Map) object ).entrySet().iterator();
+            }
+            else if( !( object instanceof Object[] ) )
+            {
+                fields = Accessors.forFields( object.getClass() );
+            }
+        }
+
+        boolean hasNext()
+        {
+            if( fields != null )
+            {
+                return next < fields.length;
+            }
+
+            if( iterator == null )
+            {
+                return next < ( (Object[]) object ).length;
+            }
+
+            return value != null || iterator.hasNext();
+        }
+
+        Object next()
+        {
+            if( fields != null )
+            {
+                return fields[ next++ ].read( object );
+            }
+
+            if( iterator == null )
+            {
+                return ( (Object[]) object )[ next++ ];
+            }
+
+            if( value != null )
+            {
+                Object result = value;
+                value = null;
+                return result;
+            }
+
+            Object item = iterator.next();
+
+            if( object instanceof Map )
+            {
+                value = ( (Map.Entry) item ).getValue();
+                return ( (Map.Entry) item ).getKey();
+            }
+
+            return item;
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.DeltaVisitor;
+
+/**
+ * Moves a list item from one position to another. The item is removed first, so the target position is the position
+ * in the list without the item: <code>list.add( to, list.remove( from ) )</code>.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class MoveItemDelta implements TypedDelta
+{
+
+    private int from;
+
+    private int to;
+
+    public int getFrom()
+    {
+        return from;
+    }
+
+    public int getTo()
+    {
+        return to;
+    }
+
+    public MoveItemDelta( int from, int to )
+    {
+        this.from = from;
+        this.to = to;
+    }
+
+    public void visit( DeltaVisitor visitor )
+    {
+        visitor.visit( this );
+    }
+
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitMoveItem( this );
+    }
+
+    public String toString()
+    {
+        return "MoveItemDelta{" +
+               "from=" + from +
+               ", to=" + to +
+               '}';
+    }
+}
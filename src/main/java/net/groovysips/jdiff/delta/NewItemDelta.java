@@ -35,6 +35,21 @@ public class NewItemDelta extends AbstractCompositeDelta implements CompositeDel
         this.addChild( delegate );
     }
 
+    public NewItemDelta (ReferenceDelta delegate)
+    {
+        this.addChild( delegate );
+    }
+
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitNewItem( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endNewItem( this );
+    }
+
     @Override public String toString()
     {
         return "NewItemDelta{" +
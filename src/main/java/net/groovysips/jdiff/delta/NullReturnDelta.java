@@ -14,7 +14,6 @@
 */
 package net.groovysips.jdiff.delta;
 
-import net.groovysips.jdiff.Delta;
 import net.groovysips.jdiff.DeltaVisitor;
 
 /**
@@ -23,7 +22,7 @@ import net.groovysips.jdiff.DeltaVisitor;
  * @author Alex Shneyderman
  * @since 0.3
  */
-public class NullReturnDelta implements Delta
+public class NullReturnDelta implements TypedDelta
 {
 
     private String propertyName;
@@ -55,6 +54,11 @@ public class NullReturnDelta implements Delta
         visitor.visit( this );
     }
 
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitNullReturn( this );
+    }
+
     @Override public String toString()
     {
         return "NullReturnDelta{" +
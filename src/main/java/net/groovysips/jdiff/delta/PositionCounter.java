@@ -0,0 +1,69 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+/**
+ * Set of the positions 0 to size - 1 that tells how many of its positions lie below a given one, both the updates and
+ * the counts take O(log size). A binary indexed tree, i.e. a Fenwick tree.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+final class PositionCounter
+{
+
+    private final int[] tree;
+
+    PositionCounter( int size )
+    {
+        this.tree = new int[size + 1];
+    }
+
+    void add( int position )
+    {
+        update( position, 1 );
+    }
+
+    void remove( int position )
+    {
+        update( position, -1 );
+    }
+
+    /**
+     * @param position
+     * @return number of the positions of the set below the given one.
+     */
+    int countBelow( int position )
+    {
+        int result = 0;
+
+        for( int i = position; i > 0; i -= i & -i )
+        {
+            result += tree[ i ];
+        }
+
+        return result;
+    }
+
+    // HELPERS
+    private void update( int position, int delta )
+    {
+        for( int i = position + 1; i < tree.length; i += i & -i )
+        {
+            tree[ i ] += delta;
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.access.PrimitiveBits;
+
+/**
+ * Update of a property of a primitive type. The values are kept as their {@link PrimitiveBits} and are written
+ * through the typed setters, so neither the builder nor the merger boxes them. The boxed values are still available
+ * through {@link #getNewValue()} and {@link #getOldValue()} for whoever needs them.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class PrimitiveUpdateDelta extends PropertyUpdateDelta
+{
+
+    private final Class propertyType;
+    private final long newBits;
+    private final long oldBits;
+
+    public PrimitiveUpdateDelta( String propertyName, Class propertyType, long newBits, long oldBits )
+    {
+        super( propertyName, null, null, null );
+
+        this.propertyType = propertyType;
+        this.newBits = newBits;
+        this.oldBits = oldBits;
+    }
+
+    public Class getPropertyType()
+    {
+        return propertyType;
+    }
+
+    public long getNewBits()
+    {
+        return newBits;
+    }
+
+    public long getOldBits()
+    {
+        return oldBits;
+    }
+
+    @Override public Object getNewValue()
+    {
+        return PrimitiveBits.fromBits( propertyType, newBits );
+    }
+
+    @Override public Object getOldValue()
+    {
+        return PrimitiveBits.fromBits( propertyType, oldBits );
+    }
+
+    @Override public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitPrimitiveUpdate( this );
+    }
+
+    @Override public String toString()
+    {
+        return "PrimitiveUpdate{" +
+               "name='" + getPropertyName() + '\'' +
+               ", type=" + propertyType +
+               ", newVal='" + getNewValue() + "'" +
+               ", oldVal='" + getOldValue() + "'" +
+               '}';
+    }
+
+}
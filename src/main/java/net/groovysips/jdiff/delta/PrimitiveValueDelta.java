@@ -14,7 +14,6 @@
 */
 package net.groovysips.jdiff.delta;
 
-import net.groovysips.jdiff.Delta;
 import net.groovysips.jdiff.DeltaVisitor;
 
 /**
@@ -22,7 +21,7 @@ import net.groovysips.jdiff.DeltaVisitor;
  * @author Alex Shneyderman
  * @since 0.5
  */
-public class PrimitiveValueDelta implements Delta
+public class PrimitiveValueDelta implements TypedDelta
 {
 
     private Object value;
@@ -37,6 +36,11 @@ public class PrimitiveValueDelta implements Delta
         visitor.visit( this );
     }
 
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitPrimitiveValue( this );
+    }
+
     public Object getValue()
     {
         return value;
@@ -0,0 +1,298 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import net.groovysips.jdiff.PropertyDescriptorUtils;
+import net.groovysips.jdiff.access.Accessors;
+import net.groovysips.jdiff.access.FieldPropertyAccessor;
+import net.groovysips.jdiff.access.PropertyAccessor;
+
+/**
+ * A single diffable property of a class as resolved by a {@link ClassDiffPlan}.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class PropertySlot
+{
+
+    /**
+     * The way the builder treats the value of the property.
+     */
+    public static enum Kind
+    {
+        PRIMITIVE, COLLECTION, MAP, ARRAY, COMPOSITE
+    }
+
+    private final String name;
+    private final PropertyDescriptor descriptor;
+    private final Class propertyType;
+    private final Method readMethod;
+    private final Method writeMethod;
+    private final PropertyAccessor accessor;
+    private final Kind kind;
+    private final boolean refilled;
+    private final boolean pruned;
+    private final boolean ordered;
+    private final String writeMethodOverride;
+    private final int dirtyIndex;
+    private final ValueComparator comparator;
+    private final boolean comparatorConfigured;
+
+    public PropertySlot( Class beanClass, PropertyDescriptor descriptor, boolean refilled, boolean pruned, boolean ordered, String writeMethodOverride, ValueComparator comparator )
+    {
+        this.name = descriptor.getName();
+        this.descriptor = descriptor;
+        this.propertyType = descriptor.getPropertyType();
+        this.readMethod = PropertyDescriptorUtils.findReadMethod( beanClass, descriptor );
+        this.writeMethod = descriptor.getWriteMethod();
+        this.accessor = accessorOf( beanClass, name, readMethod, writeMethod );
+        this.kind = kindOf( propertyType );
+        this.refilled = refilled;
+        this.pruned = pruned;
+        this.ordered = ordered;
+        this.writeMethodOverride = writeMethodOverride;
+        this.dirtyIndex = DirtyTracker.indexOf( beanClass, name );
+        this.comparator = comparator != null ? comparator : ValueComparators.forType( propertyType );
+        this.comparatorConfigured = comparator != null;
+    }
+
+    /**
+     * Creates the slot of a field, such slots have neither descriptor nor read and write methods.
+     */
+    public PropertySlot( Class beanClass, FieldPropertyAccessor field, boolean refilled, boolean pruned, boolean ordered, String writeMethodOverride, ValueComparator comparator )
+    {
+        this.name = field.getPropertyName();
+        this.descriptor = null;
+        this.propertyType = field.getField().getType();
+        this.readMethod = null;
+        this.writeMethod = null;
+        this.accessor = field;
+        this.kind = kindOf( propertyType );
+        this.refilled = refilled;
+        this.pruned = pruned;
+        this.ordered = ordered;
+        this.writeMethodOverride = writeMethodOverride;
+        this.dirtyIndex = DirtyTracker.indexOf( beanClass, name );
+        this.comparator = comparator != null ? comparator : ValueComparators.forType( propertyType );
+        this.comparatorConfigured = comparator != null;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return descriptor of the property or null for the slots of fields.
+     */
+    public PropertyDescriptor getDescriptor()
+    {
+        return descriptor;
+    }
+
+    public Class getPropertyType()
+    {
+        return propertyType;
+    }
+
+    public Method getReadMethod()
+    {
+        return readMethod;
+    }
+
+    public Method getWriteMethod()
+    {
+        return writeMethod;
+    }
+
+    public PropertyAccessor getAccessor()
+    {
+        return accessor;
+    }
+
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    public boolean isRefilled()
+    {
+        return refilled;
+    }
+
+    /**
+     * @return true if items missing in the modified collection are to be removed from the original one.
+     */
+    public boolean isPruned()
+    {
+        return pruned;
+    }
+
+    /**
+     * @return true if the list is diffed position by position rather than overlaid item by item.
+     */
+    public boolean isOrdered()
+    {
+        return ordered;
+    }
+
+    public String getWriteMethodOverride()
+    {
+        return writeMethodOverride;
+    }
+
+    /**
+     * @return index of the property in the {@link DirtyTracker}s of the bean class.
+     */
+    public int getDirtyIndex()
+    {
+        return dirtyIndex;
+    }
+
+    /**
+     * @return comparator of the values of this property, the configured one or the fast path of the property type.
+     */
+    public ValueComparator getComparator()
+    {
+        return comparator;
+    }
+
+    /**
+     * @param originalValue - value of the property in the original bean
+     * @param modifiedValue - value of the property in the modified bean
+     * @return true if the property has not changed.
+     */
+    public boolean isUnchanged( Object originalValue, Object modifiedValue )
+    {
+        if( originalValue == modifiedValue )
+        {
+            return true;
+        }
+
+        if( originalValue == null || modifiedValue == null )
+        {
+            return false;
+        }
+
+        return comparator.areEqual( originalValue, modifiedValue );
+    }
+
+    /**
+     * Reads the value of this property from the bean.
+     *
+     * @param bean - object to read the value from
+     * @return value of the property or null if bean is null.
+     * @throws RuntimeException - if can not read or read method does not exist.
+     */
+    public Object read( Object bean )
+    {
+        return PropertyDescriptorUtils.read( bean, accessor );
+    }
+
+    /**
+     * Reads the value of this property of a primitive type from the bean, without boxing it.
+     *
+     * @param bean - object to read the value from
+     * @return {@link net.groovysips.jdiff.access.PrimitiveBits} of the value.
+     * @throws RuntimeException - if can not read or read method does not exist.
+     */
+    public long readBits( Object bean )
+    {
+        return PropertyDescriptorUtils.readBits( bean, accessor );
+    }
+
+    /**
+     * @return true if the property is of a primitive type (and not a wrapper) and can be read with
+     *         {@link #readBits(Object)}.
+     */
+    public boolean isPrimitiveType()
+    {
+        return propertyType != null && propertyType.isPrimitive();
+    }
+
+    /**
+     * @return true if the comparator of the property was configured rather than picked by the property type.
+     */
+    public boolean isComparatorConfigured()
+    {
+        return comparatorConfigured;
+    }
+
+    /**
+     * @return true if the values of the property can be compared bit by bit, i.e. the property is of a primitive type
+     *         and has no comparator of its own configured.
+     */
+    public boolean isComparedByBits()
+    {
+        return !comparatorConfigured && isPrimitiveType();
+    }
+
+    @Override public String toString()
+    {
+        return "PropertySlot{" +
+               "name='" + name + '\'' +
+               ", kind=" + kind +
+               ", refilled=" + refilled +
+               ", pruned=" + pruned +
+               ", ordered=" + ordered +
+               ", writeWith='" + writeMethodOverride + '\'' +
+               ", comparator=" + comparator +
+               '}';
+    }
+
+    // HELPERS
+    private static PropertyAccessor accessorOf( Class beanClass, String name, Method readMethod, Method writeMethod )
+    {
+        PropertyAccessor result = Accessors.forProperty( beanClass, name );
+
+        return result != null ? result : Accessors.create( name, readMethod, writeMethod );
+    }
+
+    private static Kind kindOf( Class propertyType )
+    {
+        if( propertyType == null )
+        {
+            return Kind.COMPOSITE;
+        }
+
+        if( Collection.class.isAssignableFrom( propertyType ) )
+        {
+            return Kind.COLLECTION;
+        }
+
+        if( Map.class.isAssignableFrom( propertyType ) )
+        {
+            return Kind.MAP;
+        }
+
+        if( PropertyDescriptorUtils.isPrimitive( propertyType ) )
+        {
+            return Kind.PRIMITIVE;
+        }
+
+        if( propertyType.isArray() )
+        {
+            return Kind.ARRAY;
+        }
+
+        return Kind.COMPOSITE;
+    }
+
+}
@@ -14,14 +14,13 @@
 */
 package net.groovysips.jdiff.delta;
 
-import net.groovysips.jdiff.Delta;
 import net.groovysips.jdiff.DeltaVisitor;
 
 /**
  * @author Alex Shneyderman
  * @since 0.3
  */
-public class PropertyUpdateDelta implements Delta
+public class PropertyUpdateDelta implements TypedDelta
 {
 
     private String propertyName;
@@ -72,6 +71,11 @@ public class PropertyUpdateDelta implements Delta
         visitor.visit( this );
     }
 
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitPropertyUpdate( this );
+    }
+
     @Override public String toString()
     {
         return "PropertyUpdate{" +
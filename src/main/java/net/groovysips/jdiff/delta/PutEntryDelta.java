@@ -0,0 +1,101 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.CompositeDelta;
+
+/**
+ * Puts a new value into the map under the given key, replacing whatever was there.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class PutEntryDelta extends AbstractCompositeDelta implements CompositeDelta
+{
+
+    private Object key;
+
+    public Object getKey()
+    {
+        return key;
+    }
+
+    public PutEntryDelta( Object key, JavaBeanDelta delegate )
+    {
+        this.key = key;
+        addChild( delegate );
+    }
+
+    public PutEntryDelta( Object key, PrimitiveValueDelta delegate )
+    {
+        this.key = key;
+        addChild( delegate );
+    }
+
+    public PutEntryDelta( Object key, ReferenceDelta delegate )
+    {
+        this.key = key;
+        addChild( delegate );
+    }
+
+    /**
+     * @param key
+     * @param delegate - delta of a new collection, without a property name.
+     */
+    public PutEntryDelta( Object key, CollectionDelta delegate )
+    {
+        this.key = key;
+        addChild( delegate );
+    }
+
+    /**
+     * @param key
+     * @param delegate - delta of a new map, without a property name.
+     */
+    public PutEntryDelta( Object key, MapDelta delegate )
+    {
+        this.key = key;
+        addChild( delegate );
+    }
+
+    /**
+     * @param key
+     * @param delegate - delta of a new array, without a property name.
+     */
+    public PutEntryDelta( Object key, ArrayDelta delegate )
+    {
+        this.key = key;
+        addChild( delegate );
+    }
+
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitPutEntry( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endPutEntry( this );
+    }
+
+    @Override public String toString()
+    {
+        return "PutEntryDelta{" +
+               "key=" + key +
+               ", delegate=" + (children() != null && !children().isEmpty() ? children().get( 0 ) : null) +
+               '}';
+    }
+
+}
@@ -0,0 +1,66 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.DeltaVisitor;
+
+/**
+ * Assigns an object that has already been created or updated by a {@link Referenceable} delta of the same graph to
+ * the property. With no property name the object becomes the result of the enclosing delta (a new collection item for
+ * example). This is how the shared objects and the back references of a graph are passed along.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class ReferenceDelta implements TypedDelta
+{
+
+    private String propertyName;
+    private int referenceId;
+
+    public String getPropertyName()
+    {
+        return propertyName;
+    }
+
+    public int getReferenceId()
+    {
+        return referenceId;
+    }
+
+    public ReferenceDelta( String propertyName, int referenceId )
+    {
+        this.propertyName = propertyName;
+        this.referenceId = referenceId;
+    }
+
+    public void visit( DeltaVisitor visitor )
+    {
+        visitor.visit( this );
+    }
+
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitReference( this );
+    }
+
+    @Override public String toString()
+    {
+        return "ReferenceDelta{" +
+               "propertyName='" + propertyName + '\'' +
+               ", referenceId=" + referenceId +
+               '}';
+    }
+}
@@ -0,0 +1,31 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+/**
+ * A delta whose target object can be referred to by a {@link ReferenceDelta} later on in the same delta graph. The
+ * reference id is only assigned once somebody refers to the target, zero means nobody does.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface Referenceable
+{
+
+    int getReferenceId();
+
+    void setReferenceId( int referenceId );
+
+}
@@ -0,0 +1,56 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.DeltaVisitor;
+
+/**
+ * Removes the entry with the given key from the map.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class RemoveEntryDelta implements TypedDelta
+{
+
+    private Object key;
+
+    public Object getKey()
+    {
+        return key;
+    }
+
+    public RemoveEntryDelta( Object key )
+    {
+        this.key = key;
+    }
+
+    public void visit( DeltaVisitor visitor )
+    {
+        visitor.visit( this );
+    }
+
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitRemoveEntry( this );
+    }
+
+    public String toString()
+    {
+        return "RemoveEntryDelta{" +
+               "key=" + key +
+               '}';
+    }
+}
@@ -14,7 +14,6 @@
 */
 package net.groovysips.jdiff.delta;
 
-import net.groovysips.jdiff.Delta;
 import net.groovysips.jdiff.DeltaVisitor;
 
 /**
@@ -23,7 +22,7 @@ import net.groovysips.jdiff.DeltaVisitor;
  * @author Alex Shneyderman
  * @since 0.5
  */
-public class RemoveItemDelta implements Delta
+public class RemoveItemDelta implements TypedDelta
 {
 
     private FinderCriteria finderCriteria;
@@ -43,6 +42,11 @@ public class RemoveItemDelta implements Delta
         visitor.visit( this );
     }
 
+    public void accept( TypedDeltaVisitor visitor )
+    {
+        visitor.visitRemoveItem( this );
+    }
+
     public String toString()
     {
         return "RemoveItemDelta{" +
@@ -0,0 +1,209 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.Arrays;
+
+/**
+ * Longest common subsequence of two sequences of item ids, computed with the Myers O(ND) algorithm in its linear space
+ * (middle snake bisection) variant. Equal items are expected to have equal ids.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+final class SequenceDiff
+{
+
+    private SequenceDiff()
+    {
+    }
+
+    /**
+     * @param a - ids of the original sequence
+     * @param b - ids of the modified sequence
+     * @return for every position of a the position of the matching item in b, -1 for the items that are not part of
+     *         the common subsequence.
+     */
+    static int[] match( int[] a, int[] b )
+    {
+        int[] result = new int[a.length];
+
+        Arrays.fill( result, -1 );
+
+        diff( a, 0, a.length, b, 0, b.length, result );
+
+        return result;
+    }
+
+    // HELPERS
+    private static void diff( int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, int[] result )
+    {
+        while( aLo < aHi && bLo < bHi && a[ aLo ] == b[ bLo ] )
+        {
+            result[ aLo++ ] = bLo++;
+        }
+
+        while( aLo < aHi && bLo < bHi && a[ aHi - 1 ] == b[ bHi - 1 ] )
+        {
+            result[ --aHi ] = --bHi;
+        }
+
+        if( aLo == aHi || bLo == bHi )
+        {
+            return;
+        }
+
+        bisect( a, aLo, aHi, b, bLo, bHi, result );
+    }
+
+    private static void bisect( int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, int[] result )
+    {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = ( n + m + 1 ) / 2;
+        int vOffset = maxD;
+        int vLength = 2 * maxD + 2;
+
+        int[] v1 = new int[vLength];
+        int[] v2 = new int[vLength];
+        Arrays.fill( v1, -1 );
+        Arrays.fill( v2, -1 );
+        v1[ vOffset + 1 ] = 0;
+        v2[ vOffset + 1 ] = 0;
+
+        int delta = n - m;
+
+        // if the total number of items is odd, the front path collides with the reverse path.
+        boolean front = ( delta % 2 != 0 );
+
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+
+        for( int d = 0; d < maxD; d++ )
+        {
+            // walk the front path one step.
+            for( int k1 = -d + k1start; k1 <= d - k1end; k1 += 2 )
+            {
+                int k1Offset = vOffset + k1;
+                int x1;
+
+                if( k1 == -d || ( k1 != d && v1[ k1Offset - 1 ] < v1[ k1Offset + 1 ] ) )
+                {
+                    x1 = v1[ k1Offset + 1 ];
+                }
+                else
+                {
+                    x1 = v1[ k1Offset - 1 ] + 1;
+                }
+
+                int y1 = x1 - k1;
+
+                while( x1 < n && y1 < m && a[ aLo + x1 ] == b[ bLo + y1 ] )
+                {
+                    x1++;
+                    y1++;
+                }
+
+                v1[ k1Offset ] = x1;
+
+                if( x1 > n )
+                {
+                    k1end += 2;   // ran off the right of the graph.
+                }
+                else if( y1 > m )
+                {
+                    k1start += 2; // ran off the bottom of the graph.
+                }
+                else if( front )
+                {
+                    int k2Offset = vOffset + delta - k1;
+
+                    if( k2Offset >= 0 && k2Offset < vLength && v2[ k2Offset ] != -1 )
+                    {
+                        int x2 = n - v2[ k2Offset ];
+
+                        if( x1 >= x2 )
+                        {
+                            split( a, aLo, aHi, b, bLo, bHi, x1, y1, result );
+                            return;
+                        }
+                    }
+                }
+            }
+
+            // walk the reverse path one step.
+            for( int k2 = -d + k2start; k2 <= d - k2end; k2 += 2 )
+            {
+                int k2Offset = vOffset + k2;
+                int x2;
+
+                if( k2 == -d || ( k2 != d && v2[ k2Offset - 1 ] < v2[ k2Offset + 1 ] ) )
+                {
+                    x2 = v2[ k2Offset + 1 ];
+                }
+                else
+                {
+                    x2 = v2[ k2Offset - 1 ] + 1;
+                }
+
+                int y2 = x2 - k2;
+
+                while( x2 < n && y2 < m && a[ aHi - x2 - 1 ] == b[ bHi - y2 - 1 ] )
+                {
+                    x2++;
+                    y2++;
+                }
+
+                v2[ k2Offset ] = x2;
+
+                if( x2 > n )
+                {
+                    k2end += 2;
+                }
+                else if( y2 > m )
+                {
+                    k2start += 2;
+                }
+                else if( !front )
+                {
+                    int k1Offset = vOffset + delta - k2;
+
+                    if( k1Offset >= 0 && k1Offset < vLength && v1[ k1Offset ] != -1 )
+                    {
+                        int x1 = v1[ k1Offset ];
+                        int y1 = vOffset + x1 - k1Offset;
+
+                        if( x1 >= n - x2 )
+                        {
+                            split( a, aLo, aHi, b, bLo, bHi, x1, y1, result );
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        // nothing in common.
+    }
+
+    private static void split( int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, int x, int y, int[] result )
+    {
+        diff( a, aLo, aLo + x, b, bLo, bLo + y, result );
+        diff( a, aLo + x, aHi, b, bLo + y, bHi, result );
+    }
+
+}
@@ -0,0 +1,154 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import static net.groovysips.jdiff.StringUtils.buildLogableString;
+import net.groovysips.jdiff.access.Accessors;
+import net.groovysips.jdiff.access.PropertyAccessor;
+import org.springframework.beans.BeanUtils;
+
+/**
+ * Shallow copies of the objects a copy on write merge changes: the copy refers to the very same values the original
+ * does. Collections and maps keep their class when it can be instantiated with no arguments (sorted ones keep their
+ * comparator), otherwise they become the closest JDK collection. Beans are instantiated with their no argument
+ * constructor and get the fields of the original's {@link Accessors#forFields(Class) field table}, final ones
+ * included. Transient fields and the field holding the tracker of a {@link DirtyTrackable} bean keep what the
+ * constructor gave them, so that the copy does not share its modifications with the original.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+final class ShallowCopier
+{
+
+    private ShallowCopier()
+    {
+    }
+
+    /**
+     * @param original - object to copy, not null
+     * @return shallow copy of the original.
+     */
+    @SuppressWarnings( "unchecked" )
+    static Object copy( Object original )
+    {
+        if( original.getClass().isArray() )
+        {
+            int length = Array.getLength( original );
+
+            Object result = Array.newInstance( original.getClass().getComponentType(), length );
+
+            System.arraycopy( original, 0, result, 0, length );
+
+            return result;
+        }
+
+        if( original instanceof SortedSet )
+        {
+            return new TreeSet( (SortedSet) original );
+        }
+
+        if( original instanceof SortedMap )
+        {
+            return new TreeMap( (SortedMap) original );
+        }
+
+        if( original instanceof Collection )
+        {
+            Collection result = (Collection) instantiate( original.getClass() );
+
+            if( result == null )
+            {
+                result = original instanceof Set ? new LinkedHashSet() : new ArrayList();
+            }
+
+            result.addAll( (Collection) original );
+
+            return result;
+        }
+
+        if( original instanceof Map )
+        {
+            Map result = (Map) instantiate( original.getClass() );
+
+            if( result == null )
+            {
+                result = new LinkedHashMap();
+            }
+
+            result.putAll( (Map) original );
+
+            return result;
+        }
+
+        Object result = instantiate( original.getClass() );
+
+        if( result == null )
+        {
+            String msg = buildLogableString( "Unable to copy an object without a no argument constructor.",
+                                             new Object[][]{
+                                                 { "class", original.getClass() }
+                                             } );
+            throw new RuntimeException( msg );
+        }
+
+        copyFields( original, result );
+
+        return result;
+    }
+
+    // HELPERS
+    private static Object instantiate( Class clazz )
+    {
+        try
+        {
+            return BeanUtils.instantiateClass( clazz );
+        }
+        catch( RuntimeException e )
+        {
+            // i.e. the unmodifiable and the array backed collections of the JDK.
+            return null;
+        }
+    }
+
+    private static void copyFields( Object original, Object copy )
+    {
+        Object tracker = original instanceof DirtyTrackable ? ( (DirtyTrackable) original ).dirtyTracker() : null;
+
+        PropertyAccessor[] fields = Accessors.forFields( original.getClass() );
+
+        for( int i = 0; i < fields.length; i++ )
+        {
+            Object value = fields[ i ].read( original );
+
+            if( value != tracker || value == null )
+            {
+                fields[ i ].write( copy, value );
+            }
+        }
+    }
+
+}
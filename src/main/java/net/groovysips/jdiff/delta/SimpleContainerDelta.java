@@ -20,11 +20,23 @@ package net.groovysips.jdiff.delta;
  * @author Alex Shneyderman
  * @since 0.3
  */
-public class SimpleContainerDelta extends AbstractCompositeDelta
+public class SimpleContainerDelta extends AbstractCompositeDelta implements Referenceable
 {
 
     private String propertyName;
 
+    private int referenceId;
+
+    public int getReferenceId()
+    {
+        return referenceId;
+    }
+
+    public void setReferenceId( int referenceId )
+    {
+        this.referenceId = referenceId;
+    }
+
     public String getPropertyName()
     {
         return propertyName;
@@ -35,11 +47,22 @@ public class SimpleContainerDelta extends AbstractCompositeDelta
         this.propertyName = propertyName;
     }
 
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitContainer( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endContainer( this );
+    }
+
     public String toString()
     {
         return "SimpleContainerDelta{" +
                "propertyName='" + propertyName + "';" +
                "numberOfProperties=" + ( children() == null ? "0" : children().size() ) +
+               ( referenceId != 0 ? ";referenceId=" + referenceId : "" ) +
                '}';
     }
 
@@ -0,0 +1,342 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.groovysips.jdiff.PropertyDescriptorUtils;
+
+/**
+ * Computes 64-bit structural hashes of beans, Merkle style: the hash of a bean is made of its class and the hashes of
+ * the values of its diff plan slots, nested beans included. Beans are hashed once per build, unless their hash depends
+ * on where the hashing has started (a reference back to an object that is still being hashed).
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+final class StructuralHasher
+{
+
+    private static final long NULL_HASH = 0x9E3779B97F4A7C15L;
+    private static final long BACK_REFERENCE = 0xC2B2AE3D27D4EB4FL;
+    private static final long SET_SEED = 0x165667B19E3779F9L;
+    private static final long MAP_SEED = 0x27D4EB2F165667C5L;
+
+    private final DefaultDeltaBuilder builder;
+    private final StructuralHasher parent;
+
+    private final Map<Object, Long> hashes = new IdentityHashMap<Object, Long>();
+    private final Map<Object, Integer> hashing = new IdentityHashMap<Object, Integer>();
+    private int depth;
+    private int lowestBackReference = Integer.MAX_VALUE;
+
+    /**
+     * @param builder - source of the diff plans
+     * @param parent  - hasher whose hashes can be reused, it is only read from. Can be null.
+     */
+    StructuralHasher( DefaultDeltaBuilder builder, StructuralHasher parent )
+    {
+        this.builder = builder;
+        this.parent = parent;
+    }
+
+    /**
+     * @param bean - can not be null
+     * @return structural hash of the bean.
+     */
+    long fingerprint( Object bean )
+    {
+        return hashBean( bean );
+    }
+
+    // HELPERS
+    private long hashBean( Object bean )
+    {
+        if( bean instanceof Fingerprinted )
+        {
+            return ( (Fingerprinted) bean ).fingerprint();
+        }
+
+        Long known = cached( bean );
+
+        if( known != null )
+        {
+            return known;
+        }
+
+        Integer hashedAt = hashing.get( bean );
+
+        if( hashedAt != null )
+        {
+            lowestBackReference = Math.min( lowestBackReference, hashedAt );
+            return mix( BACK_REFERENCE, depth - hashedAt );
+        }
+
+        int beanDepth = depth++;
+        int outerLowest = lowestBackReference;
+        lowestBackReference = Integer.MAX_VALUE;
+        hashing.put( bean, beanDepth );
+
+        long result = hashString( bean.getClass().getName() );
+
+        try
+        {
+            PropertySlot[] slots = builder.getPlan( bean.getClass() ).slots();
+
+            for( int i = 0; i < slots.length; i++ )
+            {
+                result = mix( result, hashValue( slots[ i ].read( bean ) ) );
+            }
+        }
+        finally
+        {
+            hashing.remove( bean );
+            depth--;
+        }
+
+        result = finish( result );
+
+        // nothing below refers to the objects above, the hash is the same wherever the hashing starts.
+        if( lowestBackReference >= beanDepth )
+        {
+            hashes.put( bean, result );
+        }
+
+        lowestBackReference = Math.min( outerLowest, lowestBackReference );
+
+        return result;
+    }
+
+    private Long cached( Object bean )
+    {
+        for( StructuralHasher hasher = this; hasher != null; hasher = hasher.parent )
+        {
+            Long result = hasher.hashes.get( bean );
+
+            if( result != null )
+            {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    private long hashValue( Object value )
+    {
+        if( value == null )
+        {
+            return NULL_HASH;
+        }
+
+        if( value instanceof String )
+        {
+            return hashString( (String) value );
+        }
+
+        if( value instanceof Date )
+        {
+            return mix( hashString( value.getClass().getName() ), ( (Date) value ).getTime() );
+        }
+
+        if( value instanceof Double || value instanceof Float )
+        {
+            return mix( hashString( value.getClass().getName() ), Double.doubleToLongBits( ( (Number) value ).doubleValue() ) );
+        }
+
+        if( value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte )
+        {
+            return mix( hashString( value.getClass().getName() ), ( (Number) value ).longValue() );
+        }
+
+        if( value instanceof Enum )
+        {
+            return mix( hashString( value.getClass().getName() ), hashString( ( (Enum) value ).name() ) );
+        }
+
+        if( value instanceof Collection )
+        {
+            return hashCollection( (Collection) value );
+        }
+
+        if( value instanceof Map )
+        {
+            return hashMap( (Map) value );
+        }
+
+        if( value.getClass().isArray() )
+        {
+            return hashArray( value );
+        }
+
+        if( PropertyDescriptorUtils.isPrimitive( value.getClass() ) )
+        {
+            // the other numbers (BigDecimal, BigInteger...), booleans and characters.
+            return mix( hashString( value.getClass().getName() ), hashString( value.toString() ) );
+        }
+
+        return hashBean( value );
+    }
+
+    private long hashCollection( Collection collection )
+    {
+        if( collection instanceof Set )
+        {
+            // iteration order of a set means nothing, neither does it to the hash.
+            long result = SET_SEED;
+
+            for( Object item : collection )
+            {
+                result += finish( hashValue( item ) );
+            }
+
+            return mix( result, collection.size() );
+        }
+
+        long result = hashString( List.class.getName() );
+
+        for( Object item : collection )
+        {
+            result = mix( result, hashValue( item ) );
+        }
+
+        return finish( result );
+    }
+
+    private long hashMap( Map map )
+    {
+        long result = MAP_SEED;
+
+        for( Object e : map.entrySet() )
+        {
+            Map.Entry entry = (Map.Entry) e;
+
+            result += finish( mix( hashValue( entry.getKey() ), hashValue( entry.getValue() ) ) );
+        }
+
+        return mix( result, map.size() );
+    }
+
+    private long hashArray( Object array )
+    {
+        long result = hashString( array.getClass().getName() );
+
+        if( array instanceof Object[] )
+        {
+            Object[] objects = (Object[]) array;
+
+            for( int i = 0; i < objects.length; i++ )
+            {
+                result = mix( result, hashValue( objects[ i ] ) );
+            }
+
+            return finish( result );
+        }
+
+        if( array instanceof double[] )
+        {
+            double[] values = (double[]) array;
+
+            for( int i = 0; i < values.length; i++ )
+            {
+                result = mix( result, Double.doubleToLongBits( values[ i ] ) );
+            }
+
+            return finish( result );
+        }
+
+        if( array instanceof long[] )
+        {
+            long[] values = (long[]) array;
+
+            for( int i = 0; i < values.length; i++ )
+            {
+                result = mix( result, values[ i ] );
+            }
+
+            return finish( result );
+        }
+
+        if( array instanceof int[] )
+        {
+            int[] values = (int[]) array;
+
+            for( int i = 0; i < values.length; i++ )
+            {
+                result = mix( result, values[ i ] );
+            }
+
+            return finish( result );
+        }
+
+        if( array instanceof byte[] )
+        {
+            byte[] values = (byte[]) array;
+
+            for( int i = 0; i < values.length; i++ )
+            {
+                result = mix( result, values[ i ] );
+            }
+
+            return finish( result );
+        }
+
+        // the rest of the primitive arrays are rare enough to go through reflection.
+        int length = Array.getLength( array );
+
+        for( int i = 0; i < length; i++ )
+        {
+            result = mix( result, hashValue( Array.get( array, i ) ) );
+        }
+
+        return finish( result );
+    }
+
+    private static long hashString( String value )
+    {
+        // 64-bit FNV-1a, String.hashCode has too few bits for a fingerprint.
+        long result = 0xCBF29CE484222325L;
+
+        for( int i = 0; i < value.length(); i++ )
+        {
+            result ^= value.charAt( i );
+            result *= 0x100000001B3L;
+        }
+
+        return result;
+    }
+
+    private static long mix( long hash, long value )
+    {
+        return ( hash ^ finish( value ) ) * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+    }
+
+    private static long finish( long hash )
+    {
+        // murmur3 64-bit finalizer.
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB93FE1A85A55L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
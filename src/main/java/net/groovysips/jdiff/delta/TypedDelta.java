@@ -0,0 +1,36 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.Delta;
+
+/**
+ * Delta that knows its own {@link TypedDeltaVisitor} method. All the deltas of this package are typed.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface TypedDelta extends Delta
+{
+
+    /**
+     * Calls back the method of the visitor for the type of this delta, composites follow up with their children and
+     * their end.
+     *
+     * @param visitor - visitor to call back
+     */
+    void accept( TypedDeltaVisitor visitor );
+
+}
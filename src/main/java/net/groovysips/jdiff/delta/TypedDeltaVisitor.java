@@ -0,0 +1,98 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+/**
+ * Visitor with a method per delta type, deltas call back the method of their type from
+ * {@link TypedDelta#accept(TypedDeltaVisitor)}, so there is no need to find out what a delta is. The composites are
+ * walked by the deltas themselves: the visit of the composite, its children and the end of the composite. A visit
+ * that returns false skips the children and the end. Use {@link TypedVisitorAdapter} where a
+ * {@link net.groovysips.jdiff.DeltaVisitor} is expected.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface TypedDeltaVisitor
+{
+
+    // composites
+    boolean visitJavaBean( JavaBeanDelta delta );
+
+    void endJavaBean( JavaBeanDelta delta );
+
+    boolean visitContainer( SimpleContainerDelta delta );
+
+    void endContainer( SimpleContainerDelta delta );
+
+    boolean visitCollection( CollectionDelta delta );
+
+    void endCollection( CollectionDelta delta );
+
+    boolean visitNewItem( NewItemDelta delta );
+
+    void endNewItem( NewItemDelta delta );
+
+    boolean visitUpdateItem( UpdateItemDelta delta );
+
+    void endUpdateItem( UpdateItemDelta delta );
+
+    boolean visitArray( ArrayDelta delta );
+
+    void endArray( ArrayDelta delta );
+
+    boolean visitMap( MapDelta delta );
+
+    void endMap( MapDelta delta );
+
+    boolean visitPutEntry( PutEntryDelta delta );
+
+    void endPutEntry( PutEntryDelta delta );
+
+    boolean visitUpdateEntry( UpdateEntryDelta delta );
+
+    void endUpdateEntry( UpdateEntryDelta delta );
+
+    boolean visitInsertItemAt( InsertItemAtDelta delta );
+
+    void endInsertItemAt( InsertItemAtDelta delta );
+
+    boolean visitUpdateItemAt( UpdateItemAtDelta delta );
+
+    void endUpdateItemAt( UpdateItemAtDelta delta );
+
+    // leaves
+    void visitPropertyUpdate( PropertyUpdateDelta delta );
+
+    void visitPrimitiveUpdate( PrimitiveUpdateDelta delta );
+
+    void visitNullReturn( NullReturnDelta delta );
+
+    void visitRemoveItem( RemoveItemDelta delta );
+
+    void visitReference( ReferenceDelta delta );
+
+    void visitArrayRange( ArrayRangeDelta delta );
+
+    void visitRemoveEntry( RemoveEntryDelta delta );
+
+    void visitRemoveItemAt( RemoveItemAtDelta delta );
+
+    void visitMoveItem( MoveItemDelta delta );
+
+    void visitPrimitiveValue( PrimitiveValueDelta delta );
+
+    void visitClearAll( ClearAllDelta delta );
+
+}
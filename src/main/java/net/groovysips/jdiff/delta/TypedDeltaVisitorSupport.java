@@ -0,0 +1,170 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+/**
+ * {@link TypedDeltaVisitor} that visits everything and does nothing, extend it and override the methods of the
+ * deltas of interest.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class TypedDeltaVisitorSupport implements TypedDeltaVisitor
+{
+
+    public boolean visitJavaBean( JavaBeanDelta delta )
+    {
+        return true;
+    }
+
+    public void endJavaBean( JavaBeanDelta delta )
+    {
+    }
+
+    public boolean visitContainer( SimpleContainerDelta delta )
+    {
+        return true;
+    }
+
+    public void endContainer( SimpleContainerDelta delta )
+    {
+    }
+
+    public boolean visitCollection( CollectionDelta delta )
+    {
+        return true;
+    }
+
+    public void endCollection( CollectionDelta delta )
+    {
+    }
+
+    public boolean visitNewItem( NewItemDelta delta )
+    {
+        return true;
+    }
+
+    public void endNewItem( NewItemDelta delta )
+    {
+    }
+
+    public boolean visitUpdateItem( UpdateItemDelta delta )
+    {
+        return true;
+    }
+
+    public void endUpdateItem( UpdateItemDelta delta )
+    {
+    }
+
+    public boolean visitArray( ArrayDelta delta )
+    {
+        return true;
+    }
+
+    public void endArray( ArrayDelta delta )
+    {
+    }
+
+    public boolean visitMap( MapDelta delta )
+    {
+        return true;
+    }
+
+    public void endMap( MapDelta delta )
+    {
+    }
+
+    public boolean visitPutEntry( PutEntryDelta delta )
+    {
+        return true;
+    }
+
+    public void endPutEntry( PutEntryDelta delta )
+    {
+    }
+
+    public boolean visitUpdateEntry( UpdateEntryDelta delta )
+    {
+        return true;
+    }
+
+    public void endUpdateEntry( UpdateEntryDelta delta )
+    {
+    }
+
+    public boolean visitInsertItemAt( InsertItemAtDelta delta )
+    {
+        return true;
+    }
+
+    public void endInsertItemAt( InsertItemAtDelta delta )
+    {
+    }
+
+    public boolean visitUpdateItemAt( UpdateItemAtDelta delta )
+    {
+        return true;
+    }
+
+    public void endUpdateItemAt( UpdateItemAtDelta delta )
+    {
+    }
+
+    public void visitPropertyUpdate( PropertyUpdateDelta delta )
+    {
+    }
+
+    public void visitPrimitiveUpdate( PrimitiveUpdateDelta delta )
+    {
+    }
+
+    public void visitNullReturn( NullReturnDelta delta )
+    {
+    }
+
+    public void visitRemoveItem( RemoveItemDelta delta )
+    {
+    }
+
+    public void visitReference( ReferenceDelta delta )
+    {
+    }
+
+    public void visitArrayRange( ArrayRangeDelta delta )
+    {
+    }
+
+    public void visitRemoveEntry( RemoveEntryDelta delta )
+    {
+    }
+
+    public void visitRemoveItemAt( RemoveItemAtDelta delta )
+    {
+    }
+
+    public void visitMoveItem( MoveItemDelta delta )
+    {
+    }
+
+    public void visitPrimitiveValue( PrimitiveValueDelta delta )
+    {
+    }
+
+    public void visitClearAll( ClearAllDelta delta )
+    {
+    }
+
+}
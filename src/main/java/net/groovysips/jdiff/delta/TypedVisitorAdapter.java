@@ -0,0 +1,90 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.util.Stack;
+import net.groovysips.jdiff.CompositeDelta;
+import net.groovysips.jdiff.Delta;
+import net.groovysips.jdiff.DeltaVisitor;
+
+/**
+ * Lets a {@link TypedDeltaVisitor} be used where a {@link DeltaVisitor} is expected, i.e. to visit a delta through
+ * {@link Delta#visit(DeltaVisitor)} or to receive the deltas streamed by the builder.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class TypedVisitorAdapter implements DeltaVisitor
+{
+
+    private final TypedDeltaVisitor visitor;
+
+    // a flag per composite being visited, false for the ones whose children are skipped.
+    private final Stack<Boolean> descended = new Stack<Boolean>();
+
+    public TypedVisitorAdapter( TypedDeltaVisitor visitor )
+    {
+        this.visitor = visitor;
+    }
+
+    public TypedDeltaVisitor getVisitor()
+    {
+        return visitor;
+    }
+
+    public void visit( Delta root )
+    {
+        if( root instanceof AbstractCompositeDelta )
+        {
+            descended.push( !isSkipping() && ( (AbstractCompositeDelta) root ).acceptStart( visitor ) );
+        }
+        else if( !isSkipping() )
+        {
+            AbstractCompositeDelta.acceptChild( root, visitor );
+        }
+    }
+
+    public void visitChild( Delta child )
+    {
+        if( isSkipping() )
+        {
+            return;
+        }
+
+        if( child instanceof AbstractCompositeDelta )
+        {
+            child.visit( this );
+        }
+        else
+        {
+            AbstractCompositeDelta.acceptChild( child, visitor );
+        }
+    }
+
+    public void endVisit( CompositeDelta parent )
+    {
+        if( descended.pop() )
+        {
+            ( (AbstractCompositeDelta) parent ).acceptEnd( visitor );
+        }
+    }
+
+    // HELPERS
+    private boolean isSkipping()
+    {
+        return !descended.isEmpty() && !descended.peek();
+    }
+
+}
@@ -0,0 +1,58 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.CompositeDelta;
+
+/**
+ * Updates the map value stored under the given key.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class UpdateEntryDelta extends AbstractCompositeDelta implements CompositeDelta
+{
+
+    private Object key;
+
+    public Object getKey()
+    {
+        return key;
+    }
+
+    public UpdateEntryDelta( Object key, SimpleContainerDelta delegate )
+    {
+        this.key = key;
+        addChild( delegate );
+    }
+
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitUpdateEntry( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endUpdateEntry( this );
+    }
+
+    @Override public String toString()
+    {
+        return "UpdateEntryDelta{" +
+               "key=" + key +
+               ", delegate=" + (children() != null && !children().isEmpty() ? children().get( 0 ) : null) +
+               '}';
+    }
+}
@@ -0,0 +1,58 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import net.groovysips.jdiff.CompositeDelta;
+
+/**
+ * Updates the list item at the given position.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class UpdateItemAtDelta extends AbstractCompositeDelta implements CompositeDelta
+{
+
+    private int index;
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public UpdateItemAtDelta( int index, SimpleContainerDelta delegate )
+    {
+        this.index = index;
+        addChild( delegate );
+    }
+
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitUpdateItemAt( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endUpdateItemAt( this );
+    }
+
+    @Override public String toString()
+    {
+        return "UpdateItemAtDelta{" +
+               "index=" + index +
+               ", delegate=" + (children() != null && !children().isEmpty() ? children().get( 0 ) : null) +
+               '}';
+    }
+}
@@ -38,6 +38,16 @@ public class UpdateItemDelta extends AbstractCompositeDelta implements Composite
         addChild( delegate );
     }
 
+    protected boolean acceptStart( TypedDeltaVisitor visitor )
+    {
+        return visitor.visitUpdateItem( this );
+    }
+
+    protected void acceptEnd( TypedDeltaVisitor visitor )
+    {
+        visitor.endUpdateItem( this );
+    }
+
     @Override public String toString()
     {
         return "UpdateItemDelta{" +
@@ -0,0 +1,35 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+/**
+ * Decides whether the original and the modified value of a property are the same, i.e. whether the property has
+ * changed. Comparators are resolved once per property when the class plan is compiled, see {@link ValueComparators}
+ * for the built-in ones.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public interface ValueComparator
+{
+
+    /**
+     * @param original - original value, never null
+     * @param modified - modified value, never null
+     * @return true if the property is to be considered unchanged.
+     */
+    boolean areEqual( Object original, Object modified );
+
+}
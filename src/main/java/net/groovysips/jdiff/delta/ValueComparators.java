@@ -0,0 +1,180 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff.delta;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * The built-in {@link ValueComparator}s. Properties that have no comparator configured get the fast path of their
+ * declared type, see {@link #forType(Class)}.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public abstract class ValueComparators
+{
+
+    /**
+     * Compares with equals, the arrays element by element. This is what the properties of the types without a fast
+     * path get.
+     */
+    public static final ValueComparator EQUALS = new ValueComparator()
+    {
+        public boolean areEqual( Object original, Object modified )
+        {
+            return ObjectUtils.nullSafeEquals( original, modified );
+        }
+
+        public String toString()
+        {
+            return "ValueComparators.EQUALS";
+        }
+    };
+
+    /**
+     * Compares the references only, equal but distinct beans are then diffed property by property instead of going
+     * through their (possibly expensive) equals. Enums are compared this way.
+     */
+    public static final ValueComparator IDENTITY = new ValueComparator()
+    {
+        public boolean areEqual( Object original, Object modified )
+        {
+            return original == modified;
+        }
+
+        public String toString()
+        {
+            return "ValueComparators.IDENTITY";
+        }
+    };
+
+    /**
+     * Strings and the wrappers of primitives: equals of a final class, no arrays to look out for.
+     */
+    public static final ValueComparator VALUE = new ValueComparator()
+    {
+        public boolean areEqual( Object original, Object modified )
+        {
+            return original.equals( modified );
+        }
+
+        public String toString()
+        {
+            return "ValueComparators.VALUE";
+        }
+    };
+
+    /**
+     * Dates of the same class are compared by their millis. Subclasses that keep more than that (i.e.
+     * {@link java.sql.Timestamp}) are compared with equals.
+     */
+    public static final ValueComparator DATE = new ValueComparator()
+    {
+        public boolean areEqual( Object original, Object modified )
+        {
+            if( original.getClass() == Date.class && modified.getClass() == Date.class )
+            {
+                return ( (Date) original ).getTime() == ( (Date) modified ).getTime();
+            }
+
+            return original.equals( modified );
+        }
+
+        public String toString()
+        {
+            return "ValueComparators.DATE";
+        }
+    };
+
+    /**
+     * Compares with compareTo, which ignores the scale of {@link BigDecimal}s: 1.0 and 1.00 are the same.
+     */
+    public static final ValueComparator COMPARABLE = new ValueComparator()
+    {
+        @SuppressWarnings( "unchecked" )
+        public boolean areEqual( Object original, Object modified )
+        {
+            if( original instanceof Comparable && original.getClass() == modified.getClass() )
+            {
+                return ( (Comparable) original ).compareTo( modified ) == 0;
+            }
+
+            return original.equals( modified );
+        }
+
+        public String toString()
+        {
+            return "ValueComparators.COMPARABLE";
+        }
+    };
+
+    /**
+     * @param epsilon - the largest difference that is not a change
+     * @return comparator of numbers that ignores differences up to the epsilon.
+     */
+    public static ValueComparator tolerance( final double epsilon )
+    {
+        return new ValueComparator()
+        {
+            public boolean areEqual( Object original, Object modified )
+            {
+                if( original instanceof Number && modified instanceof Number )
+                {
+                    return Math.abs( ( (Number) original ).doubleValue() - ( (Number) modified ).doubleValue() ) <= epsilon;
+                }
+
+                return original.equals( modified );
+            }
+
+            public String toString()
+            {
+                return "ValueComparators.tolerance(" + epsilon + ")";
+            }
+        };
+    }
+
+    /**
+     * @param type - declared type of a property, may be null
+     * @return the fast path comparator of the type.
+     */
+    public static ValueComparator forType( Class type )
+    {
+        if( type == null )
+        {
+            return EQUALS;
+        }
+
+        if( type == String.class || ClassUtils.isPrimitiveOrWrapper( type ) )
+        {
+            return VALUE;
+        }
+
+        if( type.isEnum() )
+        {
+            return IDENTITY;
+        }
+
+        if( Date.class.isAssignableFrom( type ) )
+        {
+            return DATE;
+        }
+
+        return EQUALS;
+    }
+
+}
@@ -14,25 +14,33 @@
 */
 package net.groovysips.jdiff.delta;
 
+import java.lang.reflect.Array;
 import java.util.Stack;
 import java.util.Collection;
 import java.util.ArrayList;
-import java.util.Iterator;
-import net.groovysips.jdiff.CompositeDelta;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import net.groovysips.jdiff.Delta;
 import net.groovysips.jdiff.DeltaMerger;
-import net.groovysips.jdiff.DeltaVisitor;
 import net.groovysips.jdiff.PropertyDescriptorUtils;
+import net.groovysips.jdiff.access.Accessors;
+import net.groovysips.jdiff.access.PropertyAccessor;
 import static net.groovysips.jdiff.StringUtils.buildLogableString;
 import org.springframework.util.StringUtils;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
 
 /**
+ * Merges the deltas by visiting them. The merger keeps no state of its own between the calls, the state of a merge
+ * lives in a {@link MergeContext}, so a single configured merger can be shared by any number of threads.
+ *
  * @author Alex Shneyderman
  * @since 0.3
  */
-public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
+public class VisitingDeltaMerger implements DeltaMerger
 {
 
     private static final Log LOG = LogFactory.getLog(VisitingDeltaMerger.class);
@@ -44,7 +52,25 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
         return appenderFactory;
     }
 
-    private Stack resultStack = new Stack();
+    // contexts kept for reuse, one per thread and shared by all the mergers. A context refers to its merger only while a
+    // merge is on, so the mergers that are done with are not kept around by the threads they merged on.
+    private static final ThreadLocal<MergeContext> contexts = new ThreadLocal<MergeContext>();
+
+    private Set<Class> fieldAccess = new HashSet<Class>();
+
+    /**
+     * @return classes (sub classes included) whose properties are read and written field by field, bypassing their
+     *         getters and setters. Should match the field access setting of the builder the deltas come from.
+     */
+    public Set<Class> getFieldAccess()
+    {
+        return fieldAccess;
+    }
+
+    public void setFieldAccess( Set<Class> fieldAccess )
+    {
+        this.fieldAccess = fieldAccess;
+    }
 
     public VisitingDeltaMerger ()
     {
@@ -65,167 +91,222 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
     {
         this.appenderFactory = appenderFactory;
     }
-    public void visit( Delta delta )
+    /**
+     * End of the composites that leave the object they worked on, on the stack: the object is popped and handed to
+     * the result holder if there is one underneath.
+     */
+    void handleEnd( MergeContext context )
     {
-        if( LOG.isDebugEnabled() )
-        {
-            LOG.debug( buildLogableString( "VDM.visit", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
-        }
+        Object popped = context.resultStack.pop();
 
-        if( delta instanceof JavaBeanDelta )
+        if( context.resultStack.peek() instanceof ResultHolder )
         {
-            handleStart( (JavaBeanDelta) delta );
+            ( (ResultHolder) context.resultStack.peek() ).result = popped;
         }
-        else if( delta instanceof SimpleContainerDelta )
-        {
-            handleStart( (SimpleContainerDelta) delta );
-        }
-        else if( delta instanceof CollectionDelta )
+    }
+
+    public Object merge( Object object, Delta delta )
+    {
+        MergeContext context = acquireContext();
+
+        try
         {
-            handleStart( (CollectionDelta) delta );
+            return merge( object, delta, context );
         }
-        else if( delta instanceof NewItemDelta )
+        finally
         {
-            handleStart( (NewItemDelta) delta );
+            context.release();
         }
-        else if( delta instanceof UpdateItemDelta )
+    }
+
+    /**
+     * Merges the delta copy on write: the object and everything reachable from it are left alone, the beans,
+     * collections, maps and arrays the delta changes are copied along with the ones on the way to them, and along with
+     * any other object of the graph that refers to a copied one. The rest of the graph is shared by the original and
+     * the merged object, so the readers of the original never see a change. Finding the objects referring to the copies
+     * takes a walk of the merged graph once the delta is merged.
+     *
+     * @param object - object to merge the delta into, not changed
+     * @return merged object, a copy of the object unless the delta creates a new one.
+     */
+    public Object mergeCopy( Object object, Delta delta )
+    {
+        MergeContext context = acquireContext();
+
+        context.setCopyOnWrite( true );
+
+        try
         {
-            handleStart( (UpdateItemDelta) delta );
+            Object result = merge( object, delta, context );
+
+            context.repointCopies( result );
+
+            return result;
         }
-        else
+        finally
         {
-            String msg = buildLogableString( "We do not know yet how to deal with this delta in 'visit( Delta delta )' method.",
-                                             new Object[][]{
-                                                 { "delta", delta }
-                                             } );
-            throw new RuntimeException( msg );
+            context.release();
         }
     }
 
-    public void visitChild( Delta child )
+    /**
+     * Compiles the delta into a program that applies it the same way {@link #merge(Object, Delta)} would, only without
+     * walking the delta tree again and again. Worth it for a delta that is applied to many objects.
+     *
+     * @param delta - delta to compile, must not change while the program is in use
+     * @return program that applies the delta with the settings of this merger.
+     */
+    public DeltaProgram compile( Delta delta )
+    {
+        return new DeltaProgram( this, delta );
+    }
+
+    // HELPERS.
+    private Object merge( Object object, Delta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.visitChild", new Object [][] { { "child",child }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.merge", new Object [][] { { "object",object }, {"delta",delta}, {"stack",context.resultStack} } ));
         }
 
-        if( child instanceof CompositeDelta )
-        {
-            child.visit( this );
-        }
-        else if( child instanceof NullReturnDelta )
-        {
-            handleNullReturn( (NullReturnDelta) child );
-        }
-        else if( child instanceof PropertyUpdateDelta )
-        {
-            handlePropertyUpdate( (PropertyUpdateDelta) child );
-        }
-        else if( child instanceof RemoveItemDelta )
-        {
-            handleRemoveItem( (RemoveItemDelta) child );
-        }
-        else if( child instanceof PrimitiveValueDelta )
-        {
-            handlePrimitiveValue( (PrimitiveValueDelta) child );
-        }
-        else if( child instanceof ClearAllDelta )
-        {
-            handleClearAll( (ClearAllDelta) child );
-        }
-        else if( child == Delta.NULL )
-        {
-            ;
-        }
-        else
+        context.resultStack.push( new ResultHolder() );
+
+        if( expectsInitialObjectOnResultStack( delta ) )
         {
-            String msg = buildLogableString( "We do not know yet how to deal with this child delta in 'visit( CompositeDelta parent, Delta child )' method.",
-                                             new Object[][]{
-                                                 { "child", child }
-                                             } );
-            throw new RuntimeException( msg );
+            context.resultStack.push( context.writable( object ) );
         }
+
+        AbstractCompositeDelta.acceptChild( delta, context );
+
+        return ( (ResultHolder) context.resultStack.pop() ).result;
     }
 
-    public void endVisit( CompositeDelta composite )
+    MergeContext acquireContext()
     {
-        if( LOG.isDebugEnabled() )
-        {
-            LOG.debug( buildLogableString( "VDM.endVisit", new Object [][] { { "composite",composite }, {"stack",resultStack} } ));
-        }
+        MergeContext result = contexts.get();
 
-        if( composite == null )
+        // a merge started from within another one (i.e. by an item appender) gets a context of its own.
+        if( result == null || result.isInUse() )
         {
-            return;
+            result = new MergeContext();
+
+            if( contexts.get() == null )
+            {
+                contexts.set( result );
+            }
         }
 
-        if (composite instanceof NewItemDelta)
+        result.acquire( this );
+
+        return result;
+    }
+
+    private Object readProperty( Object bean, String propertyName )
+    {
+        PropertyAccessor field = fieldAccessorOf( bean, propertyName );
+
+        return field != null ? PropertyDescriptorUtils.read( bean, field ) : PropertyDescriptorUtils.read( bean, propertyName );
+    }
+
+    private void writeProperty( Object bean, Object value, String propertyName )
+    {
+        PropertyAccessor field = fieldAccessorOf( bean, propertyName );
+
+        if( field != null )
         {
-            handleEnd((NewItemDelta) composite);
-            return;
+            PropertyDescriptorUtils.write( bean, value, field );
         }
-        else if (composite instanceof UpdateItemDelta )
+        else
         {
-            return; // we do not need to pop anything from the stack / it was done already.
+            PropertyDescriptorUtils.write( bean, value, propertyName );
         }
+    }
+
+    /**
+     * @return value of the property, copied and written back first when merging copy on write.
+     */
+    private Object writableProperty( Object bean, String propertyName, MergeContext context )
+    {
+        Object value = readProperty( bean, propertyName );
 
-        Object popped = resultStack.pop();
+        Object result = context.writable( value );
 
-        if( resultStack.peek() instanceof ResultHolder )
+        if( result != value )
         {
-            ( (ResultHolder) resultStack.peek() ).result = popped;
+            writeProperty( bean, result, propertyName );
         }
+
+        return result;
     }
 
-    public Object merge( Object object, Delta delta )
+    /**
+     * Hands a container created without a property to put it into over to the delta it is the value of, i.e. an entry.
+     */
+    private void holdResult( Object container, MergeContext context )
     {
-        if( LOG.isDebugEnabled() )
+        if( context.resultStack.peek() instanceof ResultHolder )
         {
-            LOG.debug( buildLogableString( "VDM.merge", new Object [][] { { "object",object }, {"delta",delta}, {"stack",resultStack} } ));
+            ( (ResultHolder) context.resultStack.peek() ).result = container;
         }
+    }
 
-        resultStack.push( new ResultHolder() );
+    private PropertyAccessor fieldAccessorOf( Object bean, String propertyName )
+    {
+        return bean == null ? null : fieldAccessorOf( bean.getClass(), propertyName );
+    }
 
-        if( expectsInitialObjectOnResultStack( delta ) )
+    private PropertyAccessor fieldAccessorOf( Class beanClass, String propertyName )
+    {
+        if( fieldAccess == null || fieldAccess.isEmpty() )
         {
-            resultStack.push( object );
+            return null;
         }
 
-        if( delta instanceof CompositeDelta )
-        {
-            delta.visit( this );      // this spawns the whole visitor machinery
-        }
-        else
+        for( Class keyClass : fieldAccess )
         {
-            this.visitChild( delta ); // this is a simple cheat
+            if( keyClass.isAssignableFrom( beanClass ) )
+            {
+                return Accessors.forField( beanClass, propertyName );
+            }
         }
 
-        return ( (ResultHolder) resultStack.pop() ).result;
+        return null;
     }
 
-    // HELPERS.
-    private void handleStart( JavaBeanDelta delta )
+    /**
+     * @return accessor the property of the beans of the class is read and written with or null if there is none.
+     */
+    PropertyAccessor accessorOf( Class beanClass, String propertyName )
+    {
+        PropertyAccessor result = fieldAccessorOf( beanClass, propertyName );
+
+        return result != null ? result : Accessors.forProperty( beanClass, propertyName );
+    }
+
+    void handleStart( JavaBeanDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handleStart - JavaBeanDelta", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handleStart - JavaBeanDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
         }
 
         Object instance = delta.createInstance();
 
+        register( delta, instance, context );
+
         if( StringUtils.hasText( delta.getPropertyName() ) )
         {
-            PropertyDescriptorUtils.write( resultStack.peek(), instance, delta.getPropertyName() );
+            writeProperty( context.resultStack.peek(), instance, delta.getPropertyName() );
         }
 
-        resultStack.push( instance );
+        context.resultStack.push( instance );
     }
 
-    private void handleStart( SimpleContainerDelta delta )
+    void handleStart( SimpleContainerDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handleStart - SimpleContainerDelta", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handleStart - SimpleContainerDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
         }
 
         if( delta == null )
@@ -235,17 +316,19 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
 
         if( StringUtils.hasText( delta.getPropertyName() ) )
         {
-            Object bean = PropertyDescriptorUtils.read( resultStack.peek(), delta.getPropertyName() );
+            Object bean = writableProperty( context.resultStack.peek(), delta.getPropertyName(), context );
 
-            resultStack.push( bean );
+            context.resultStack.push( bean );
         }
+
+        register( delta, context.resultStack.peek(), context );
     }
 
-    private void handleStart( CollectionDelta delta )
+    void handleStart( CollectionDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handleStart - CollectionDelta", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handleStart - CollectionDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
         }
 
         if( delta == null )
@@ -258,16 +341,16 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
         if( StringUtils.hasText( delta.getPropertyName() ) )
         {
             Object tos = null;
-            if( resultStack.peek() instanceof ResultHolder )
+            if( context.resultStack.peek() instanceof ResultHolder )
             {
-                tos = ((ResultHolder) resultStack.peek()).result;
+                tos = ((ResultHolder) context.resultStack.peek()).result;
             }
             else
             {
-                tos = resultStack.peek();
+                tos = context.resultStack.peek();
             }
 
-            collection = (Collection) PropertyDescriptorUtils.read( tos, delta.getPropertyName() );
+            collection = (Collection) writableProperty( tos, delta.getPropertyName(), context );
         }
 
         if( collection == null )
@@ -283,13 +366,17 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
 
             if( StringUtils.hasText( delta.getPropertyName() ) )
             {
-                PropertyDescriptorUtils.write( resultStack.peek(), collection, delta.getPropertyName() );
+                writeProperty( context.resultStack.peek(), collection, delta.getPropertyName() );
+            }
+            else
+            {
+                holdResult( collection, context );
             }
         }
 
         if( collection instanceof Collection )
         {
-            resultStack.push( collection );
+            context.resultStack.push( collection );
         }
         else
         {
@@ -297,49 +384,269 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
         }
     }
 
-    private void handleStart( NewItemDelta delta )
+    void handleStart( NewItemDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleStart - NewItemDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        context.resultStack.push( new ResultHolder() );
+    }
+
+    void handleStart( UpdateItemDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handleStart - NewItemDelta", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handleStart - UpdateItemDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        CollectionIndex index = context.indexOf( (Collection) context.resultStack.peek() );
+
+        Object item = index.find( delta.getFinderCriteria() );
+
+        Object writable = context.writable( item );
+
+        if( writable != item )
+        {
+            index.replace( item, writable );
         }
 
-        resultStack.push( new ResultHolder() );
+        context.resultStack.push( writable );
     }
 
-    private void handleStart( UpdateItemDelta delta )
+    void handleStart( ArrayDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handleStart - UpdateItemDelta", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handleStart - ArrayDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        Object tos = null;
+        if( context.resultStack.peek() instanceof ResultHolder )
+        {
+            tos = ((ResultHolder) context.resultStack.peek()).result;
+        }
+        else
+        {
+            tos = context.resultStack.peek();
         }
 
-        FinderCriteria crit = delta.getFinderCriteria();
+        Object array = StringUtils.hasText( delta.getPropertyName() ) ? readProperty( tos, delta.getPropertyName() ) : null;
+
+        // ranges are copied in place, unless the array has to grow, shrink or change its type.
+        if( array == null ||
+            array.getClass().getComponentType() != delta.getComponentType() ||
+            Array.getLength( array ) != delta.getLength() )
+        {
+            Object resized = Array.newInstance( delta.getComponentType(), delta.getLength() );
+
+            if( array != null && array.getClass().getComponentType() == delta.getComponentType() )
+            {
+                System.arraycopy( array, 0, resized, 0, Math.min( Array.getLength( array ), delta.getLength() ) );
+            }
+
+            array = resized;
 
-        Object item = crit.find( (Collection) resultStack.peek() );
+            if( StringUtils.hasText( delta.getPropertyName() ) )
+            {
+                writeProperty( tos, array, delta.getPropertyName() );
+            }
+            else
+            {
+                holdResult( array, context );
+            }
+        }
+        else
+        {
+            array = writableProperty( tos, delta.getPropertyName(), context );
+        }
 
-        resultStack.push( item );
+        context.resultStack.push( array );
     }
 
-    private void handleEnd( NewItemDelta delta )
+    void handleStart( MapDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handleEnd - NewItemDelta", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handleStart - MapDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        Object tos = null;
+        if( context.resultStack.peek() instanceof ResultHolder )
+        {
+            tos = ((ResultHolder) context.resultStack.peek()).result;
         }
+        else
+        {
+            tos = context.resultStack.peek();
+        }
+
+        Object map = StringUtils.hasText( delta.getPropertyName() ) ? writableProperty( tos, delta.getPropertyName(), context ) : null;
 
-        ResultHolder rHolder = (ResultHolder) resultStack.pop();
+        if( map == null )
+        {
+            try
+            {
+                map = delta.getMapClass() == null ? new HashMap() : delta.getMapClass().newInstance();
+            }
+            catch( Exception e )
+            {
+                throw new RuntimeException( "Map class can not be instantiated '" + delta.getMapClass() + "'" );
+            }
+
+            if( StringUtils.hasText( delta.getPropertyName() ) )
+            {
+                writeProperty( context.resultStack.peek(), map, delta.getPropertyName() );
+            }
+            else
+            {
+                holdResult( map, context );
+            }
+        }
+
+        if( map instanceof Map )
+        {
+            context.resultStack.push( map );
+        }
+        else
+        {
+            throw new RuntimeException( "MapDelta can only be applied to an instance of java.util.Map" );
+        }
+    }
+
+    void handleStart( PutEntryDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleStart - PutEntryDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        context.resultStack.push( new ResultHolder() );
+    }
+
+    void handleStart( UpdateEntryDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleStart - UpdateEntryDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        Map map = (Map) context.resultStack.peek();
+
+        Object original = map.get( delta.getKey() );
+
+        Object value = context.writable( original );
+
+        if( value != original )
+        {
+            map.put( delta.getKey(), value );
+        }
+
+        context.resultStack.push( value );
+    }
+
+    void handleStart( InsertItemAtDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleStart - InsertItemAtDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        context.resultStack.push( new ResultHolder() );
+    }
+
+    void handleStart( UpdateItemAtDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleStart - UpdateItemAtDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        List list = listOnTop( delta, context );
+
+        Object original = list.get( delta.getIndex() );
+
+        Object item = context.writable( original );
+
+        if( item != original )
+        {
+            list.set( delta.getIndex(), item );
+        }
+
+        context.resultStack.push( item );
+    }
+
+    void handleEnd( NewItemDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleEnd - NewItemDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        ResultHolder rHolder = (ResultHolder) context.resultStack.pop();
 
         ItemAppender appender = appenderFactory.create(rHolder.result);
 
-        appender.append( resultStack, (Collection) resultStack.peek(), rHolder.result );
+        Collection collection = (Collection) context.resultStack.peek();
+
+        appender.append( context.resultStack, collection, rHolder.result );
+
+        CollectionIndex index = context.existingIndex( collection );
+
+        if( index != null )
+        {
+            index.add( rHolder.result );
+        }
+    }
+
+    void handleEnd( CollectionDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleEnd - CollectionDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        CollectionIndex index = context.removeIndex( (Collection) context.resultStack.peek() );
+
+        if( index != null )
+        {
+            index.flush();
+        }
+
+        handleEnd( context );
+    }
+
+    void handleEnd( PutEntryDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleEnd - PutEntryDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        ResultHolder rHolder = (ResultHolder) context.resultStack.pop();
+
+        ( (Map) context.resultStack.peek() ).put( delta.getKey(), rHolder.result );
+    }
+
+    void handleEnd( InsertItemAtDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleEnd - InsertItemAtDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        ResultHolder rHolder = (ResultHolder) context.resultStack.pop();
+
+        // positional deltas bypass the item appenders, the position is what matters here.
+        listOnTop( delta, context ).add( delta.getIndex(), rHolder.result );
     }
 
-    private void handlePropertyUpdate( PropertyUpdateDelta delta )
+    void handlePropertyUpdate( PropertyUpdateDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handlePropertyUpdate - PropertyUpdateDelta", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handlePropertyUpdate - PropertyUpdateDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
         }
 
         if( delta == null )
@@ -353,7 +660,7 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
 
         Object val = delta.getNewValue();
 
-        Object obj = resultStack.peek();
+        Object obj = context.resultStack.peek();
 
         if( StringUtils.hasText( writeMethodName ) )
         {
@@ -361,15 +668,37 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
         }
         else
         {
-            PropertyDescriptorUtils.write( obj, val, propertyName );
+            writeProperty( obj, val, propertyName );
         }
     }
 
-    private void handleClearAll( ClearAllDelta delta )
+    void handlePrimitiveUpdate( PrimitiveUpdateDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handleClearAll - ClearAllDelta", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handlePrimitiveUpdate - PrimitiveUpdateDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        Object obj = context.resultStack.peek();
+
+        if( obj == null )
+        {
+            return;
+        }
+
+        PropertyAccessor accessor = accessorOf( obj.getClass(), delta.getPropertyName() );
+
+        if( accessor != null )
+        {
+            PropertyDescriptorUtils.writeBits( obj, delta.getNewBits(), accessor );
+        }
+    }
+
+    void handleClearAll( ClearAllDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleClearAll - ClearAllDelta", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
         }
 
         if( delta == null )
@@ -377,9 +706,12 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
             return;
         }
 
-        if (resultStack.peek() instanceof Collection)
+        if (context.resultStack.peek() instanceof Collection)
         {
-            ((Collection) resultStack.peek()).clear();
+            // nothing is left for the index to find.
+            context.removeIndex( (Collection) context.resultStack.peek() );
+
+            ((Collection) context.resultStack.peek()).clear();
         }
         else
         {
@@ -387,18 +719,18 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
         }
     }
 
-    private void handleNullReturn( NullReturnDelta delta )
+    void handleNullReturn( NullReturnDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handleNullReturn", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handleNullReturn", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
         }
 
         if( delta.getPropertyName() == null )
         {
-            if( resultStack.peek() instanceof ResultHolder )
+            if( context.resultStack.peek() instanceof ResultHolder )
             {
-                ( (ResultHolder) resultStack.peek() ).result = null;
+                ( (ResultHolder) context.resultStack.peek() ).result = null;
                 return;
             }
 
@@ -407,53 +739,151 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
 
         if( StringUtils.hasText( delta.getWriteMethodName() ) )
         {
-            PropertyDescriptorUtils.writeWith( resultStack.peek(), null, delta.getWriteMethodName() );
+            PropertyDescriptorUtils.writeWith( context.resultStack.peek(), null, delta.getWriteMethodName() );
         }
         else
         {
-            PropertyDescriptorUtils.write( resultStack.peek(), null, delta.getPropertyName() );
+            writeProperty( context.resultStack.peek(), null, delta.getPropertyName() );
         }
     }
 
-    private void handleRemoveItem( RemoveItemDelta delta )
+    void handleRemoveItem( RemoveItemDelta delta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handleRemoveItem", new Object [][] { { "delta",delta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handleRemoveItem", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        CollectionIndex index = context.indexOf( (Collection) context.resultStack.peek() );
+
+        Object item = index.find( delta.getFinderCriteria() );
+
+        // taken out of the collection together with the rest of the removed items by the end of the collection delta.
+        if( item != null )
+        {
+            index.remove( item );
         }
+    }
 
-        FinderCriteria crit = delta.getFinderCriteria();
+    void handleReference( ReferenceDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleReference", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
 
-        Collection collection = (Collection) resultStack.peek();
+        Integer referenceId = delta.getReferenceId();
 
-        Object item = crit.find( collection );
+        if( !context.references.containsKey( referenceId ) )
+        {
+            String msg = buildLogableString( "ReferenceDelta refers to an object that has not been merged yet.",
+                                             new Object[][]{
+                                                 { "delta", delta }
+                                             } );
+            throw new RuntimeException( msg );
+        }
 
-        Iterator iter = collection.iterator();
+        Object referenced = context.references.get( referenceId );
 
-        while (iter.hasNext())
+        if( delta.getPropertyName() == null )
         {
-            if (iter.next() == item)
+            if( context.resultStack.peek() instanceof ResultHolder )
             {
-                iter.remove();
-                
-                break;
+                ( (ResultHolder) context.resultStack.peek() ).result = referenced;
+                return;
             }
+
+            throw new RuntimeException( "ReferenceDelta with no target property name can only be merged into a result." );
+        }
+
+        writeProperty( context.resultStack.peek(), referenced, delta.getPropertyName() );
+    }
+
+    private void register( Referenceable delta, Object target, MergeContext context )
+    {
+        if( delta.getReferenceId() != 0 )
+        {
+            context.references.put( delta.getReferenceId(), target );
+        }
+    }
+
+    void handleArrayRange( ArrayRangeDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleArrayRange", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        Object array = context.resultStack.peek();
+
+        if( array == null || !array.getClass().isArray() )
+        {
+            throw new RuntimeException( "ArrayRangeDelta can only be applied to the stack that has an array on the top." );
+        }
+
+        System.arraycopy( delta.getSlice(), 0, array, delta.getOffset(), delta.getLength() );
+    }
+
+    void handleRemoveEntry( RemoveEntryDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleRemoveEntry", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        ( (Map) context.resultStack.peek() ).remove( delta.getKey() );
+    }
+
+    void handleRemoveItemAt( RemoveItemAtDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleRemoveItemAt", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        listOnTop( delta, context ).remove( delta.getIndex() );
+    }
+
+    void handleMoveItem( MoveItemDelta delta, MergeContext context )
+    {
+        if( LOG.isDebugEnabled() )
+        {
+            LOG.debug( buildLogableString( "VDM.handleMoveItem", new Object [][] { { "delta",delta }, {"stack",context.resultStack} } ));
+        }
+
+        List list = listOnTop( delta, context );
+
+        list.add( delta.getTo(), list.remove( delta.getFrom() ) );
+    }
+
+    private List listOnTop( Delta delta, MergeContext context )
+    {
+        if( context.resultStack.peek() instanceof List )
+        {
+            return (List) context.resultStack.peek();
         }
+
+        String msg = buildLogableString( "Positional delta can only be applied to the stack that has list on the top.",
+                                         new Object[][]{
+                                             { "delta", delta },
+                                             { "top", context.resultStack.peek() }
+                                         } );
+        throw new RuntimeException( msg );
     }
 
-    private void handlePrimitiveValue( PrimitiveValueDelta primitiveValueDelta )
+    void handlePrimitiveValue( PrimitiveValueDelta primitiveValueDelta, MergeContext context )
     {
         if( LOG.isDebugEnabled() )
         {
-            LOG.debug( buildLogableString( "VDM.handlePrimitiveValue", new Object [][] { { "primitiveValueDelta",primitiveValueDelta }, {"stack",resultStack} } ));
+            LOG.debug( buildLogableString( "VDM.handlePrimitiveValue", new Object [][] { { "primitiveValueDelta",primitiveValueDelta }, {"stack",context.resultStack} } ));
         }
 
-        ResultHolder rHolder = (ResultHolder) resultStack.peek();
+        ResultHolder rHolder = (ResultHolder) context.resultStack.peek();
 
         rHolder.result = primitiveValueDelta.getValue();
     }
 
-    private boolean expectsInitialObjectOnResultStack( Delta delta )
+    static boolean expectsInitialObjectOnResultStack( Delta delta )
     {
         if( delta instanceof SimpleContainerDelta )
         {
@@ -465,7 +895,7 @@ public class VisitingDeltaMerger implements DeltaVisitor, DeltaMerger
 
         return false;
     }
-    private static class ResultHolder
+    static class ResultHolder
     {
         public Object result;
 
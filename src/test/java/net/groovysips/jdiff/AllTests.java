@@ -15,7 +15,21 @@ public class AllTests extends TestSuite
     {
         TestSuite test = new TestSuite();
 
+        test.addTestSuite( SimpleObjectDiffArrayTests.class );
         test.addTestSuite( SimpleObjectDiffCollectionTests.class );
+        test.addTestSuite( SimpleObjectDiffListTests.class );
+        test.addTestSuite( SimpleObjectDiffMapTests.class );
+        test.addTestSuite( SimpleObjectCycleTests.class );
+        test.addTestSuite( SimpleObjectDirtyTrackingTests.class );
+        test.addTestSuite( SimpleObjectFieldAccessTests.class );
+        test.addTestSuite( SimpleObjectStreamingTests.class );
+        test.addTestSuite( SimpleObjectBatchTests.class );
+        test.addTestSuite( SimpleObjectPrimitiveTests.class );
+        test.addTestSuite( SimpleObjectComparatorTests.class );
+        test.addTestSuite( SimpleObjectProgramTests.class );
+        test.addTestSuite( SimpleObjectVisitorTests.class );
+        test.addTestSuite( SimpleObjectCopyOnWriteTests.class );
+        test.addTestSuite( SimpleObjectComposeTests.class );
         test.addTestSuite( SimpleObjectDiffTests.class );
         test.addTestSuite( SimpleObjectGraphTestCase.class );
 
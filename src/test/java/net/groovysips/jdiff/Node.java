@@ -0,0 +1,82 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.List;
+
+/**
+ * A graph node with a back reference to its parent; equality is identity.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class Node
+{
+
+    private String name;
+    private Node parent;
+    private Node peer;
+    private List<Node> children;
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName( String name )
+    {
+        this.name = name;
+    }
+
+    public Node getParent()
+    {
+        return parent;
+    }
+
+    public void setParent( Node parent )
+    {
+        this.parent = parent;
+    }
+
+    public Node getPeer()
+    {
+        return peer;
+    }
+
+    public void setPeer( Node peer )
+    {
+        this.peer = peer;
+    }
+
+    public List<Node> getChildren()
+    {
+        return children;
+    }
+
+    public void setChildren( List<Node> children )
+    {
+        this.children = children;
+    }
+
+    @Override public String toString()
+    {
+        return "Node{" +
+               "name='" + name + '\'' +
+               ", parent=" + ( parent == null ? "null" : parent.getName() ) +
+               ", peer=" + ( peer == null ? "null" : peer.getName() ) +
+               ", children=" + ( children == null ? "null" : children.size() ) +
+               '}';
+    }
+}
@@ -17,6 +17,7 @@ package net.groovysips.jdiff;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import org.springframework.util.ObjectUtils;
 
 
@@ -38,6 +39,12 @@ public class Person
 
     private Person firstChild;
 
+    private Map<String, Object> attributes;
+
+    private double[] samples;
+
+    private String[] titles;
+
     public Collection<Person> getChildren()
     {
         return children;
@@ -118,6 +125,36 @@ public class Person
         this.accounts = accounts;
     }
 
+    public Map<String, Object> getAttributes()
+    {
+        return attributes;
+    }
+
+    public void setAttributes( Map<String, Object> attributes )
+    {
+        this.attributes = attributes;
+    }
+
+    public double[] getSamples()
+    {
+        return samples;
+    }
+
+    public void setSamples( double[] samples )
+    {
+        this.samples = samples;
+    }
+
+    public String[] getTitles()
+    {
+        return titles;
+    }
+
+    public void setTitles( String[] titles )
+    {
+        this.titles = titles;
+    }
+
     @Override
     public boolean equals( Object obj )
     {
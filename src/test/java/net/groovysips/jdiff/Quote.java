@@ -0,0 +1,115 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+/**
+ * A bean with a property of every primitive type.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class Quote
+{
+
+    private int quantity;
+    private long volume;
+    private double price;
+    private boolean halted;
+    private float spread;
+    private short lot;
+    private byte venue;
+    private char side;
+
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    public void setQuantity( int quantity )
+    {
+        this.quantity = quantity;
+    }
+
+    public long getVolume()
+    {
+        return volume;
+    }
+
+    public void setVolume( long volume )
+    {
+        this.volume = volume;
+    }
+
+    public double getPrice()
+    {
+        return price;
+    }
+
+    public void setPrice( double price )
+    {
+        this.price = price;
+    }
+
+    public boolean isHalted()
+    {
+        return halted;
+    }
+
+    public void setHalted( boolean halted )
+    {
+        this.halted = halted;
+    }
+
+    public float getSpread()
+    {
+        return spread;
+    }
+
+    public void setSpread( float spread )
+    {
+        this.spread = spread;
+    }
+
+    public short getLot()
+    {
+        return lot;
+    }
+
+    public void setLot( short lot )
+    {
+        this.lot = lot;
+    }
+
+    public byte getVenue()
+    {
+        return venue;
+    }
+
+    public void setVenue( byte venue )
+    {
+        this.venue = venue;
+    }
+
+    public char getSide()
+    {
+        return side;
+    }
+
+    public void setSide( char side )
+    {
+        this.side = side;
+    }
+
+}
@@ -14,6 +14,7 @@
 */
 package net.groovysips.jdiff;
 
+import net.groovysips.jdiff.delta.AbstractKeyedFinderCriteria;
 import net.groovysips.jdiff.delta.FinderCriteriaFactory;
 import net.groovysips.jdiff.delta.FinderCriteria;
 import net.groovysips.jdiff.delta.NullReturningCriteria;
@@ -37,6 +38,8 @@ public class SimpleFinderCriteriaFactory implements FinderCriteriaFactory
         findersMap = new HashMap<Class,FinderCriteriaFactory>();
         findersMap.put( Person.class, new PersonFinderCriteriaFactory() );
         findersMap.put( Account.class, new AccountFinderCriteriaFactory() );
+        findersMap.put( Node.class, new NodeFinderCriteriaFactory() );
+        findersMap.put( SimpleObjectDirtyTrackingTests.TrackedNode.class, new NodeFinderCriteriaFactory() );
     }
 
     public FinderCriteria create( Object item )
@@ -59,28 +62,26 @@ public class SimpleFinderCriteriaFactory implements FinderCriteriaFactory
     private static final class PersonFinderCriteriaFactory implements FinderCriteriaFactory {
         public FinderCriteria create( final Object item )
         {
-            return new FinderCriteria() {
+            return new AbstractKeyedFinderCriteria() {
                 private String ssn = ((Person) item).getSsn();
-                public Object find( Collection collection )
+
+                protected Map<String, Object> critValuesOf( Object candidate )
                 {
-                    for( Object p : collection )
-                    {
-                        if (p instanceof Person && ((Person) p).getSsn().equals( ssn ))
-                        {
-                            return p;
-                        }
-                    }
-                    return null;
+                    return candidate instanceof Person ? critValues( ((Person) candidate).getSsn() ) : null;
                 }
 
                 public Map<String, Object> critValues()
+                {
+                    return critValues( ssn );
+                }
+
+                private Map<String, Object> critValues( String ssn )
                 {
                     Map<String,Object> result = new HashMap<String,Object>();
                     result.put( "ssn", ssn );
                     return result;
                 }
 
-
                 @Override public String toString()
                 {
                     return "PersonFinderCriteria{" +
@@ -91,6 +92,39 @@ public class SimpleFinderCriteriaFactory implements FinderCriteriaFactory
         }
     }
 
+    private static final class NodeFinderCriteriaFactory implements FinderCriteriaFactory {
+        public FinderCriteria create( final Object item )
+        {
+            return new AbstractKeyedFinderCriteria() {
+                private String name = ((Node) item).getName();
+
+                protected Map<String, Object> critValuesOf( Object candidate )
+                {
+                    return candidate instanceof Node ? critValues( ((Node) candidate).getName() ) : null;
+                }
+
+                public Map<String, Object> critValues()
+                {
+                    return critValues( name );
+                }
+
+                private Map<String, Object> critValues( String name )
+                {
+                    Map<String,Object> result = new HashMap<String,Object>();
+                    result.put( "name", name );
+                    return result;
+                }
+
+                @Override public String toString()
+                {
+                    return "NodeFinderCriteria{" +
+                           "name='" + name + '\'' +
+                           '}';
+                }
+            };
+        }
+    }
+
     private static final class AccountFinderCriteriaFactory implements FinderCriteriaFactory {
         public FinderCriteria create( final Object item )
         {
@@ -0,0 +1,475 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.beans.PropertyDescriptor;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.PropertyUpdateDelta;
+import net.groovysips.jdiff.delta.ReferenceDelta;
+import net.groovysips.jdiff.delta.SimpleContainerDelta;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectBatchTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        DefaultDeltaBuilder ddb = new DefaultDeltaBuilder();
+
+        ddb.setFinderCriteriaFactory( new SimpleFinderCriteriaFactory() );
+
+        dcs = new DefaultDeltaCalculationService( ddb, new VisitingDeltaMerger() );
+    }
+
+    public void testDiffAllAndApplyAll()
+        throws Exception
+    {
+        List<DiffPair> pairs = pairs( 10 );
+
+        List<Delta> deltas = dcs.diffAll( pairs );
+
+        assertEquals( pairs.size(), deltas.size() );
+
+        List<Object> results = dcs.applyAll( originals( pairs ), deltas );
+
+        for( int i = 0; i < pairs.size(); i++ )
+        {
+            assertSame( pairs.get( i ).getOriginal(), results.get( i ) );
+            assertEquals( pairs.get( i ).getModified(), results.get( i ) );
+        }
+    }
+
+    public void testParallelDiffAllKeepsPairOrder()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        try
+        {
+            dcs.setExecutor( executor );
+            dcs.setBatchChunkSize( 3 );
+            dcs.setBatchWindow( 2 );
+
+            final List<DiffPair> pairs = pairs( 100 );
+            final List<Delta> deltas = new ArrayList<Delta>();
+
+            dcs.diffAll( pairs.iterator(), new DiffCallback()
+            {
+                public void delta( DiffPair pair, Delta delta )
+                {
+                    assertSame( pairs.get( deltas.size() ), pair );
+                    deltas.add( delta );
+                }
+            } );
+
+            assertEquals( pairs.size(), deltas.size() );
+
+            List<Object> results = dcs.applyAll( originals( pairs ), deltas );
+
+            for( int i = 0; i < pairs.size(); i++ )
+            {
+                assertEquals( pairs.get( i ).getModified(), results.get( i ) );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testParallelDiffAllRethrows()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+
+        try
+        {
+            dcs.setExecutor( executor );
+            dcs.setBatchChunkSize( 2 );
+
+            List<DiffPair> pairs = pairs( 10 );
+            pairs.set( 7, new DiffPair( new Unreadable(), new Unreadable() ) );
+
+            dcs.diffAll( pairs );
+
+            fail( "the unreadable pair has to fail the batch." );
+        }
+        catch( RuntimeException e )
+        {
+            assertTrue( e.getCause() instanceof IllegalStateException );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testSharedMergerAppliesFromManyThreads()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+
+        try
+        {
+            final List<DiffPair> pairs = pairs( 400 );
+            final List<Delta> deltas = dcs.diffAll( pairs );
+
+            List<Future<Object>> results = new ArrayList<Future<Object>>( pairs.size() );
+
+            for( int i = 0; i < pairs.size(); i++ )
+            {
+                final int index = i;
+
+                results.add( executor.submit( new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        return dcs.apply( pairs.get( index ).getOriginal(), deltas.get( index ) );
+                    }
+                } ) );
+            }
+
+            for( int i = 0; i < pairs.size(); i++ )
+            {
+                assertEquals( pairs.get( i ).getModified(), results.get( i ).get() );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testFailedMergeLeavesNothingBehind()
+        throws Exception
+    {
+        SimpleContainerDelta broken = new SimpleContainerDelta( null );
+        broken.addChild( new PropertyUpdateDelta( "name", "half way" ) );
+        broken.addChild( new ReferenceDelta( "spouse", 42 ) );
+
+        try
+        {
+            dcs.apply( new Person(), broken );
+            fail( "the reference to nothing has to fail the merge." );
+        }
+        catch( RuntimeException e )
+        {
+            // expected
+        }
+
+        DiffPair pair = pairs( 1 ).get( 0 );
+
+        Object result = dcs.apply( pair.getOriginal(), dcs.diff( pair.getOriginal(), pair.getModified() ) );
+
+        assertEquals( pair.getModified(), result );
+    }
+
+    public void testApplyToAllReportsFailuresPerTarget()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        try
+        {
+            dcs.setExecutor( executor );
+            dcs.setBatchChunkSize( 16 );
+            dcs.setBatchWindow( 3 );
+
+            Person orig = replica( 0 );
+            Person mod = replica( 0 );
+            mod.setYearsInSchool( 5 );
+            mod.getSpouse().setName( "renamed" );
+
+            Delta delta = dcs.diff( orig, mod );
+
+            final List<Object> targets = new ArrayList<Object>();
+            for( int i = 0; i < 500; i++ )
+            {
+                // a quote has no spouse to step into.
+                targets.add( i % 100 == 42 ? new Quote() : replica( i ) );
+            }
+
+            final List<Object> applied = new ArrayList<Object>();
+            final List<Object> failed = new ArrayList<Object>();
+
+            dcs.applyToAll( targets, delta, new ApplyCallback()
+            {
+                public void applied( Object target, Object result )
+                {
+                    assertSame( targets.get( applied.size() + failed.size() ), target );
+                    assertSame( target, result );
+                    applied.add( target );
+                }
+
+                public void failed( Object target, RuntimeException e )
+                {
+                    assertSame( targets.get( applied.size() + failed.size() ), target );
+                    failed.add( target );
+                }
+            } );
+
+            assertEquals( 495, applied.size() );
+            assertEquals( 5, failed.size() );
+
+            for( Object target : applied )
+            {
+                assertEquals( 5, ( (Person) target ).getYearsInSchool() );
+                assertEquals( "renamed", ( (Person) target ).getSpouse().getName() );
+            }
+
+            for( Object target : failed )
+            {
+                assertTrue( target instanceof Quote );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testOtherMergersStayOnTheCallingThread()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        try
+        {
+            final Thread caller = Thread.currentThread();
+            final List<Thread> strangers = new ArrayList<Thread>();
+
+            dcs.setMerger( new DeltaMerger()
+            {
+                private final DeltaMerger merger = new VisitingDeltaMerger();
+
+                public Object merge( Object object, Delta delta )
+                {
+                    if( Thread.currentThread() != caller )
+                    {
+                        synchronized( strangers )
+                        {
+                            strangers.add( Thread.currentThread() );
+                        }
+                    }
+
+                    return merger.merge( object, delta );
+                }
+            } );
+            dcs.setExecutor( executor );
+            dcs.setBatchChunkSize( 2 );
+
+            List<DiffPair> pairs = pairs( 20 );
+            List<Object> results = dcs.applyAll( originals( pairs ), dcs.diffAll( pairs ) );
+
+            for( int i = 0; i < pairs.size(); i++ )
+            {
+                assertEquals( pairs.get( i ).getModified(), results.get( i ) );
+            }
+
+            Person mod = replica( 0 );
+            mod.setSsn( "changed" );
+
+            List<Person> targets = new ArrayList<Person>();
+            for( int i = 0; i < 20; i++ )
+            {
+                targets.add( replica( i ) );
+            }
+
+            dcs.applyToAll( targets, dcs.diff( replica( 0 ), mod ) );
+
+            assertEquals( "changed", targets.get( 19 ).getSsn() );
+            assertTrue( strangers.toString(), strangers.isEmpty() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testOtherBuildersStayOnTheCallingThread()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        try
+        {
+            final Thread caller = Thread.currentThread();
+            final List<Thread> strangers = new ArrayList<Thread>();
+            final DefaultDeltaBuilder builder = new DefaultDeltaBuilder();
+
+            dcs.setDeltaBuilder( new DeltaBuilder()
+            {
+                public Delta build( Object original, Object modified )
+                {
+                    checkThread();
+                    return builder.build( original, modified );
+                }
+
+                public Delta build( Object original, Object modified, PropertyDescriptor propertyDescriptor )
+                {
+                    checkThread();
+                    return builder.build( original, modified, propertyDescriptor );
+                }
+
+                private void checkThread()
+                {
+                    if( Thread.currentThread() != caller )
+                    {
+                        synchronized( strangers )
+                        {
+                            strangers.add( Thread.currentThread() );
+                        }
+                    }
+                }
+            } );
+            dcs.setExecutor( executor );
+            dcs.setBatchChunkSize( 2 );
+
+            List<DiffPair> pairs = pairs( 20 );
+            List<Object> results = dcs.applyAll( originals( pairs ), dcs.diffAll( pairs ) );
+
+            for( int i = 0; i < pairs.size(); i++ )
+            {
+                assertEquals( pairs.get( i ).getModified(), results.get( i ) );
+            }
+
+            assertTrue( strangers.toString(), strangers.isEmpty() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testMergersAreNotKeptByTheirThreads()
+        throws Exception
+    {
+        Person mod = replica( 0 );
+        mod.setSsn( "changed" );
+
+        VisitingDeltaMerger merger = new VisitingDeltaMerger();
+
+        Person result = (Person) merger.merge( replica( 0 ), dcs.diff( replica( 0 ), mod ) );
+        assertEquals( "changed", result.getSsn() );
+
+        WeakReference<VisitingDeltaMerger> ref = new WeakReference<VisitingDeltaMerger>( merger );
+        merger = null;
+
+        for( int i = 0; i < 50 && ref.get() != null; i++ )
+        {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+
+        assertNull( ref.get() );
+    }
+
+    public void testApplyToAllWithoutExecutor()
+        throws Exception
+    {
+        Person mod = replica( 0 );
+        mod.setSsn( "changed" );
+
+        Delta delta = dcs.diff( replica( 0 ), mod );
+
+        List<Person> targets = new ArrayList<Person>();
+        for( int i = 0; i < 100; i++ )
+        {
+            targets.add( replica( i ) );
+        }
+
+        List<RuntimeException> failures = dcs.applyToAll( targets, delta );
+
+        assertEquals( targets.size(), failures.size() );
+        for( int i = 0; i < targets.size(); i++ )
+        {
+            assertNull( failures.get( i ) );
+            assertEquals( "changed", targets.get( i ).getSsn() );
+        }
+    }
+
+    // HELPERS
+    private Person replica( int i )
+    {
+        Person result = new Person(); result.setName( "replica " + i );
+        Person spouse = new Person(); spouse.setName( "spouse " + i );
+        result.setSpouse( spouse );
+        return result;
+    }
+
+    private List<DiffPair> pairs( int count )
+    {
+        List<DiffPair> result = new ArrayList<DiffPair>( count );
+
+        for( int i = 0; i < count; i++ )
+        {
+            Person orig = new Person(); orig.setName( "person " + i ); orig.setYearsInSchool( i );
+            Person mod = new Person(); mod.setName( "person " + i ); mod.setYearsInSchool( i + 1 );
+
+            if( i % 3 == 0 )
+            {
+                mod.setSsn( "ssn " + i );
+            }
+
+            result.add( new DiffPair( orig, mod ) );
+        }
+
+        return result;
+    }
+
+    private List<Object> originals( List<DiffPair> pairs )
+    {
+        List<Object> result = new ArrayList<Object>( pairs.size() );
+
+        for( DiffPair pair : pairs )
+        {
+            result.add( pair.getOriginal() );
+        }
+
+        return result;
+    }
+
+    public static class Unreadable
+    {
+        public String getValue()
+        {
+            throw new IllegalStateException( "not readable" );
+        }
+
+        public void setValue( String value )
+        {
+        }
+    }
+
+}
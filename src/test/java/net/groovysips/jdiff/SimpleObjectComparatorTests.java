@@ -0,0 +1,191 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.PropertyUpdateDelta;
+import net.groovysips.jdiff.delta.SimpleContainerDelta;
+import net.groovysips.jdiff.delta.ValueComparator;
+import net.groovysips.jdiff.delta.ValueComparators;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectComparatorTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaBuilder builder;
+
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        builder = new DefaultDeltaBuilder();
+        dcs = new DefaultDeltaCalculationService( builder, new VisitingDeltaMerger() );
+    }
+
+    public void testBigDecimalScaleIsAChangeByDefault()
+        throws Exception
+    {
+        Delta delta = dcs.diff( account( "10.0" ), account( "10.00" ) );
+
+        assertEquals( 1, ( (SimpleContainerDelta) delta ).children().size() );
+    }
+
+    public void testComparatorByValueType()
+        throws Exception
+    {
+        Map<Class, ValueComparator> comparators = new HashMap<Class, ValueComparator>();
+        comparators.put( Number.class, ValueComparators.COMPARABLE );
+        builder.setValueComparators( comparators );
+
+        assertSame( Delta.NULL, dcs.diff( account( "10.0" ), account( "10.00" ) ) );
+
+        Delta delta = dcs.diff( account( "10.0" ), account( "10.01" ) );
+
+        Account result = (Account) dcs.apply( account( "10.0" ), delta );
+        assertEquals( new BigDecimal( "10.01" ), result.getCurrentBalance() );
+    }
+
+    public void testComparatorByPropertyTurnsBitsOff()
+        throws Exception
+    {
+        Map<String, ValueComparator> quoteComparators = new HashMap<String, ValueComparator>();
+        quoteComparators.put( "price", ValueComparators.tolerance( 0.001 ) );
+        Map<Class, Map<String, ValueComparator>> comparators = new HashMap<Class, Map<String, ValueComparator>>();
+        comparators.put( Quote.class, quoteComparators );
+        builder.setPropertyComparators( comparators );
+
+        Quote orig = new Quote();
+        orig.setPrice( 101.25 );
+
+        Quote mod = new Quote();
+        mod.setPrice( 101.2504 );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+
+        mod.setPrice( 101.5 );
+        mod.setQuantity( 3 );
+
+        Delta delta = dcs.diff( orig, mod );
+
+        assertEquals( 2, ( (SimpleContainerDelta) delta ).children().size() );
+
+        Quote result = (Quote) dcs.apply( orig, delta );
+        assertEquals( 101.5, result.getPrice(), 0.0 );
+        assertEquals( 3, result.getQuantity() );
+    }
+
+    public void testPropertyComparatorWinsOverValueType()
+        throws Exception
+    {
+        Map<Class, ValueComparator> byType = new HashMap<Class, ValueComparator>();
+        byType.put( String.class, new ValueComparator()
+        {
+            public boolean areEqual( Object original, Object modified )
+            {
+                return ( (String) original ).equalsIgnoreCase( (String) modified );
+            }
+        } );
+        builder.setValueComparators( byType );
+
+        Map<Class, Map<String, ValueComparator>> byProperty = new HashMap<Class, Map<String, ValueComparator>>();
+        byProperty.put( Person.class, Collections.singletonMap( "ssn", ValueComparators.VALUE ) );
+        builder.setPropertyComparators( byProperty );
+
+        Person orig = new Person();
+        orig.setName( "alex" );
+        orig.setSsn( "abc" );
+
+        Person mod = new Person();
+        mod.setName( "ALEX" );
+        mod.setSsn( "ABC" );
+
+        Delta delta = dcs.diff( orig, mod );
+
+        assertEquals( 1, ( (SimpleContainerDelta) delta ).children().size() );
+        assertEquals( "ssn", ( (PropertyUpdateDelta) ( (SimpleContainerDelta) delta ).children().get( 0 ) ).getPropertyName() );
+    }
+
+    public void testBeansAreWalkedUnlessTheirTypeHasAComparator()
+        throws Exception
+    {
+        Person orig = new Person();
+        orig.setName( "alex" );
+        orig.setSpouse( new Person() );
+        orig.getSpouse().setName( "spouse" );
+
+        Person mod = new Person();
+        mod.setName( "alex" );
+        mod.setSpouse( new Person() );
+        mod.getSpouse().setName( "spouse" );
+        mod.getSpouse().setYearsInSchool( 5 );
+
+        assertNotSame( Delta.NULL, dcs.diff( orig, mod ) );
+
+        // the spouses are equal by name only.
+        builder.setValueComparators( Collections.<Class, ValueComparator>singletonMap( Person.class, new ValueComparator()
+        {
+            public boolean areEqual( Object original, Object modified )
+            {
+                return ( (Person) original ).getName().equals( ( (Person) modified ).getName() );
+            }
+        } ) );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+    }
+
+    public void testDateFastPath()
+        throws Exception
+    {
+        long now = System.currentTimeMillis();
+
+        Person orig = new Person();
+        orig.setDob( new Date( now ) );
+
+        Person mod = new Person();
+        mod.setDob( new Date( now ) );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+
+        mod.setDob( new Date( now + 1 ) );
+
+        Person result = (Person) dcs.apply( orig, dcs.diff( orig, mod ) );
+        assertEquals( now + 1, result.getDob().getTime() );
+    }
+
+    // HELPERS
+    private static Account account( String balance )
+    {
+        Account result = new Account();
+        result.setAccountNumber( "123" );
+        result.setCurrentBalance( new BigDecimal( balance ) );
+        return result;
+    }
+
+}
@@ -0,0 +1,277 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.ClearAllDelta;
+import net.groovysips.jdiff.delta.CollectionDelta;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.DeltaComposer;
+import net.groovysips.jdiff.delta.JavaBeanDelta;
+import net.groovysips.jdiff.delta.NewItemDelta;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectComposeTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaBuilder ddb;
+
+    private DeltaCalculationService dcs;
+
+    private DeltaComposer composer;
+
+    protected void setUp()
+    {
+        ddb = new DefaultDeltaBuilder();
+
+        ddb.setFinderCriteriaFactory( new SimpleFinderCriteriaFactory() );
+
+        VisitingDeltaMerger vdm = new VisitingDeltaMerger();
+
+        dcs = new DefaultDeltaCalculationService( ddb, vdm );
+
+        composer = new DeltaComposer( vdm );
+    }
+
+    public void testLaterUpdatesOverrideEarlierOnes()
+        throws Exception
+    {
+        List<Delta> history = new ArrayList<Delta>();
+
+        for( int i = 1; i <= 100; i++ )
+        {
+            history.add( dcs.diff( person( i - 1 ), person( i ) ) );
+        }
+
+        Delta delta = composer.composeAll( history );
+
+        // the name, the years in school and the spouse.
+        assertEquals( 3, ( (CompositeDelta) delta ).children().size() );
+
+        assertEquals( person( 100 ), dcs.apply( person( 0 ), delta ) );
+    }
+
+    public void testNewItemFoldsWithItsUpdates()
+        throws Exception
+    {
+        Person v0 = person( 0 );
+        Person v1 = withChildren( person( 0 ), "c0", "c1" );
+        Person v2 = withChildren( person( 0 ), "c0", "c1" );
+        ( (List<Person>) v2.getChildren() ).get( 1 ).setName( "renamed" );
+        Person v3 = withChildren( person( 0 ), "c0", "c1" );
+        ( (List<Person>) v3.getChildren() ).get( 1 ).setName( "renamed" );
+        ( (List<Person>) v3.getChildren() ).get( 1 ).setYearsInSchool( 3 );
+
+        withChildren( v0, "c0" );
+
+        Delta delta = composer.composeAll( Arrays.asList( dcs.diff( v0, v1 ), dcs.diff( v1, v2 ), dcs.diff( v2, v3 ) ) );
+
+        CollectionDelta children = (CollectionDelta) ( (CompositeDelta) delta ).children().get( 0 );
+        assertEquals( 1, children.children().size() );
+        assertTrue( children.children().get( 0 ) instanceof NewItemDelta );
+
+        Person result = (Person) dcs.apply( withChildren( person( 0 ), "c0" ), delta );
+
+        List<Person> resultChildren = (List<Person>) result.getChildren();
+        assertEquals( 2, resultChildren.size() );
+        assertEquals( "c1", resultChildren.get( 1 ).getSsn() );
+        assertEquals( "renamed", resultChildren.get( 1 ).getName() );
+        assertEquals( 3, resultChildren.get( 1 ).getYearsInSchool() );
+    }
+
+    public void testNewItemRemovedAgainLeavesNothing()
+        throws Exception
+    {
+        Map<Class, List<String>> prunedColls = new HashMap<Class, List<String>>();
+        prunedColls.put( Person.class, Arrays.asList( "children" ));
+        ddb.setPrunedCollection( prunedColls );
+
+        Person v0 = withChildren( person( 0 ), "c0", "c1" );
+        Person v1 = withChildren( person( 0 ), "c0", "c1", "c2" );
+        Person v2 = withChildren( person( 0 ), "c0" );
+
+        Delta delta = composer.compose( dcs.diff( v0, v1 ), dcs.diff( v1, v2 ) );
+
+        // only the removal of c1 is left.
+        CollectionDelta children = (CollectionDelta) ( (CompositeDelta) delta ).children().get( 0 );
+        assertEquals( 1, children.children().size() );
+
+        Person result = (Person) dcs.apply( withChildren( person( 0 ), "c0", "c1" ), delta );
+
+        assertEquals( 1, result.getChildren().size() );
+        assertEquals( "c0", result.getChildren().iterator().next().getSsn() );
+    }
+
+    public void testClearAllAbsorbsEarlierChanges()
+        throws Exception
+    {
+        Person v0 = withChildren( person( 0 ), "c0" );
+        Person v1 = withChildren( person( 0 ), "c0", "c1" );
+        ( (List<Person>) v1.getChildren() ).get( 0 ).setName( "renamed" );
+        Person v2 = withChildren( person( 0 ), "c2" );
+
+        Delta first = dcs.diff( v0, v1 );
+
+        Map<Class, List<String>> refilledColls = new HashMap<Class, List<String>>();
+        refilledColls.put( Person.class, Arrays.asList( "children" ));
+        ddb.setRefilledCollection( refilledColls );
+
+        Delta delta = composer.compose( first, dcs.diff( v1, v2 ) );
+
+        CollectionDelta children = (CollectionDelta) ( (CompositeDelta) delta ).children().get( 0 );
+        assertEquals( 2, children.children().size() );
+        assertTrue( children.children().get( 0 ) instanceof ClearAllDelta );
+
+        Person result = (Person) dcs.apply( withChildren( person( 0 ), "c0" ), delta );
+
+        assertEquals( 1, result.getChildren().size() );
+        assertEquals( "c2", result.getChildren().iterator().next().getSsn() );
+    }
+
+    public void testComposedNewGraph()
+        throws Exception
+    {
+        Delta delta = composer.compose( dcs.diff( null, person( 1 ) ), dcs.diff( person( 1 ), person( 2 ) ) );
+
+        assertTrue( delta instanceof JavaBeanDelta );
+        assertEquals( person( 2 ), dcs.apply( null, delta ) );
+
+        // a delta that does not depend on its target wins.
+        assertSame( Delta.NULL, composer.compose( Delta.NULL, Delta.NULL ) );
+        delta = composer.compose( dcs.diff( person( 1 ), person( 2 ) ), dcs.diff( null, person( 3 ) ) );
+        assertEquals( person( 3 ), dcs.apply( person( 1 ), delta ) );
+    }
+
+    public void testLongHistoryAppliesOnce()
+        throws Exception
+    {
+        List<Delta> history = new ArrayList<Delta>();
+
+        Person previous = history( 0 );
+        for( int i = 1; i <= 1000; i++ )
+        {
+            Person current = history( i );
+            history.add( dcs.diff( previous, current ) );
+            previous = current;
+        }
+
+        Delta delta = composer.composeAll( history );
+
+        Person result = (Person) dcs.apply( history( 0 ), delta );
+        Person expected = history( 1000 );
+
+        assertEquals( expected, result );
+        assertEquals( expected.getChildren().size(), result.getChildren().size() );
+        for( int i = 0; i < expected.getChildren().size(); i++ )
+        {
+            Person expectedChild = ( (List<Person>) expected.getChildren() ).get( i );
+            Person resultChild = ( (List<Person>) result.getChildren() ).get( i );
+
+            assertEquals( expectedChild.getSsn(), resultChild.getSsn() );
+            assertEquals( expectedChild.getName(), resultChild.getName() );
+        }
+    }
+
+    public void testDeltaReferringToItsObjectsIsTakenOver()
+        throws Exception
+    {
+        Node v0 = tree( 2 );
+        Node v1 = tree( 3 );
+        v1.getChildren().get( 1 ).setPeer( v1 );
+        Node v2 = tree( 3 );
+        v2.getChildren().get( 1 ).setPeer( v2 );
+        v2.getChildren().get( 2 ).setPeer( v2.getChildren().get( 0 ) );
+
+        Delta delta = composer.compose( dcs.diff( v0, v1 ), dcs.diff( v1, v2 ) );
+
+        Node result = (Node) dcs.apply( tree( 2 ), delta );
+
+        assertEquals( 3, result.getChildren().size() );
+        assertSame( result, result.getChildren().get( 1 ).getPeer() );
+        assertEquals( "child 0", result.getChildren().get( 2 ).getPeer().getName() );
+        assertSame( result, result.getChildren().get( 2 ).getPeer().getParent() );
+    }
+
+    // HELPERS
+    private Person person( int version )
+    {
+        Person result = new Person(); result.setSsn( "123" );
+        result.setName( "name " + version );
+        result.setYearsInSchool( version );
+
+        Person spouse = new Person(); spouse.setSsn( "456" ); spouse.setName( "spouse " + version );
+        result.setSpouse( spouse );
+
+        return result;
+    }
+
+    private Person withChildren( Person person, String... ssns )
+    {
+        person.setChildren( new ArrayList<Person>() );
+
+        for( String ssn : ssns )
+        {
+            Person child = new Person(); child.setSsn( ssn ); child.setName( "child " + ssn );
+            person.getChildren().add( child );
+        }
+
+        return person;
+    }
+
+    /**
+     * Every tenth version has a new child, renamed in the version after it.
+     */
+    private Person history( int version )
+    {
+        Person result = person( version );
+        result.setChildren( new ArrayList<Person>() );
+
+        for( int i = 10; i <= version; i += 10 )
+        {
+            Person child = new Person(); child.setSsn( "c" + i ); child.setName( i < version ? "renamed " + i : "child " + i );
+            result.getChildren().add( child );
+        }
+
+        return result;
+    }
+
+    private Node tree( int children )
+    {
+        Node result = new Node(); result.setName( "root" ); result.setChildren( new ArrayList<Node>() );
+
+        for( int i = 0; i < children; i++ )
+        {
+            Node child = new Node(); child.setName( "child " + i ); child.setParent( result );
+            result.getChildren().add( child );
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,214 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.DeltaProgram;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectCopyOnWriteTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaBuilder ddb;
+
+    private VisitingDeltaMerger vdm;
+
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        ddb = new DefaultDeltaBuilder();
+
+        ddb.setFinderCriteriaFactory( new SimpleFinderCriteriaFactory() );
+
+        vdm = new VisitingDeltaMerger();
+
+        dcs = new DefaultDeltaCalculationService( ddb, vdm );
+    }
+
+    public void testMergeCopySharesUntouchedParts()
+        throws Exception
+    {
+        Person orig = person( "100" );
+
+        Person mod = person( "100" );
+        mod.getSpouse().setName( "renamed" );
+        mod.getAccounts().get( 1 ).setCurrentBalance( new BigDecimal( "200" ) );
+
+        Person result = (Person) vdm.mergeCopy( orig, dcs.diff( orig, mod ) );
+
+        assertNotSame( orig, result );
+        assertEquals( "renamed", result.getSpouse().getName() );
+        assertEquals( new BigDecimal( "200" ), result.getAccounts().get( 1 ).getCurrentBalance() );
+
+        // the original is as it was.
+        assertEquals( "spouse", orig.getSpouse().getName() );
+        assertEquals( new BigDecimal( "100" ), orig.getAccounts().get( 1 ).getCurrentBalance() );
+
+        // only the changed path is copied.
+        assertNotSame( orig.getSpouse(), result.getSpouse() );
+        assertNotSame( orig.getAccounts(), result.getAccounts() );
+        assertNotSame( orig.getAccounts().get( 1 ), result.getAccounts().get( 1 ) );
+        assertSame( orig.getAccounts().get( 0 ), result.getAccounts().get( 0 ) );
+        assertSame( orig.getFirstChild(), result.getFirstChild() );
+        assertSame( orig.getAttributes(), result.getAttributes() );
+        assertSame( orig.getSamples(), result.getSamples() );
+    }
+
+    public void testMergeCopyOfMapsAndArrays()
+        throws Exception
+    {
+        Person orig = person( "100" );
+
+        Person mod = person( "100" );
+        mod.getAttributes().put( "version", 2 );
+        mod.getSamples()[ 0 ] = 5;
+
+        Person result = (Person) vdm.mergeCopy( orig, dcs.diff( orig, mod ) );
+
+        assertEquals( Integer.valueOf( 2 ), result.getAttributes().get( "version" ) );
+        assertTrue( Arrays.equals( new double[] { 5, 2 }, result.getSamples() ) );
+
+        assertEquals( Integer.valueOf( 1 ), orig.getAttributes().get( "version" ) );
+        assertTrue( Arrays.equals( new double[] { 1, 2 }, orig.getSamples() ) );
+        assertSame( orig.getAccounts(), result.getAccounts() );
+    }
+
+    public void testMergeCopyRemovesFromCopiedCollection()
+        throws Exception
+    {
+        Map<Class, List<String>> prunedColls = new HashMap<Class, List<String>>();
+        prunedColls.put( Person.class, Arrays.asList( "children" ));
+        ddb.setPrunedCollection( prunedColls );
+
+        Person orig = person( "100" );
+
+        Person mod = person( "100" );
+        ( (List<Person>) mod.getChildren() ).remove( 1 );
+        ( (List<Person>) mod.getChildren() ).get( 1 ).setName( "renamed" );
+
+        Person result = (Person) vdm.mergeCopy( orig, dcs.diff( orig, mod ) );
+
+        List<Person> children = (List<Person>) result.getChildren();
+        List<Person> origChildren = (List<Person>) orig.getChildren();
+
+        assertEquals( 3, origChildren.size() );
+        assertEquals( "child 2", origChildren.get( 2 ).getName() );
+
+        assertEquals( 2, children.size() );
+        assertSame( origChildren.get( 0 ), children.get( 0 ) );
+        assertNotSame( origChildren.get( 2 ), children.get( 1 ) );
+        assertEquals( "c2", children.get( 1 ).getSsn() );
+        assertEquals( "renamed", children.get( 1 ).getName() );
+    }
+
+    public void testProgramAppliesCopiesOfSharedOriginal()
+        throws Exception
+    {
+        Person shared = person( "100" );
+
+        Person mod = person( "100" );
+        mod.getSpouse().setYearsInSchool( 7 );
+        mod.getAccounts().get( 0 ).setCurrentBalance( new BigDecimal( "7" ) );
+
+        DeltaProgram program = vdm.compile( dcs.diff( shared, mod ) );
+
+        for( int i = 0; i < 10; i++ )
+        {
+            Person result = (Person) program.applyCopy( shared );
+
+            assertNotSame( shared, result );
+            assertEquals( 7, result.getSpouse().getYearsInSchool() );
+            assertEquals( new BigDecimal( "7" ), result.getAccounts().get( 0 ).getCurrentBalance() );
+            assertSame( shared.getAccounts().get( 1 ), result.getAccounts().get( 1 ) );
+        }
+
+        assertEquals( 0, shared.getSpouse().getYearsInSchool() );
+        assertEquals( new BigDecimal( "100" ), shared.getAccounts().get( 0 ).getCurrentBalance() );
+    }
+
+    public void testCopiesOfTrackedBeansGetTheirOwnTracker()
+        throws Exception
+    {
+        SimpleObjectDirtyTrackingTests.TrackedNode orig = new SimpleObjectDirtyTrackingTests.TrackedNode( "root" );
+        orig.setPeer( new SimpleObjectDirtyTrackingTests.TrackedNode( "peer" ) );
+
+        SimpleObjectDirtyTrackingTests.TrackedNode mod = new SimpleObjectDirtyTrackingTests.TrackedNode( "root" );
+        mod.setPeer( new SimpleObjectDirtyTrackingTests.TrackedNode( "peer" ) );
+        mod.getPeer().setFlag( "flag" );
+
+        orig.getPeer().dirtyTracker().clear();
+
+        SimpleObjectDirtyTrackingTests.TrackedNode result =
+            (SimpleObjectDirtyTrackingTests.TrackedNode) vdm.mergeCopy( orig, dcs.diff( orig, mod ) );
+
+        assertNotSame( orig.getPeer(), result.getPeer() );
+        assertEquals( "peer", result.getPeer().getName() );
+        assertEquals( "flag", result.getPeer().getFlag() );
+
+        assertNotSame( orig.getPeer().dirtyTracker(), result.getPeer().dirtyTracker() );
+        assertTrue( result.getPeer().dirtyTracker().isDirty( "flag" ) );
+        assertTrue( orig.getPeer().dirtyTracker().isClean() );
+        assertNull( orig.getPeer().getFlag() );
+    }
+
+    // HELPERS
+    private Person person( String balance )
+    {
+        Person result = new Person(); result.setSsn( "123" ); result.setName( "alex" );
+        result.setSamples( new double[] { 1, 2 } );
+        result.setAttributes( new HashMap<String, Object>() );
+        result.getAttributes().put( "version", 1 );
+
+        Person spouse = new Person(); spouse.setSsn( "456" ); spouse.setName( "spouse" );
+        result.setSpouse( spouse );
+
+        Person firstChild = new Person(); firstChild.setSsn( "789" ); firstChild.setName( "first" );
+        result.setFirstChild( firstChild );
+
+        result.setAccounts( new ArrayList<Account>() );
+        for( String number : new String[] { "0", "1" } )
+        {
+            Account account = new Account(); account.setAccountNumber( number ); account.setCurrentBalance( new BigDecimal( balance ) );
+            result.getAccounts().add( account );
+        }
+
+        result.setChildren( new ArrayList<Person>() );
+        for( int i = 0; i < 3; i++ )
+        {
+            Person child = new Person(); child.setSsn( "c" + i ); child.setName( "child " + i );
+            result.getChildren().add( child );
+        }
+
+        return result;
+    }
+
+}
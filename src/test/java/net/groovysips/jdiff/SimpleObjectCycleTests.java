@@ -0,0 +1,223 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.DeltaPrinter;
+import net.groovysips.jdiff.delta.Fingerprinted;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectCycleTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaBuilder ddb;
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        ddb = new DefaultDeltaBuilder();
+
+        ddb.setFinderCriteriaFactory( new SimpleFinderCriteriaFactory() );
+
+        dcs = new DefaultDeltaCalculationService( ddb, new VisitingDeltaMerger() );
+    }
+
+    public void testBackReferencesToParent()
+        throws Exception
+    {
+        Node orig = tree( "root", 2 );
+
+        Node mod = tree( "root", 3 );
+        mod.getChildren().get( 1 ).setName( "child 1" );
+        mod.getChildren().get( 1 ).setPeer( mod );
+
+        Delta delta = dcs.diff( orig, mod );
+
+        delta.visit( new DeltaPrinter( System.err ) );
+
+        Node result = (Node) dcs.apply( orig, delta );
+
+        assertSame( orig, result );
+        assertEquals( 3, result.getChildren().size() );
+        for( Node child : result.getChildren() )
+        {
+            assertSame( result, child.getParent() );
+        }
+        assertSame( result, result.getChildren().get( 1 ).getPeer() );
+    }
+
+    public void testReferenceToUnchangedBeanBeingDiffed()
+        throws Exception
+    {
+        Node orig = tree( "root", 2 );
+
+        Node mod = tree( "root", 2 );
+        mod.getChildren().get( 1 ).setPeer( mod );
+
+        Delta delta = dcs.diff( orig, mod );
+
+        Node result = (Node) dcs.apply( orig, delta );
+
+        assertSame( orig, result );
+        assertEquals( "root", result.getName() );
+        assertSame( result, result.getChildren().get( 1 ).getPeer() );
+        assertNull( result.getChildren().get( 0 ).getPeer() );
+    }
+
+    public void testNewCyclicGraph()
+        throws Exception
+    {
+        Node mod = tree( "root", 2 );
+        mod.setPeer( mod.getChildren().get( 0 ) );
+        mod.getChildren().get( 1 ).setPeer( mod.getChildren().get( 0 ) );
+
+        Delta delta = dcs.diff( null, mod );
+
+        delta.visit( new DeltaPrinter( System.err ) );
+
+        Node result = (Node) dcs.apply( null, delta );
+
+        assertEquals( "root", result.getName() );
+        assertSame( result, result.getChildren().get( 0 ).getParent() );
+        assertSame( result.getChildren().get( 0 ), result.getPeer() );
+        assertSame( result.getChildren().get( 0 ), result.getChildren().get( 1 ).getPeer() );
+    }
+
+    public void testUnchangedCyclicGraphHasNoDelta()
+        throws Exception
+    {
+        Node orig = tree( "root", 2 );
+        orig.setPeer( orig );
+
+        Node mod = tree( "root", 2 );
+        mod.setPeer( mod );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+    }
+
+    public void testBackReferencesFromParallelChunks()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        try
+        {
+            ddb.setExecutor( executor );
+            ddb.setParallelThreshold( 10 );
+            ddb.setParallelChunkSize( 16 );
+
+            Node orig = tree( "root", 100 );
+            Node mod = tree( "root", 200 );
+
+            Node result = (Node) dcs.apply( orig, dcs.diff( orig, mod ) );
+
+            assertEquals( 200, result.getChildren().size() );
+            for( Node child : result.getChildren() )
+            {
+                assertSame( result, child.getParent() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testStructuralHashingOfCyclicGraphs()
+        throws Exception
+    {
+        ddb.setStructuralHashing( true );
+
+        Node orig = tree( "root", 50 );
+        orig.setPeer( orig.getChildren().get( 10 ) );
+        orig.getChildren().get( 10 ).setPeer( orig );
+
+        Node mod = tree( "root", 50 );
+        mod.setPeer( mod.getChildren().get( 10 ) );
+        mod.getChildren().get( 10 ).setPeer( mod );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+
+        mod.getChildren().get( 42 ).setName( "changed" );
+
+        Node result = (Node) dcs.apply( orig, dcs.diff( orig, mod ) );
+
+        assertEquals( 51, result.getChildren().size() );
+        assertEquals( "changed", result.getChildren().get( 50 ).getName() );
+    }
+
+    public void testStructuralHashingUsesBeanFingerprints()
+        throws Exception
+    {
+        Node orig = tree( "root", 0 );
+        orig.setPeer( new FrozenNode( "frozen" ) );
+
+        Node mod = tree( "root", 0 );
+        mod.setPeer( new FrozenNode( "thawed" ) );
+
+        assertNotSame( Delta.NULL, dcs.diff( orig, mod ) );
+
+        ddb.setStructuralHashing( true );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+    }
+
+    public static class FrozenNode extends Node implements Fingerprinted
+    {
+
+        public FrozenNode()
+        {
+        }
+
+        public FrozenNode( String name )
+        {
+            setName( name );
+        }
+
+        public long fingerprint()
+        {
+            return 7;
+        }
+    }
+
+    // HELPERS
+    private Node tree( String name, int children )
+    {
+        Node result = new Node(); result.setName( name ); result.setChildren( new ArrayList<Node>() );
+
+        for( int i = 0; i < children; i++ )
+        {
+            Node child = new Node(); child.setName( "child " + i ); child.setParent( result );
+            result.getChildren().add( child );
+        }
+
+        return result;
+    }
+
+}
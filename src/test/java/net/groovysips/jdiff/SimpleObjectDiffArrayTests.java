@@ -0,0 +1,124 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.ArrayDelta;
+import net.groovysips.jdiff.delta.ArrayRangeDelta;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.DeltaPrinter;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectDiffArrayTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        dcs = new DefaultDeltaCalculationService( new DefaultDeltaBuilder(), new VisitingDeltaMerger() );
+    }
+
+    public void testChangedRangesAreCopiedInPlace()
+        throws Exception
+    {
+        Person orig = person( samples( 10000 ) );
+        double[] origSamples = orig.getSamples();
+
+        Person mod = person( samples( 10000 ) );
+        mod.getSamples()[ 5 ] = -1;
+        mod.getSamples()[ 7 ] = -2;
+        mod.getSamples()[ 9000 ] = -3;
+
+        Delta delta = dcs.diff( orig, mod );
+
+        delta.visit( new DeltaPrinter( System.err ) );
+
+        ArrayDelta samples = (ArrayDelta) ( (CompositeDelta) delta ).children().get( 0 );
+        assertEquals( 2, samples.children().size() );
+        assertEquals( 3, ( (ArrayRangeDelta) samples.children().get( 0 ) ).getLength() );
+        assertTrue( ( (ArrayRangeDelta) samples.children().get( 0 ) ).getSlice() instanceof double[] );
+
+        Person result = (Person) dcs.apply( orig, delta );
+
+        assertSame( origSamples, result.getSamples() );
+        assertTrue( Arrays.equals( mod.getSamples(), result.getSamples() ) );
+    }
+
+    public void testArraysGrowAndShrink()
+        throws Exception
+    {
+        Person orig = person( samples( 10 ) );
+
+        Person mod = person( samples( 15 ) );
+
+        Person result = (Person) dcs.apply( orig, dcs.diff( orig, mod ) );
+        assertTrue( Arrays.equals( mod.getSamples(), result.getSamples() ) );
+
+        mod = person( samples( 3 ) );
+
+        result = (Person) dcs.apply( result, dcs.diff( result, mod ) );
+        assertTrue( Arrays.equals( mod.getSamples(), result.getSamples() ) );
+    }
+
+    public void testObjectArrays()
+        throws Exception
+    {
+        Person orig = person( null );
+
+        Person mod = person( null );
+        mod.setTitles( new String[]{ "Dr", "Prof" } );
+
+        Person result = (Person) dcs.apply( orig, dcs.diff( orig, mod ) );
+        assertTrue( Arrays.equals( mod.getTitles(), result.getTitles() ) );
+
+        mod.setTitles( new String[]{ "Dr", null } );
+
+        result = (Person) dcs.apply( result, dcs.diff( result, mod ) );
+        assertTrue( Arrays.equals( mod.getTitles(), result.getTitles() ) );
+
+        assertSame( Delta.NULL, dcs.diff( result, mod ) );
+    }
+
+    // HELPERS
+    private Person person( double[] samples )
+    {
+        Person result = new Person(); result.setSsn( "123" ); result.setSamples( samples );
+        return result;
+    }
+
+    private double[] samples( int count )
+    {
+        double[] result = new double[count];
+
+        for( int i = 0; i < count; i++ )
+        {
+            result[ i ] = i * 0.5;
+        }
+
+        return result;
+    }
+
+}
@@ -20,9 +20,13 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Arrays;
 import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.CollectionDelta;
 import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
 import net.groovysips.jdiff.delta.DeltaPrinter;
+import net.groovysips.jdiff.delta.DeltaProgram;
 import net.groovysips.jdiff.delta.VisitingDeltaMerger;
 
 /**
@@ -158,6 +162,154 @@ public class SimpleObjectDiffCollectionTests extends TestCase
         }
     }
 
+    public void testOverlayOfLargeCollectionThroughKeyIndex()
+    {
+        Person orig = new Person(); orig.setSsn( "123" ); orig.setChildren( new ArrayList<Person>() );
+        Person mod = new Person(); mod.setSsn( "123" ); mod.setChildren( new ArrayList<Person>() );
+
+        for( int i = 0; i < 5000; i++ )
+        {
+            Person origChild = new Person(); origChild.setSsn( "c" + i ); origChild.setName( "child " + i );
+            orig.getChildren().add( origChild );
+
+            Person modChild = new Person(); modChild.setSsn( "c" + i ); modChild.setName( "child " + i );
+            mod.getChildren().add( modChild );
+        }
+
+        ( (List<Person>) mod.getChildren() ).get( 100 ).setName( "renamed" );
+        Person newChild = new Person(); newChild.setSsn( "new" ); newChild.setName( "new child" );
+        mod.getChildren().add( newChild );
+
+        Delta delta = dcs.diff( orig, mod );
+
+        Person result = (Person) dcs.apply( orig, delta );
+
+        assertEquals( 5001, result.getChildren().size() );
+        assertEquals( "renamed", ( (List<Person>) result.getChildren() ).get( 100 ).getName() );
+        assertEquals( "new child", ( (List<Person>) result.getChildren() ).get( 5000 ).getName() );
+    }
+
+    public void testParallelOverlayKeepsItemOrder()
+    {
+        Person orig = new Person(); orig.setSsn( "123" ); orig.setChildren( new ArrayList<Person>() );
+        Person mod = new Person(); mod.setSsn( "123" ); mod.setChildren( new ArrayList<Person>() );
+
+        for( int i = 0; i < 2000; i++ )
+        {
+            Person origChild = new Person(); origChild.setSsn( "c" + i ); origChild.setName( "child " + i );
+            orig.getChildren().add( origChild );
+
+            // every third child is renamed, every seventh is new.
+            Person modChild = new Person(); modChild.setSsn( i % 7 == 0 ? "n" + i : "c" + i );
+            modChild.setName( i % 3 == 0 ? "renamed " + i : "child " + i );
+            mod.getChildren().add( modChild );
+        }
+
+        CollectionDelta sequential = (CollectionDelta) ( (CompositeDelta) dcs.diff( orig, mod ) ).children().get( 0 );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        try
+        {
+            ddb.setExecutor( executor );
+            ddb.setParallelThreshold( 100 );
+            ddb.setParallelChunkSize( 64 );
+
+            Delta delta = dcs.diff( orig, mod );
+
+            CollectionDelta parallel = (CollectionDelta) ( (CompositeDelta) delta ).children().get( 0 );
+
+            assertEquals( sequential.children().size(), parallel.children().size() );
+            for( int i = 0; i < sequential.children().size(); i++ )
+            {
+                assertEquals( sequential.children().get( i ).getClass(), parallel.children().get( i ).getClass() );
+            }
+
+            Person result = (Person) dcs.apply( orig, delta );
+
+            List<Person> children = (List<Person>) result.getChildren();
+            assertEquals( 2000 + 2000 / 7 + 1, children.size() );
+            assertEquals( "renamed 3", children.get( 3 ).getName() );
+            assertEquals( "renamed 0", children.get( 2000 ).getName() );
+            assertEquals( "n7", children.get( 2001 ).getSsn() );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testRemovalFromPrunedCollection()
+    {
+        Map<Class, List<String>> prunedColls = new HashMap<Class, List<String>>();
+        prunedColls.put( Person.class, Arrays.asList( "children" ));
+        ddb.setPrunedCollection( prunedColls );
+
+        Person orig = new Person(); orig.setSsn( "123" ); orig.setChildren( new ArrayList<Person>() );
+        Person mod = new Person(); mod.setSsn( "123" ); mod.setChildren( new ArrayList<Person>() );
+
+        for( String ssn : new String[] { "0", "1", "2" } )
+        {
+            Person child = new Person(); child.setSsn( ssn ); child.setName( "child " + ssn );
+            orig.getChildren().add( child );
+        }
+
+        for( String ssn : new String[] { "0", "2", "3" } )
+        {
+            Person child = new Person(); child.setSsn( ssn ); child.setName( "child " + ssn );
+            mod.getChildren().add( child );
+        }
+
+        Delta delta = dcs.diff( orig, mod );
+
+        delta.visit( new DeltaPrinter( System.err ) );
+
+        Person result = (Person) dcs.apply( orig, delta );
+
+        assertEquals( 3, result.getChildren().size() );
+
+        for( Person child : result.getChildren() )
+        {
+            assertFalse( "1".equals( child.getSsn() ) );
+        }
+    }
+
+    public void testUpdatesAndRemovalsOfLargePrunedCollection()
+    {
+        Map<Class, List<String>> prunedColls = new HashMap<Class, List<String>>();
+        prunedColls.put( Person.class, Arrays.asList( "children" ));
+        ddb.setPrunedCollection( prunedColls );
+
+        Person mod = new Person(); mod.setSsn( "123" ); mod.setChildren( new ArrayList<Person>() );
+
+        for( int i = 0; i < 3000; i++ )
+        {
+            // every other child is gone, every fifth is renamed.
+            if( i % 2 == 1 )
+            {
+                Person modChild = new Person(); modChild.setSsn( "c" + i ); modChild.setName( i % 5 == 0 ? "renamed " + i : "child " + i );
+                mod.getChildren().add( modChild );
+            }
+        }
+
+        Delta delta = dcs.diff( personWithChildren( 3000 ), mod );
+
+        DeltaProgram program = ( (VisitingDeltaMerger) dm ).compile( delta );
+
+        for( Person result : new Person[] { (Person) dcs.apply( personWithChildren( 3000 ), delta ), (Person) program.apply( personWithChildren( 3000 ) ) } )
+        {
+            List<Person> children = (List<Person>) result.getChildren();
+            assertEquals( 1500, children.size() );
+
+            for( int i = 0; i < children.size(); i++ )
+            {
+                int number = 2 * i + 1;
+                assertEquals( "c" + number, children.get( i ).getSsn() );
+                assertEquals( ( number % 5 == 0 ? "renamed " : "child " ) + number, children.get( i ).getName() );
+            }
+        }
+    }
+
     public void testAdditionOfPrimiteves()
     {
         Account mod = new Account();
@@ -176,5 +328,18 @@ public class SimpleObjectDiffCollectionTests extends TestCase
         assertEquals( mod.getAliases().size(), result.getAliases().size() );
     }
 
+    // HELPERS
+    private static Person personWithChildren( int count )
+    {
+        Person result = new Person(); result.setSsn( "123" ); result.setChildren( new ArrayList<Person>() );
+
+        for( int i = 0; i < count; i++ )
+        {
+            Person child = new Person(); child.setSsn( "c" + i ); child.setName( "child " + i );
+            result.getChildren().add( child );
+        }
+
+        return result;
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,177 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.CollectionDelta;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.DeltaPrinter;
+import net.groovysips.jdiff.delta.InsertItemAtDelta;
+import net.groovysips.jdiff.delta.MoveItemDelta;
+import net.groovysips.jdiff.delta.RemoveItemAtDelta;
+import net.groovysips.jdiff.delta.UpdateItemAtDelta;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectDiffListTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaBuilder ddb;
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        ddb = new DefaultDeltaBuilder();
+
+        ddb.setFinderCriteriaFactory( new SimpleFinderCriteriaFactory() );
+
+        Map<Class, List<String>> orderedColls = new HashMap<Class, List<String>>();
+        orderedColls.put( Person.class, Arrays.asList( "children" ));
+        ddb.setOrderedCollection( orderedColls );
+
+        dcs = new DefaultDeltaCalculationService( ddb, new VisitingDeltaMerger( new SimpleItemAppenderFactory() ) );
+    }
+
+    public void testMoveInsertAndRemoveByPosition()
+        throws Exception
+    {
+        Person orig = parent( "a", "b", "c", "d", "e" );
+
+        Person mod = parent( "e", "a", "x", "c", "d" );
+        child( mod, 3 ).setName( "renamed" );
+
+        Delta delta = dcs.diff( orig, mod );
+
+        delta.visit( new DeltaPrinter( System.err ) );
+
+        CollectionDelta children = (CollectionDelta) ( (CompositeDelta) delta ).children().get( 0 );
+
+        assertEquals( 1, count( children, MoveItemDelta.class ) );
+        assertEquals( 1, count( children, InsertItemAtDelta.class ) );
+        assertEquals( 1, count( children, RemoveItemAtDelta.class ) );
+        assertEquals( 1, count( children, UpdateItemAtDelta.class ) );
+
+        Person result = (Person) dcs.apply( orig, delta );
+
+        assertSameChildren( mod, result );
+        assertEquals( "renamed", child( result, 3 ).getName() );
+    }
+
+    public void testUnchangedListHasNoDelta()
+        throws Exception
+    {
+        assertSame( Delta.NULL, dcs.diff( parent( "a", "b", "c" ), parent( "a", "b", "c" ) ) );
+    }
+
+    public void testRandomEditsReproduceModifiedList()
+        throws Exception
+    {
+        Random random = new Random( 20090613L );
+
+        for( int round = 0; round < 100; round++ )
+        {
+            List<String> ssns = new ArrayList<String>();
+            int size = random.nextInt( 12 );
+            for( int i = 0; i < size; i++ )
+            {
+                ssns.add( "s" + random.nextInt( 16 ) );
+            }
+
+            List<String> modSsns = new ArrayList<String>( ssns );
+            int edits = random.nextInt( 6 );
+            for( int i = 0; i < edits; i++ )
+            {
+                int op = random.nextInt( 3 );
+                if( op == 0 || modSsns.isEmpty() )
+                {
+                    modSsns.add( random.nextInt( modSsns.size() + 1 ), "s" + random.nextInt( 16 ) );
+                }
+                else if( op == 1 )
+                {
+                    modSsns.remove( random.nextInt( modSsns.size() ) );
+                }
+                else
+                {
+                    modSsns.add( random.nextInt( modSsns.size() ), modSsns.remove( random.nextInt( modSsns.size() ) ) );
+                }
+            }
+
+            Person orig = parent( ssns.toArray( new String[ssns.size()] ) );
+            Person mod = parent( modSsns.toArray( new String[modSsns.size()] ) );
+
+            Delta delta = dcs.diff( orig, mod );
+
+            // no edits survived, the lists were the same to begin with.
+            Person result = delta == Delta.NULL ? orig : (Person) dcs.apply( orig, delta );
+
+            assertSameChildren( mod, result );
+        }
+    }
+
+    // HELPERS
+    private Person parent( String... ssns )
+    {
+        Person result = new Person(); result.setSsn( "parent" ); result.setChildren( new ArrayList<Person>() );
+
+        for( String ssn : ssns )
+        {
+            Person kid = new Person(); kid.setSsn( ssn ); kid.setName( "kid " + ssn );
+            result.getChildren().add( kid );
+        }
+
+        return result;
+    }
+
+    private Person child( Person parent, int index )
+    {
+        return ( (List<Person>) parent.getChildren() ).get( index );
+    }
+
+    private int count( CompositeDelta composite, Class deltaClass )
+    {
+        int result = 0;
+
+        for( Object child : composite.children() )
+        {
+            if( deltaClass.isInstance( child ) )
+            {
+                result++;
+            }
+        }
+
+        return result;
+    }
+
+    private void assertSameChildren( Person expected, Person actual )
+    {
+        assertNotNull( actual );
+        assertEquals( expected.getChildren(), actual.getChildren() );
+    }
+
+}
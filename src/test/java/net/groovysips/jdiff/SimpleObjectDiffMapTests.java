@@ -0,0 +1,165 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.DeltaPrinter;
+import net.groovysips.jdiff.delta.MapDelta;
+import net.groovysips.jdiff.delta.PutEntryDelta;
+import net.groovysips.jdiff.delta.RemoveEntryDelta;
+import net.groovysips.jdiff.delta.UpdateEntryDelta;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectDiffMapTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        dcs = new DefaultDeltaCalculationService( new DefaultDeltaBuilder(), new VisitingDeltaMerger() );
+    }
+
+    public void testPutUpdateAndRemoveByKey()
+        throws Exception
+    {
+        Person orig = person();
+        orig.getAttributes().put( "height", 180 );
+        orig.getAttributes().put( "eyes", "brown" );
+        orig.getAttributes().put( "savings", account( "1", "10" ) );
+        orig.getAttributes().put( "nicknames", Arrays.asList( "al" ) );
+        Account origSavings = (Account) orig.getAttributes().get( "savings" );
+
+        Person mod = person();
+        mod.getAttributes().put( "height", 181 );
+        mod.getAttributes().put( "savings", account( "1", "20" ) );
+        mod.getAttributes().put( "checking", account( "2", "5" ) );
+        mod.getAttributes().put( "nicknames", Arrays.asList( "al" ) );
+
+        Delta delta = dcs.diff( orig, mod );
+
+        delta.visit( new DeltaPrinter( System.err ) );
+
+        MapDelta attributes = (MapDelta) ( (CompositeDelta) delta ).children().get( 0 );
+        assertEquals( 4, attributes.children().size() );
+        assertNotNull( find( attributes, UpdateEntryDelta.class ) );
+        assertNotNull( find( attributes, RemoveEntryDelta.class ) );
+        assertNotNull( find( attributes, PutEntryDelta.class ) );
+
+        Person result = (Person) dcs.apply( orig, delta );
+
+        assertEquals( 4, result.getAttributes().size() );
+        assertEquals( 181, result.getAttributes().get( "height" ) );
+        assertFalse( result.getAttributes().containsKey( "eyes" ) );
+        assertSame( origSavings, result.getAttributes().get( "savings" ) );
+        assertEquals( new BigDecimal( "20" ), origSavings.getCurrentBalance() );
+        assertEquals( "2", ( (Account) result.getAttributes().get( "checking" ) ).getAccountNumber() );
+    }
+
+    public void testMapCreatedAndDropped()
+        throws Exception
+    {
+        Person orig = new Person(); orig.setSsn( "123" );
+
+        Person mod = person();
+        mod.getAttributes().put( "eyes", "blue" );
+
+        Person result = (Person) dcs.apply( orig, dcs.diff( orig, mod ) );
+
+        assertEquals( mod.getAttributes(), result.getAttributes() );
+
+        result = (Person) dcs.apply( result, dcs.diff( mod, new Person() ) );
+
+        assertNull( result.getAttributes() );
+    }
+
+    public void testSameMapsHaveNoDelta()
+        throws Exception
+    {
+        Person orig = person(); orig.getAttributes().put( "savings", account( "1", "10" ) );
+        Person mod = person(); mod.getAttributes().put( "savings", account( "1", "10" ) );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+    }
+
+    public void testNestedContainersArePutAfresh()
+        throws Exception
+    {
+        Person orig = person();
+
+        Person mod = person();
+        mod.getAttributes().put( "nicknames", new ArrayList<String>( Arrays.asList( "al", "sasha" ) ) );
+        mod.getAttributes().put( "scores", new HashMap<String, Object>( Collections.singletonMap( "math", 5 ) ) );
+        mod.getAttributes().put( "samples", new double[] { 1, 2 } );
+
+        Person result = (Person) dcs.apply( orig, dcs.diff( orig, mod ) );
+
+        assertEquals( mod.getAttributes().get( "nicknames" ), result.getAttributes().get( "nicknames" ) );
+        assertEquals( mod.getAttributes().get( "scores" ), result.getAttributes().get( "scores" ) );
+        assertNotSame( mod.getAttributes().get( "nicknames" ), result.getAttributes().get( "nicknames" ) );
+        assertNotSame( mod.getAttributes().get( "scores" ), result.getAttributes().get( "scores" ) );
+        assertNotSame( mod.getAttributes().get( "samples" ), result.getAttributes().get( "samples" ) );
+        assertTrue( Arrays.equals( new double[] { 1, 2 }, (double[]) result.getAttributes().get( "samples" ) ) );
+
+        // the graphs do not share the containers.
+        ( (List<String>) mod.getAttributes().get( "nicknames" ) ).add( "alexander" );
+
+        assertEquals( Arrays.asList( "al", "sasha" ), result.getAttributes().get( "nicknames" ) );
+    }
+
+    // HELPERS
+    private Person person()
+    {
+        Person result = new Person(); result.setSsn( "123" ); result.setAttributes( new HashMap<String, Object>() );
+        return result;
+    }
+
+    private Account account( String number, String balance )
+    {
+        Account result = new Account(); result.setAccountNumber( number ); result.setCurrentBalance( new BigDecimal( balance ) );
+        return result;
+    }
+
+    private Delta find( MapDelta mapDelta, Class deltaClass )
+    {
+        for( Delta child : mapDelta.children() )
+        {
+            if( deltaClass.isInstance( child ) )
+            {
+                return child;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -14,14 +14,25 @@
 */
 package net.groovysips.jdiff;
 
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import junit.framework.TestCase;
+import net.groovysips.jdiff.access.Accessors;
+import net.groovysips.jdiff.access.PropertyAccessor;
+import net.groovysips.jdiff.delta.ClassDiffPlan;
 import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
 import net.groovysips.jdiff.delta.DeltaPrinter;
 import net.groovysips.jdiff.delta.NullReturnDelta;
 import net.groovysips.jdiff.delta.VisitingDeltaMerger;
 import net.groovysips.jdiff.delta.MappedFinderCriteriaFactory;
 import net.groovysips.jdiff.delta.MappedItemAppenderFactory;
+import net.groovysips.jdiff.delta.PropertySlot;
+import org.springframework.beans.BeanUtils;
 
 public class SimpleObjectDiffTests extends TestCase
 {
@@ -152,6 +163,134 @@ public class SimpleObjectDiffTests extends TestCase
         assertNull( ( (Person) modified ).getSpouse() );
     }
 
+    public void testDiffPlanIsCachedAndHonoursExcludes()
+    {
+        DefaultDeltaBuilder dBuilder = new DefaultDeltaBuilder();
+
+        Map<Class, List<String>> excludes = new HashMap<Class, List<String>>();
+        excludes.put( Person.class, Arrays.asList( "ssn", "children" ) );
+        dBuilder.setExcludes( excludes );
+
+        ClassDiffPlan plan = dBuilder.getPlan( Person.class );
+
+        assertSame( plan, dBuilder.getPlan( Person.class ) );
+
+        for( PropertySlot slot : plan.getSlots() )
+        {
+            assertFalse( "ssn".equals( slot.getName() ) );
+            assertFalse( "children".equals( slot.getName() ) );
+            assertFalse( "class".equals( slot.getName() ) );
+        }
+
+        // the plan is shared, what it hands out is not.
+        plan.getSlots()[ 0 ] = null;
+        assertNotNull( plan.getSlots()[ 0 ] );
+
+        Person original = createSingleObject();
+        Person modified = createSingleObject();
+        modified.setSsn( "000-00-0001" );
+
+        assertSame( Delta.NULL, dBuilder.build( original, modified ) );
+    }
+
+    public void testAccessorsReadAndWriteProperties()
+    {
+        Person person = createSingleObject();
+
+        PropertyAccessor years = Accessors.forProperty( Person.class, "yearsInSchool" );
+
+        assertSame( years, Accessors.forProperty( Person.class, "yearsInSchool" ) );
+        assertTrue( years.getClass().getName().startsWith( "net.groovysips.jdiff.access.generated" ) );
+        assertNull( Accessors.forProperty( Person.class, "noSuchProperty" ) );
+
+        years.write( person, 7 );
+
+        assertEquals( 7, person.getYearsInSchool() );
+        assertEquals( new Integer( 7 ), years.read( person ) );
+
+        PropertyDescriptorUtils.writeWith( person, "Viktor Orban", "setName" );
+
+        assertEquals( "Viktor Orban", PropertyDescriptorUtils.read( person, "name" ) );
+    }
+
+    public void testAccessorsOfForeignDescriptorsAreCached()
+        throws Exception
+    {
+        Person person = createSingleObject();
+
+        // a descriptor that does not come from the class.
+        PropertyDescriptor alias = new PropertyDescriptor( "alias",
+                                                           Person.class.getMethod( "getName" ),
+                                                           Person.class.getMethod( "setName", String.class ) );
+
+        PropertyAccessor accessor = Accessors.forDescriptor( Person.class, alias );
+
+        assertSame( accessor, Accessors.forDescriptor( Person.class, alias ) );
+        assertSame( Accessors.forProperty( Person.class, "name" ),
+                    Accessors.forDescriptor( Person.class, BeanUtils.getPropertyDescriptor( Person.class, "name" ) ) );
+
+        PropertyDescriptorUtils.write( person, "Viktor Orban", alias );
+
+        assertEquals( "Viktor Orban", accessor.read( person ) );
+        assertTrue( Accessors.isCacheSafe( Person.class ) );
+        assertTrue( Accessors.isCacheSafe( String.class ) );
+    }
+
+    public void testWriteWithMatchesOverloads()
+        throws Exception
+    {
+        Person person = createSingleObject();
+        person.setSpouse( createSpouse() );
+
+        // primitive parameter, super type parameter and null.
+        PropertyDescriptorUtils.writeWith( person, 12, "setYearsInSchool" );
+        PropertyDescriptorUtils.writeWith( person, new ArrayList<Person>(), "setChildren" );
+        PropertyDescriptorUtils.writeWith( person, null, "setSpouse" );
+
+        assertEquals( 12, person.getYearsInSchool() );
+        assertTrue( person.getChildren().isEmpty() );
+        assertNull( person.getSpouse() );
+
+        assertSame( Accessors.forWriteMethod( Person.class, "setYearsInSchool", Integer.class ),
+                    Accessors.forWriteMethod( Person.class, "setYearsInSchool", Integer.class ) );
+
+        try
+        {
+            Accessors.forWriteMethod( Person.class, "setYearsInSchool", null );
+            fail( "null can not be passed as int." );
+        }
+        catch( NoSuchMethodException e )
+        {
+            // expected
+        }
+    }
+
+    public void testWriteMethodOverridesMerge()
+    {
+        Map<String, String> personOverrides = new HashMap<String, String>();
+        personOverrides.put( "yearsInSchool", "setYearsInSchool" );
+        personOverrides.put( "spouse", "setSpouse" );
+
+        Map<Class, Map<String, String>> overrides = new HashMap<Class, Map<String, String>>();
+        overrides.put( Person.class, personOverrides );
+
+        DefaultDeltaBuilder dBuilder = new DefaultDeltaBuilder();
+        dBuilder.setWriteMethodOverrides( overrides );
+
+        DeltaCalculationService service = new DefaultDeltaCalculationService( dBuilder, new VisitingDeltaMerger() );
+
+        Person original = createSingleObject();
+        original.setSpouse( createSpouse() );
+
+        Person modified = createSingleObject();
+        modified.setYearsInSchool( original.getYearsInSchool() + 1 );
+
+        Person result = (Person) service.apply( original, service.diff( original, modified ) );
+
+        assertEquals( modified.getYearsInSchool(), result.getYearsInSchool() );
+        assertNull( result.getSpouse() );
+    }
+
 //    public void testNullOriginalCircularGraphDelta()
 //    {
 //        Object original = null;
@@ -0,0 +1,255 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.DirtyTrackable;
+import net.groovysips.jdiff.delta.DirtyTracker;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectDirtyTrackingTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaBuilder ddb;
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        ddb = new DefaultDeltaBuilder();
+
+        ddb.setFinderCriteriaFactory( new SimpleFinderCriteriaFactory() );
+        ddb.setDirtyTracking( true );
+
+        dcs = new DefaultDeltaCalculationService( ddb, new VisitingDeltaMerger() );
+    }
+
+    public void testOnlyDirtyPropertiesAreCompared()
+        throws Exception
+    {
+        TrackedNode orig = new TrackedNode( "original" );
+
+        TrackedNode mod = new TrackedNode( "modified" );
+        mod.dirtyTracker().clear();
+
+        // the name changed behind the tracker's back, nothing to report.
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+
+        ddb.setDirtyTracking( false );
+        assertNotSame( Delta.NULL, dcs.diff( orig, mod ) );
+        ddb.setDirtyTracking( true );
+
+        mod.setName( "renamed" );
+        assertTrue( mod.dirtyTracker().isDirty( "name" ) );
+
+        TrackedNode result = (TrackedNode) dcs.apply( orig, dcs.diff( orig, mod ) );
+
+        assertEquals( "renamed", result.getName() );
+    }
+
+    public void testDirtyChildrenOfCleanBeans()
+        throws Exception
+    {
+        TrackedNode orig = new TrackedNode( "root" );
+        orig.setPeer( new TrackedNode( "peer" ) );
+        orig.setChildren( new ArrayList<Node>() );
+        orig.getChildren().add( new TrackedNode( "child" ) );
+
+        TrackedNode mod = new TrackedNode( "root" );
+        mod.setPeer( new TrackedNode( "peer" ) );
+        mod.setChildren( new ArrayList<Node>() );
+        mod.getChildren().add( new TrackedNode( "child" ) );
+        mod.dirtyTracker().clear();
+        mod.getPeer().dirtyTracker().clear();
+        ( (TrackedNode) mod.getChildren().get( 0 ) ).dirtyTracker().clear();
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+
+        mod.getPeer().setFlag( "peer flag" );
+        ( (TrackedNode) mod.getChildren().get( 0 ) ).setFlag( "child flag" );
+        assertTrue( mod.dirtyTracker().isClean() );
+
+        TrackedNode result = (TrackedNode) dcs.apply( orig, dcs.diff( orig, mod ) );
+
+        assertEquals( "peer flag", result.getPeer().getFlag() );
+        assertEquals( "child flag", ( (TrackedNode) result.getChildren().get( 0 ) ).getFlag() );
+    }
+
+    public void testCleanSlotsOfDeepTrackersAreSkipped()
+        throws Exception
+    {
+        DeepNode orig = new DeepNode( "root" );
+        orig.setPeer( new DeepNode( "peer" ) );
+        orig.getPeer().setPeer( new DeepNode( "peer of peer" ) );
+        orig.getPeer().getPeer().setPeer( orig );
+
+        DeepNode mod = new DeepNode( "root" );
+        mod.setPeer( new DeepNode( "peer" ) );
+        mod.getPeer().setPeer( new DeepNode( "peer of peer" ) );
+        mod.getPeer().getPeer().setPeer( mod );
+
+        // the peers changed behind the trackers' backs, the clean peer slot is not even walked.
+        mod.getPeer().getPeer().setName( "hidden" );
+        mod.getPeer().getPeer().dirtyTracker().clear();
+        mod.getPeer().dirtyTracker().clear();
+        mod.dirtyTracker().clear();
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+
+        mod.getPeer().getPeer().setFlag( "deep flag" );
+        assertTrue( mod.getPeer().dirtyTracker().isDirty( "peer" ) );
+        assertTrue( mod.dirtyTracker().isDirty( "peer" ) );
+        assertFalse( mod.dirtyTracker().isDirty( "name" ) );
+
+        DeepNode result = (DeepNode) dcs.apply( orig, dcs.diff( orig, mod ) );
+
+        assertEquals( "deep flag", result.getPeer().getPeer().getFlag() );
+        assertEquals( "peer of peer", result.getPeer().getPeer().getName() );
+        assertSame( result, result.getPeer().getPeer().getPeer() );
+    }
+
+    public void testDetachedBeansDoNotPropagate()
+        throws Exception
+    {
+        DeepNode root = new DeepNode( "root" );
+        DeepNode peer = new DeepNode( "peer" );
+
+        root.setPeer( peer );
+        root.setPeer( null );
+        root.dirtyTracker().clear();
+
+        peer.setFlag( "flag" );
+
+        assertTrue( root.dirtyTracker().isClean() );
+    }
+
+    /**
+     * Attaches the tracker of its peer to its own one.
+     */
+    public static class DeepNode extends Node implements DirtyTrackable
+    {
+
+        private final DirtyTracker tracker = new DirtyTracker( DeepNode.class, true );
+
+        private String flag;
+
+        public DeepNode()
+        {
+        }
+
+        public DeepNode( String name )
+        {
+            setName( name );
+        }
+
+        public DirtyTracker dirtyTracker()
+        {
+            return tracker;
+        }
+
+        public String getFlag()
+        {
+            return flag;
+        }
+
+        public void setFlag( String flag )
+        {
+            this.flag = flag;
+            tracker.markDirty( "flag" );
+        }
+
+        @Override public void setName( String name )
+        {
+            super.setName( name );
+            tracker.markDirty( "name" );
+        }
+
+        @Override public DeepNode getPeer()
+        {
+            return (DeepNode) super.getPeer();
+        }
+
+        @Override public void setPeer( Node peer )
+        {
+            if( getPeer() != null )
+            {
+                getPeer().dirtyTracker().detachFrom( tracker, "peer" );
+            }
+
+            super.setPeer( peer );
+            tracker.markDirty( "peer" );
+
+            if( peer != null )
+            {
+                ( (DeepNode) peer ).dirtyTracker().attachTo( tracker, "peer" );
+            }
+        }
+    }
+
+    public static class TrackedNode extends Node implements DirtyTrackable
+    {
+
+        private final DirtyTracker tracker = new DirtyTracker( TrackedNode.class );
+
+        private String flag;
+
+        public TrackedNode()
+        {
+        }
+
+        public TrackedNode( String name )
+        {
+            setName( name );
+        }
+
+        public DirtyTracker dirtyTracker()
+        {
+            return tracker;
+        }
+
+        public String getFlag()
+        {
+            return flag;
+        }
+
+        public void setFlag( String flag )
+        {
+            this.flag = flag;
+            tracker.markDirty( "flag" );
+        }
+
+        @Override public void setName( String name )
+        {
+            super.setName( name );
+            tracker.markDirty( "name" );
+        }
+
+        @Override public TrackedNode getPeer()
+        {
+            return (TrackedNode) super.getPeer();
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectFieldAccessTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaBuilder ddb;
+    private VisitingDeltaMerger vdm;
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        Set<Class> fieldAccess = new HashSet<Class>( Collections.singleton( Trade.class ) );
+
+        ddb = new DefaultDeltaBuilder();
+        ddb.setFinderCriteriaFactory( new SimpleFinderCriteriaFactory() );
+        ddb.setFieldAccess( fieldAccess );
+
+        vdm = new VisitingDeltaMerger();
+        vdm.setFieldAccess( fieldAccess );
+
+        dcs = new DefaultDeltaCalculationService( ddb, vdm );
+    }
+
+    public void testFieldsAreDiffedAndMerged()
+        throws Exception
+    {
+        Trade orig = new Trade( "IBM", 100, null );
+        Trade mod = new Trade( "IBM", 150, new Trade( "HPQ", -75, null, "hedged" ), "partial fill" );
+
+        Trade result = (Trade) dcs.apply( orig, dcs.diff( orig, mod ) );
+
+        assertSame( orig, result );
+        assertEquals( "IBM", result.symbol() );
+        assertEquals( 150, result.quantity() );
+        assertEquals( Arrays.asList( "partial fill" ), result.notes() );
+        assertEquals( "HPQ", result.hedge().symbol() );
+        assertEquals( -75, result.hedge().quantity() );
+        assertEquals( Arrays.asList( "hedged" ), result.hedge().notes() );
+    }
+
+    public void testExcludedFieldsAreNotDiffed()
+        throws Exception
+    {
+        Map<Class, List<String>> excludes = new HashMap<Class, List<String>>();
+        excludes.put( Trade.class, Arrays.asList( "quantity", "notes" ) );
+        ddb.setExcludes( excludes );
+
+        Trade orig = new Trade( "IBM", 100, null );
+        Trade mod = new Trade( "IBM", 150, null, "partial fill" );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+    }
+
+    public void testBeanPropertiesAreNotSeenWithoutFieldAccess()
+        throws Exception
+    {
+        dcs = new DefaultDeltaCalculationService( new DefaultDeltaBuilder(), new VisitingDeltaMerger() );
+
+        Trade orig = new Trade( "IBM", 100, null );
+        Trade mod = new Trade( "MSFT", 150, null );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+    }
+
+}
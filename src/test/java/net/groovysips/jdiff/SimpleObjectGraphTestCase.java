@@ -152,24 +152,155 @@ public class SimpleObjectGraphTestCase extends TestCase
         assertNull( ( (Person) modified ).getSpouse() );
     }
 
-//    public void testNullOriginalCircularGraphDelta()
-//    {
-//        Object original = null;
-//        Object modified = createMutuallyMarriedObject();
-//
-//        DeltaCalculationService dcs = new DefaultDeltaCalculationService();
-//
-//        // first find the difference.
-//        Delta deltaCmd = dcs.diff( original, modified );
-//
-//        // then apply the delta delta.
-//        Object result = deltaCmd.apply( original );
-//
-//        System.err.println( result );
-//
-//        // it should be looking the same way.
-//        assertTrue( result.equals( modified ) );
-//    }
+    public void testNullOriginalCircularGraphDelta()
+    {
+        Person original = null;
+        Person modified = createMutuallyMarriedObject();
+
+        // first find the difference.
+        Delta delta = dcs.diff( original, modified );
+
+        delta.visit( new DeltaPrinter( System.err ) );
+
+        // then apply the delta delta.
+        Person result = (Person) dcs.apply( original, delta );
+
+        System.err.println( result );
+
+        // equals would go around in circles, so it is checked by hand.
+        assertEquals( modified.getName(), result.getName() );
+        assertEquals( modified.getSpouse().getName(), result.getSpouse().getName() );
+        assertSame( result, result.getSpouse().getSpouse() );
+    }
+
+    public void testCircularGraphDelta()
+    {
+        Person original = createMutuallyMarriedObject();
+        Person modified = createMutuallyMarriedObject();
+        modified.getSpouse().setYearsInSchool( 53 );
+        modified.setName( "Renamed" );
+
+        // the equals of the beans would go around in circles.
+        Delta delta = dcs.diff( original, modified );
+
+        delta.visit( new DeltaPrinter( System.err ) );
+
+        Person result = (Person) dcs.apply( original, delta );
+
+        assertSame( original, result );
+        assertEquals( "Renamed", result.getName() );
+        assertEquals( 53, result.getSpouse().getYearsInSchool() );
+        assertSame( result, result.getSpouse().getSpouse() );
+
+        Person same = createMutuallyMarriedObject();
+        same.setDob( original.getDob() );
+        same.getSpouse().setDob( original.getSpouse().getDob() );
+        same.getSpouse().setYearsInSchool( 53 );
+        same.setName( "Renamed" );
+
+        assertSame( Delta.NULL, dcs.diff( original, same ) );
+    }
+
+    public void testNullOriginalSharedObjectGraphDelta()
+    {
+        Person modified = createMarriedWithFirstChildObject();
+
+        Person result = (Person) dcs.apply( null, dcs.diff( null, modified ) );
+
+        assertTrue( result.equals( modified ) );
+        assertSame( result.getFirstChild(), result.getSpouse().getFirstChild() );
+    }
+
+    public void testCopyOnWriteOfSharedChild()
+    {
+        Person original = createMarriedWithFirstChildObject();
+        Person modified = createMarriedWithFirstChildObject();
+
+        modified.setDob( original.getDob() );
+        modified.getSpouse().setDob( original.getSpouse().getDob() );
+        modified.getFirstChild().setDob( original.getFirstChild().getDob() );
+        modified.getFirstChild().setName( "Renamed" );
+
+        Delta delta = dcs.diff( original, modified );
+
+        VisitingDeltaMerger merger = new VisitingDeltaMerger();
+
+        Person[] results = new Person[] {
+            (Person) merger.mergeCopy( original, delta ),
+            (Person) merger.compile( delta ).applyCopy( original )
+        };
+
+        for( Person result : results )
+        {
+            assertEquals( "Renamed", result.getFirstChild().getName() );
+            assertSame( result.getFirstChild(), result.getSpouse().getFirstChild() );
+            assertNotSame( original.getSpouse(), result.getSpouse() );
+        }
+
+        // the original is as it was.
+        assertEquals( "First-born", original.getFirstChild().getName() );
+        assertSame( original.getFirstChild(), original.getSpouse().getFirstChild() );
+
+        // and merges the same way in place.
+        Person result = (Person) dcs.apply( original, delta );
+
+        assertEquals( "Renamed", result.getSpouse().getFirstChild().getName() );
+        assertSame( result.getFirstChild(), result.getSpouse().getFirstChild() );
+    }
+
+    public void testCopyOnWriteOfChildSharedThroughACycle()
+    {
+        Person original = createSharedThroughACycle();
+        Person modified = createSharedThroughACycle();
+
+        modified.getFirstChild().setName( "Renamed" );
+
+        Delta delta = dcs.diff( original, modified );
+
+        VisitingDeltaMerger merger = new VisitingDeltaMerger();
+
+        Person[] results = new Person[] {
+            (Person) merger.mergeCopy( original, delta ),
+            (Person) merger.compile( delta ).applyCopy( original )
+        };
+
+        for( Person result : results )
+        {
+            Person inLaw = result.getSpouse().getSpouse();
+
+            assertEquals( "Renamed", result.getFirstChild().getName() );
+            assertSame( result.getFirstChild(), inLaw.getFirstChild() );
+            assertSame( result.getSpouse(), inLaw.getSpouse() );
+            assertNotSame( original.getSpouse().getSpouse(), inLaw );
+        }
+
+        // the original is as it was.
+        Person inLaw = original.getSpouse().getSpouse();
+
+        assertEquals( "First-born", inLaw.getFirstChild().getName() );
+        assertSame( original.getSpouse(), inLaw.getSpouse() );
+    }
+
+    // the first child is shared with the spouse of the spouse, who is married back to the spouse.
+    private Person createSharedThroughACycle()
+    {
+        Person result = createMarriedWithFirstChildObject();
+        Person inLaw = createSingleObject();
+        inLaw.setName( "In-law" );
+        inLaw.setSpouse( result.getSpouse() );
+        inLaw.setFirstChild( result.getFirstChild() );
+
+        result.getSpouse().setFirstChild( null );
+        result.getSpouse().setSpouse( inLaw );
+
+        // same dates for every graph, only the name of the child differs.
+        for( Person person : new Person[] { result, result.getSpouse(), inLaw, result.getFirstChild() } )
+        {
+            person.setDob( new Date( 0 ) );
+        }
+
+        return result;
+    }
 
     private Person createSingleObject()
     {
@@ -0,0 +1,115 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import junit.framework.TestCase;
+import net.groovysips.jdiff.access.Accessors;
+import net.groovysips.jdiff.access.PropertyAccessor;
+import net.groovysips.jdiff.access.ReflectivePropertyAccessor;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.PrimitiveUpdateDelta;
+import net.groovysips.jdiff.delta.SimpleContainerDelta;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectPrimitiveTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        dcs = new DefaultDeltaCalculationService( new DefaultDeltaBuilder(), new VisitingDeltaMerger() );
+    }
+
+    public void testEveryPrimitiveTypeRoundTrips()
+        throws Exception
+    {
+        Quote orig = new Quote();
+
+        Quote mod = new Quote();
+        mod.setQuantity( -7 );
+        mod.setVolume( Long.MAX_VALUE );
+        mod.setPrice( 101.25 );
+        mod.setHalted( true );
+        mod.setSpread( 0.5f );
+        mod.setLot( (short) 100 );
+        mod.setVenue( (byte) -3 );
+        mod.setSide( 'S' );
+
+        Delta delta = dcs.diff( orig, mod );
+
+        assertEquals( 8, ( (SimpleContainerDelta) delta ).children().size() );
+        for( Delta child : ( (SimpleContainerDelta) delta ).children() )
+        {
+            assertTrue( child instanceof PrimitiveUpdateDelta );
+        }
+
+        Quote result = (Quote) dcs.apply( orig, delta );
+
+        assertEquals( -7, result.getQuantity() );
+        assertEquals( Long.MAX_VALUE, result.getVolume() );
+        assertEquals( 101.25, result.getPrice(), 0.0 );
+        assertTrue( result.isHalted() );
+        assertEquals( 0.5f, result.getSpread(), 0.0f );
+        assertEquals( (short) 100, result.getLot() );
+        assertEquals( (byte) -3, result.getVenue() );
+        assertEquals( 'S', result.getSide() );
+    }
+
+    public void testBitsFollowWrapperEquality()
+        throws Exception
+    {
+        Quote orig = new Quote();
+        orig.setPrice( Double.NaN );
+
+        Quote mod = new Quote();
+        mod.setPrice( Double.NaN );
+
+        assertSame( Delta.NULL, dcs.diff( orig, mod ) );
+
+        orig.setPrice( 0.0 );
+        mod.setPrice( -0.0 );
+
+        PrimitiveUpdateDelta price = (PrimitiveUpdateDelta) ( (SimpleContainerDelta) dcs.diff( orig, mod ) ).children().get( 0 );
+
+        assertEquals( "price", price.getPropertyName() );
+        assertEquals( new Double( -0.0 ), price.getNewValue() );
+        assertEquals( new Double( 0.0 ), price.getOldValue() );
+    }
+
+    public void testGeneratedAccessorsReadBits()
+        throws Exception
+    {
+        PropertyAccessor accessor = Accessors.forProperty( Quote.class, "price" );
+
+        assertFalse( accessor instanceof ReflectivePropertyAccessor );
+
+        Quote quote = new Quote();
+        accessor.writeBits( quote, Double.doubleToLongBits( 99.5 ) );
+
+        assertEquals( 99.5, quote.getPrice(), 0.0 );
+        assertEquals( Double.doubleToLongBits( 99.5 ), accessor.readBits( quote ) );
+    }
+
+}
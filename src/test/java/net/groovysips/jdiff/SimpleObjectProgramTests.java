@@ -0,0 +1,163 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.DeltaProgram;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectProgramTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private VisitingDeltaMerger vdm;
+
+    private DeltaCalculationService dcs;
+
+    protected void setUp()
+    {
+        DefaultDeltaBuilder ddb = new DefaultDeltaBuilder();
+
+        ddb.setFinderCriteriaFactory( new SimpleFinderCriteriaFactory() );
+
+        vdm = new VisitingDeltaMerger();
+
+        dcs = new DefaultDeltaCalculationService( ddb, vdm );
+    }
+
+    public void testProgramAppliesToManyReplicas()
+        throws Exception
+    {
+        Delta delta = dcs.diff( person( "alex", 1 ), person( "alex", 2 ) );
+
+        DeltaProgram program = vdm.compile( delta );
+
+        for( int i = 0; i < 100; i++ )
+        {
+            Person replica = person( "alex", 1 );
+
+            Person result = (Person) program.apply( replica );
+
+            assertSame( replica, result );
+            assertEquals( person( "alex", 2 ), result );
+            assertEquals( "alex's wife", result.getSpouse().getName() );
+            assertEquals( 2, result.getSpouse().getYearsInSchool() );
+            assertEquals( Integer.valueOf( 2 ), result.getAttributes().get( "version" ) );
+            assertTrue( Arrays.equals( new double[] { 1, 2 }, result.getSamples() ) );
+        }
+    }
+
+    public void testProgramOfPrimitivesIsFlat()
+        throws Exception
+    {
+        Quote orig = new Quote();
+
+        Quote mod = new Quote();
+        mod.setPrice( 10.5 );
+        mod.setHalted( true );
+
+        DeltaProgram program = vdm.compile( dcs.diff( orig, mod ) );
+
+        // a setter per property and the hand over of the result.
+        assertEquals( 3, program.size() );
+
+        Quote result = (Quote) program.apply( new Quote() );
+
+        assertEquals( 10.5, result.getPrice(), 0.0 );
+        assertTrue( result.isHalted() );
+    }
+
+    public void testProgramOfNewGraph()
+        throws Exception
+    {
+        Person mod = person( "alex", 2 );
+
+        DeltaProgram program = vdm.compile( dcs.diff( null, mod ) );
+
+        Person first = (Person) program.apply( null );
+        Person second = (Person) program.apply( null );
+
+        assertNotSame( first, second );
+        assertEquals( mod, first );
+        assertEquals( mod, second );
+    }
+
+    public void testProgramKeepsReferences()
+        throws Exception
+    {
+        Node orig = tree( 2 );
+
+        Node mod = tree( 3 );
+        mod.getChildren().get( 1 ).setPeer( mod );
+
+        DeltaProgram program = vdm.compile( dcs.diff( orig, mod ) );
+
+        for( int i = 0; i < 10; i++ )
+        {
+            Node result = (Node) program.apply( tree( 2 ) );
+
+            assertEquals( 3, result.getChildren().size() );
+            for( Node child : result.getChildren() )
+            {
+                assertSame( result, child.getParent() );
+            }
+            assertSame( result, result.getChildren().get( 1 ).getPeer() );
+        }
+    }
+
+    // HELPERS
+    private Person person( String name, int version )
+    {
+        Person result = new Person();
+        result.setName( name );
+        result.setYearsInSchool( version );
+        result.setSamples( version == 1 ? new double[] { 1 } : new double[] { 1, 2 } );
+        result.setAttributes( new HashMap<String, Object>() );
+        result.getAttributes().put( "version", version );
+
+        Person spouse = new Person();
+        spouse.setName( name + "'s wife" );
+        spouse.setYearsInSchool( version );
+        result.setSpouse( spouse );
+
+        return result;
+    }
+
+    private Node tree( int children )
+    {
+        Node result = new Node(); result.setName( "root" ); result.setChildren( new ArrayList<Node>() );
+
+        for( int i = 0; i < children; i++ )
+        {
+            Node child = new Node(); child.setName( "child " + i ); child.setParent( result );
+            result.getChildren().add( child );
+        }
+
+        return result;
+    }
+
+}
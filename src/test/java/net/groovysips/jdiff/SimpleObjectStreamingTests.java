@@ -0,0 +1,191 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.AbstractCompositeDelta;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.PropertyUpdateDelta;
+import net.groovysips.jdiff.delta.SimpleContainerDelta;
+import net.groovysips.jdiff.delta.VisitingDeltaMerger;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectStreamingTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaBuilder ddb;
+    private VisitingDeltaMerger vdm;
+
+    protected void setUp()
+    {
+        ddb = new DefaultDeltaBuilder();
+
+        ddb.setFinderCriteriaFactory( new SimpleFinderCriteriaFactory() );
+
+        vdm = new VisitingDeltaMerger();
+    }
+
+    public void testStreamedDeltaMerges()
+        throws Exception
+    {
+        Node orig = tree( "root", 2 );
+        orig.setPeer( tree( "peer", 0 ) );
+        orig.getPeer().setPeer( tree( "peer of peer", 0 ) );
+
+        Node mod = tree( "root", 3 );
+        mod.setPeer( tree( "peer", 0 ) );
+        mod.getPeer().setPeer( tree( "renamed peer of peer", 0 ) );
+
+        TreeCollector collector = new TreeCollector();
+        ddb.stream( orig, mod, collector );
+
+        Node result = (Node) vdm.merge( orig, collector.root );
+
+        assertSame( orig, result );
+        assertEquals( "renamed peer of peer", result.getPeer().getPeer().getName() );
+        assertEquals( 3, result.getChildren().size() );
+        assertEquals( "child 2", result.getChildren().get( 2 ).getName() );
+    }
+
+    public void testUnchangedBeansAreNotStreamed()
+        throws Exception
+    {
+        Person orig = person( "John", person( "Jane", null ) );
+        orig.setFirstChild( person( "Jim", null ) );
+
+        Person mod = person( "John", person( "Jane", null ) );
+        mod.setFirstChild( person( "Jim", null ) );
+        mod.getSpouse().setSsn( "123-45-6789" );
+
+        final List<String> events = new ArrayList<String>();
+
+        ddb.stream( orig, mod, new DeltaVisitor()
+        {
+            public void visit( Delta root )
+            {
+                events.add( "visit " + ( (SimpleContainerDelta) root ).getPropertyName() );
+            }
+
+            public void visitChild( Delta child )
+            {
+                events.add( "child " + ( (PropertyUpdateDelta) child ).getPropertyName() );
+            }
+
+            public void endVisit( CompositeDelta parent )
+            {
+                events.add( "end " + ( (SimpleContainerDelta) parent ).getPropertyName() );
+            }
+        } );
+
+        assertEquals( "[visit null, visit spouse, child ssn, end spouse, end null]", events.toString() );
+    }
+
+    public void testNoChangesStreamNullDelta()
+        throws Exception
+    {
+        TreeCollector collector = new TreeCollector();
+        ddb.stream( tree( "root", 2 ), tree( "root", 2 ), collector );
+
+        assertSame( Delta.NULL, collector.root );
+    }
+
+    public void testNewCyclicGraph()
+        throws Exception
+    {
+        Node mod = tree( "root", 2 );
+        mod.setPeer( mod.getChildren().get( 0 ) );
+        mod.getChildren().get( 1 ).setPeer( mod );
+
+        TreeCollector collector = new TreeCollector();
+        ddb.stream( null, mod, collector );
+
+        Node result = (Node) vdm.merge( null, collector.root );
+
+        assertEquals( "root", result.getName() );
+        assertSame( result, result.getChildren().get( 0 ).getParent() );
+        assertSame( result.getChildren().get( 0 ), result.getPeer() );
+        assertSame( result, result.getChildren().get( 1 ).getPeer() );
+    }
+
+    // HELPERS
+    private Node tree( String name, int children )
+    {
+        Node result = new Node(); result.setName( name ); result.setChildren( new ArrayList<Node>() );
+
+        for( int i = 0; i < children; i++ )
+        {
+            Node child = new Node(); child.setName( "child " + i ); child.setParent( result );
+            result.getChildren().add( child );
+        }
+
+        return result;
+    }
+
+    private Person person( String name, Person spouse )
+    {
+        Person result = new Person(); result.setName( name ); result.setSpouse( spouse );
+
+        return result;
+    }
+
+    /**
+     * Puts the streamed deltas back together into a tree.
+     */
+    private static class TreeCollector implements DeltaVisitor
+    {
+
+        private final Stack<AbstractCompositeDelta> open = new Stack<AbstractCompositeDelta>();
+        private Delta root;
+
+        public void visit( Delta delta )
+        {
+            if( open.isEmpty() )
+            {
+                root = delta;
+            }
+            else
+            {
+                open.peek().addChild( delta );
+            }
+
+            if( delta instanceof AbstractCompositeDelta )
+            {
+                open.push( (AbstractCompositeDelta) delta );
+            }
+        }
+
+        public void visitChild( Delta child )
+        {
+            open.peek().addChild( child );
+        }
+
+        public void endVisit( CompositeDelta parent )
+        {
+            open.pop();
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import net.groovysips.jdiff.delta.DefaultDeltaBuilder;
+import net.groovysips.jdiff.delta.PrimitiveUpdateDelta;
+import net.groovysips.jdiff.delta.PropertyUpdateDelta;
+import net.groovysips.jdiff.delta.SimpleContainerDelta;
+import net.groovysips.jdiff.delta.TypedDelta;
+import net.groovysips.jdiff.delta.TypedDeltaVisitorSupport;
+import net.groovysips.jdiff.delta.TypedVisitorAdapter;
+
+/**
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class SimpleObjectVisitorTests extends TestCase
+{
+
+    static
+    {
+        TestLog4jConfigurator.configure( );
+    }
+
+    private DefaultDeltaBuilder ddb;
+
+    protected void setUp()
+    {
+        ddb = new DefaultDeltaBuilder();
+    }
+
+    public void testTypedVisitorSeesEveryDelta()
+        throws Exception
+    {
+        PathCollector collector = new PathCollector( null );
+
+        ( (TypedDelta) ddb.build( person( "alex", 1 ), person( "alex", 2 ) ) ).accept( collector );
+
+        assertEquals( 2, collector.containers );
+        assertTrue( collector.paths.contains( "/yearsInSchool" ) );
+        assertTrue( collector.paths.contains( "/spouse/yearsInSchool" ) );
+        assertTrue( collector.paths.contains( "/spouse/name" ) );
+        assertEquals( 3, collector.paths.size() );
+    }
+
+    public void testFalseSkipsTheChildren()
+        throws Exception
+    {
+        PathCollector collector = new PathCollector( "spouse" );
+
+        ( (TypedDelta) ddb.build( person( "alex", 1 ), person( "alex", 2 ) ) ).accept( collector );
+
+        assertEquals( 1, collector.containers );
+        assertEquals( 1, collector.paths.size() );
+        assertEquals( "/yearsInSchool", collector.paths.get( 0 ) );
+    }
+
+    public void testAdapterTakesTheDeltaVisitorProtocol()
+        throws Exception
+    {
+        Delta delta = ddb.build( person( "alex", 1 ), person( "alex", 2 ) );
+
+        PathCollector typed = new PathCollector( "spouse" );
+        ( (TypedDelta) delta ).accept( typed );
+
+        PathCollector visited = new PathCollector( "spouse" );
+        delta.visit( new TypedVisitorAdapter( visited ) );
+
+        PathCollector streamed = new PathCollector( "spouse" );
+        ddb.stream( person( "alex", 1 ), person( "alex", 2 ), new TypedVisitorAdapter( streamed ) );
+
+        assertEquals( typed.paths, visited.paths );
+        assertEquals( typed.containers, visited.containers );
+        assertEquals( typed.paths, streamed.paths );
+        assertEquals( typed.containers, streamed.containers );
+    }
+
+    // HELPERS
+    private Person person( String name, int version )
+    {
+        Person result = new Person();
+        result.setName( name );
+        result.setYearsInSchool( version );
+
+        Person spouse = new Person();
+        spouse.setName( name + "'s wife " + version );
+        spouse.setYearsInSchool( version );
+        result.setSpouse( spouse );
+
+        return result;
+    }
+
+    /**
+     * Collects the paths of the updated properties.
+     */
+    private static class PathCollector extends TypedDeltaVisitorSupport
+    {
+        private final String skipped;
+
+        private final List<String> path = new ArrayList<String>();
+
+        private final List<String> paths = new ArrayList<String>();
+
+        private int containers;
+
+        private PathCollector( String skipped )
+        {
+            this.skipped = skipped;
+        }
+
+        public boolean visitContainer( SimpleContainerDelta delta )
+        {
+            if( skipped != null && skipped.equals( delta.getPropertyName() ) )
+            {
+                return false;
+            }
+
+            containers++;
+            path.add( delta.getPropertyName() == null ? "" : delta.getPropertyName() );
+            return true;
+        }
+
+        public void endContainer( SimpleContainerDelta delta )
+        {
+            path.remove( path.size() - 1 );
+        }
+
+        public void visitPropertyUpdate( PropertyUpdateDelta delta )
+        {
+            paths.add( pathOf( delta.getPropertyName() ) );
+        }
+
+        public void visitPrimitiveUpdate( PrimitiveUpdateDelta delta )
+        {
+            paths.add( pathOf( delta.getPropertyName() ) );
+        }
+
+        private String pathOf( String propertyName )
+        {
+            StringBuffer result = new StringBuffer();
+
+            for( String step : path )
+            {
+                result.append( step ).append( "/" );
+            }
+
+            return result.append( propertyName ).toString();
+        }
+    }
+
+}
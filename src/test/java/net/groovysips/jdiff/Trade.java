@@ -0,0 +1,81 @@
+/* Copyright 2009 Alex Shneyderman
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package net.groovysips.jdiff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable looking value object: final fields, no setters and accessors that do not follow the bean naming.
+ *
+ * @author Alex Shneyderman
+ * @since 0.5
+ */
+public class Trade
+{
+
+    private final String symbol;
+    private final int quantity;
+    private final Trade hedge;
+    private final List<String> notes;
+
+    private Trade()
+    {
+        this( null, 0, null );
+    }
+
+    public Trade( String symbol, int quantity, Trade hedge, String... notes )
+    {
+        this.symbol = symbol;
+        this.quantity = quantity;
+        this.hedge = hedge;
+        this.notes = new ArrayList<String>();
+
+        for( String note : notes )
+        {
+            this.notes.add( note );
+        }
+    }
+
+    public String symbol()
+    {
+        return symbol;
+    }
+
+    public int quantity()
+    {
+        return quantity;
+    }
+
+    public Trade hedge()
+    {
+        return hedge;
+    }
+
+    public List<String> notes()
+    {
+        return notes;
+    }
+
+    @Override public String toString()
+    {
+        return "Trade{" +
+               "symbol='" + symbol + '\'' +
+               ", quantity=" + quantity +
+               ", hedge=" + hedge +
+               ", notes=" + notes +
+               '}';
+    }
+}